@@ -0,0 +1,111 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import frc.robot.Constants.DriveConstants;
+import frc.robot.util.DriveMath;
+
+/**
+ * Benchmarks the drive code that runs every cycle.
+ * The gyro, joystick and accelerometer are replaced by recorded-looking
+ * sample arrays so this runs on a desktop JVM without any hardware
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ControlPathBenchmark {
+  // Power of two so the index can wrap with a mask
+  private static final int kSamples = 1024;
+
+  // Stub sensor readings
+  private final double[] gyroAngles = new double[kSamples];
+  private final double[] joystickX = new double[kSamples];
+  private final double[] joystickY = new double[kSamples];
+  private final double[] accelY = new double[kSamples];
+  private int index = 0;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(2022);
+    for (int i = 0; i < kSamples; i++) {
+      // The navX angle keeps counting past 360 so use a wide range
+      gyroAngles[i] = (random.nextDouble() - 0.5) * 1440;
+      joystickX[i] = random.nextDouble() * 2 - 1;
+      joystickY[i] = random.nextDouble() * 2 - 1;
+      accelY[i] = random.nextGaussian() * 0.3;
+    }
+  }
+
+  private int next() {
+    index = (index + 1) & (kSamples - 1);
+    return index;
+  }
+
+  @Benchmark
+  public double angleError() {
+    return DriveMath.angleError(Constants.neededAngle90, gyroAngles[next()]);
+  }
+
+  @Benchmark
+  public void setPoints(Blackhole blackhole) {
+    int i = next();
+    blackhole.consume(DriveMath.setPointLeft(joystickX[i], joystickY[i],
+        DriveConstants.scaleTurn, DriveConstants.scaleFowd));
+    blackhole.consume(DriveMath.setPointRight(joystickX[i], joystickY[i],
+        DriveConstants.scaleTurn, DriveConstants.scaleFowd));
+  }
+
+  @Benchmark
+  public void joystickShaping(Blackhole blackhole) {
+    int i = next();
+    blackhole.consume(DriveMath.shapeJoystick(joystickX[i], DriveConstants.scaleX, 1 - DriveConstants.scaleY));
+    blackhole.consume(-DriveMath.shapeJoystick(joystickY[i], DriveConstants.scaleY, 1 - DriveConstants.scaleY));
+  }
+
+  // The old shaping with Math.pow, kept to compare against
+  @Benchmark
+  public void joystickShapingPow(Blackhole blackhole) {
+    int i = next();
+    blackhole.consume(DriveConstants.scaleX * (Math.pow(joystickX[i], 3))
+        + (1 - DriveConstants.scaleY) * joystickX[i]);
+    blackhole.consume(-(DriveConstants.scaleY * (Math.pow(joystickY[i], 3))
+        + (1 - DriveConstants.scaleY) * joystickY[i]));
+  }
+
+  @Benchmark
+  public boolean collisionCheck() {
+    int i = next();
+    return DriveMath.isCollision(accelY[i], accelY[(i - 1) & (kSamples - 1)], 0.5);
+  }
+
+  // One full teleop drive cycle: shaping, both setpoints and a heading check
+  @Benchmark
+  public void driveCycle(Blackhole blackhole) {
+    int i = next();
+    double x = DriveMath.shapeJoystick(joystickX[i], DriveConstants.scaleX, 1 - DriveConstants.scaleY);
+    double y = -DriveMath.shapeJoystick(joystickY[i], DriveConstants.scaleY, 1 - DriveConstants.scaleY);
+    blackhole.consume(DriveMath.setPointLeft(x, y, DriveConstants.scaleTurn, DriveConstants.scaleFowd));
+    blackhole.consume(DriveMath.setPointRight(x, y, DriveConstants.scaleTurn, DriveConstants.scaleFowd));
+    blackhole.consume(DriveMath.angleError(Constants.neededAngle0, gyroAngles[i]));
+  }
+}
@@ -30,12 +30,23 @@ public final class Constants {
 
     // Limit Switches
     public static int armDownPort = 0;
+    public static double armHomeDebounceSeconds = 0.05; // Edges closer than this to the last press are bounce
 
     // Intake/Arm Constants
     // Negative is down and positive is up
     public static double armDownPosition = 1.75;// -10.75
     public static double armUpPosition = 12;// 5
     public static double releaseArmPosition = 13;// 5
+    public static double armGearing = 25; // Motor rotations per arm rotation
+    public static double armHomeDegrees = -30; // Arm angle on the down switch, 0 is straight out level
+    // Arm profile, in motor rotations
+    public static double armMaxVelocity = 60; // rotations per second
+    public static double armMaxAcceleration = 200; // rotations per second squared
+    // Arm feedforward in volts: kS to get moving, kG to hold it level, kV per rotation per second, kA per rotation per s^2
+    public static double armKS = 0.1;
+    public static double armKG = 0.7;
+    public static double armKV = 0.125;
+    public static double armKA = 0.009;
     public static double intakeSpeed = 0.7;
 
     // AutoAlign Constants
@@ -45,6 +56,14 @@ public final class Constants {
     public static double neededAngle180 = -180;
     public static double neededCilmbAngle = -32;
 
+    // Collision Constants
+    public static double collisionThresholdDeltaG = 0.5; // Change in acceleration over the window that counts as a hit
+    public static double collisionWindowSeconds = 0.02; // The threshold was tuned on 20ms loops
+    public static double collisionDebounceSeconds = 0.1; // One hit doesn't count as many
+    public static double tipOverDegrees = 25; // Pitch or roll past this counts as tipping
+    public static double tipOverHysteresisDegrees = 5;
+    public static byte navXUpdateRateHz = (byte) 200;
+
     // EyeBall Constants
     public static double yawLeftBias = 12; // Adds to Yaw
     public static double yawRightBias = -12; // Addes to Yaw
@@ -52,11 +71,22 @@ public final class Constants {
     public static double yawDriveScale = 75;
     public static double pitchDriveScale = 200;
 
+    // Vision Constants
+    public static String cameraName = "Microsoft_LifeCam_HD-3000";
+    public static double visionPollSeconds = 0.01; // How often the vision thread checks for a new frame
+
     /* Climber Subsystem Constants */
-    // ****THESE TIMES ARE NOT FINAL****
-    public static double secondsDelayBetweenSteps = 0.85;
-    public static double secondsDelayAfterGettingToNewBar = 1.5;
-    public static double MLGWaterBucketClutchSeconds = 0.80;
+    // ClimbSequence moves to the next step when these say the last one is done
+    // ****THESE ARE NOT FINAL****
+    public static double climbSolenoidSeconds = 0.3; // How long the climb pistons take to move all the way
+    public static double climbPositionTolerance = 0.5; // Rotations from the setpoint that count as there
+    public static double climbVelocityTolerance = 100; // RPM, the outer arm counts as stopped under this
+    public static double climbSwingCalmRate = 15; // Degrees per second of pitch, the swing has died down under this
+    public static double climbSwingTurnRate = 5; // Degrees per second of pitch, the swing is only going one way over this
+    public static int climbSwingTurnSamples = 3; // Loops in a row past climbSwingTurnRate before the swing counts as turned
+    public static double climbSettleSeconds = 0.1; // How long a condition has to hold before it counts
+    public static double climbFallMinSeconds = 0.3; // The arm looks stopped right when PID is turned off
+    public static double climbStepTimeoutSeconds = 3.0; // A step that takes longer than this aborts the climb
 
     public static double armsDownSetPoint = 1.0; // The set point for when we drive into the hangar
     public static double verticalSetPoint = 1.0; // The set point for when the arms are verticle
@@ -64,6 +94,85 @@ public final class Constants {
     public static double firstExtendSetPoint = 1.0; // The set point for when the arms move behind the bar
     public static double barAlignedSetPoint = 1.0; // When the arm is aligned to the bar when it retracts
 
+    // Data Logger
+    public static String dataLogDirectory = "/home/lvuser/logs";
+    public static long dataLogBytes = 16 * 1024 * 1024; // About 20 minutes at 50Hz
+    public static int dataLogsKept = 4; // This boot's log and the last three
+    public static int loggedJoysticks = 2; // Driver and operator
+    public static int loggedJoystickAxes = 6; // Every axis a Joystick reads, X Y Z twist throttle
+
+    // Allocation profiling, off for matches since reading the allocation counter isn't free
+    public static boolean profileAllocations = false;
+    // Most bytes a steady teleop loop may allocate, checked by CheckAllocationsTest
+    public static long allocationBudgetBytes = 4096;
+
+    // Motor Health Monitor
+    public static double motorHealthPeriodSeconds = 0.005; // How often the monitor thread samples
+    public static int motorHealthFrameMs = 5; // Current frame period on watched motors while they're watched
+    public static double motorStallSeconds = 0.1; // Current high and not moving for this long is a stall
+    public static double motorStallRPM = 50; // Slower than this counts as not moving
+    public static double motorMaxTemperature = 90; // Celsius, the motor gets current limited over this
+    public static int sparkMaxDefaultCurrentLimit = 80; // Firmware default, for motors whose config doesn't set one
+    public static double climberStallAmps = 60; // Only reported, the climber holds the robot up
+    public static double armStallAmps = 30;
+    public static int armLimitAmps = 20;
+    public static double armCutSeconds = 0.5; // Cut if the arm is still stalled this long after being limited
+    public static double intakeStallAmps = 35;
+    public static double intakeSpikeAmps = 12; // A jump this far over the average is a ball hitting the rollers
+    public static double intakeCutSeconds = 0.25;
+
+    // CAN Budget
+    public static int canLoopFrameMs = 20; // For signals read once a loop
+    public static int canOdometryFrameMs = 10; // Drive positions, odometry runs faster than the loop
+    public static int canDashboardFrameMs = 100; // For signals only shown on the dashboard
+    public static int canIdleFrameMs = 500; // Frames nothing reads
+    public static int canIdleOutputFrameMs = 100; // Status 0 has the faults in it too so it isn't slowed as much
+    public static double canUtilizationTarget = 0.5; // Fraction of the bus we want to stay under
+    public static int canSampleCycles = 25; // Loops between reads of the bus utilization
+    public static double endgameSeconds = 30; // Teleop time left when CanBudget switches to the endgame phase
+
+    // JIT Warm-up
+    public static boolean jitWarmup = true; // Runs the drive code while disabled so the first enabled loops aren't cold
+    public static int warmupIterations = 20000; // Runs of each exercise, well past where C2 compiles
+    public static double warmupBudgetMs = 5; // Time per disabled loop spent warming up
+    public static int warmupReportCycles = 50; // Enabled loops timed after each enable
+
+    // Command Tracer
+    public static boolean traceCommands = true; // Cheap enough to leave on for matches
+    public static int traceCapacity = 8192; // Start and end events kept, a match uses a few hundred
+
+    // Power Budget
+    public static int pdpModule = 0;
+    public static double powerBudgetPeriodSeconds = 0.02; // How often the PDP currents are sampled
+    public static double powerBudgetMinVolts = 7.5; // Keep the predicted voltage over this, the roboRIO browns out at 6.8
+    public static double powerBudgetHorizonSeconds = 0.1; // How far ahead the current is followed to predict the sag
+    public static double batteryResistanceOhms = 0.02; // Battery and wiring, a starting point until it's measured
+    public static double powerBudgetRecoverPerSecond = 2; // How fast a cut output scale comes back
+    // PDP channels for each subsystem ****CHECK THESE AGAINST THE WIRING****
+    public static int[] drivePdpChannels = {12, 13, 14, 15};
+    public static int[] climberPdpChannels = {3};
+    public static int[] armPdpChannels = {4};
+    public static int[] intakePdpChannels = {5};
+    public static int[] compressorPdpChannels = {6}; // The PCM's channel
+    public static double driveMinPowerScale = 0.7; // Drive goes first so it's only slowed if it alone is too much
+    public static double armStartAmps = 40; // An arm move isn't started without this much headroom
+    public static double armDeferMaxSeconds = 0.5; // A waiting arm move starts anyway after this so its command ends
+    public static double compressorStartAmps = 15; // The compressor isn't turned back on without this much headroom
+
+    // Pneumatics, off while the robot has no compressor on it
+    public static boolean hasCompressor = false;
+    public static int pcmModule = 1;
+
+    // Setpoint Cache
+    // Velocity setpoints closer than this (RPM) to the last one are not sent
+    public static double velocitySetpointDeadband = 1;
+    // Position setpoints closer than this (rotations) to the last one are not sent
+    public static double positionSetpointDeadband = 0.01;
+    // The last setpoint is sent again after this many ms even if it didn't change
+    public static long setpointRefreshMs = 100;
+    // Feedforward closer than this (volts) to the last one is not sent
+    public static double feedforwardDeadbandVolts = 0.02;
+
     public static final class Buttons {
         // DriverStick
         public static int inverseControl = 1;
@@ -122,6 +231,10 @@ public final class Constants {
         public static double scaleYSlow = 4000;
         public static double scaleTurnSlow = 4000;
 
+        // Smart motion for AutoDriveCommand, RPM and RPM per second
+        public static double smartMotionMaxVelocity = 4000;
+        public static double smartMotionMaxAcceleration = 1500;
+
         // Fast Drive
         public static double scaleYBoost = 4000;
         public static double scaleTurnBoost = 4000;
@@ -133,8 +246,58 @@ public final class Constants {
         public static double conversionVelocity = 1 /* 1/8.41 * Math.PI * 2 * 0.0762 */;// rotations * gear ratio * 2 *
                                                                                         // PI * wheelSize
 
+        // Odometry
+        public static double gearRatio = 8.41;
+        public static double wheelDiameterMeters = 6 * 0.0254;
+        public static double metersPerRotation = wheelDiameterMeters * Math.PI / gearRatio;
+        public static double maxMotorRotationsPerSecond = 5700 / 60.0;
+        public static double odometryPeriodSeconds = 0.005; // 200Hz, same as the navX
+        public static int poseHistorySize = 256; // 1.28 seconds at 200Hz
+
+        // Wheel slip, a slip ends under half of these
+        public static double slipWindowSeconds = 0.1; // Rates are over this long so one late CAN frame isn't a slip
+        public static double slipSideRotationsPerSecond = 2; // Front and back encoder on a side apart, when stopped
+        public static double slipYawDegreesPerSecond = 10; // Turn from the wheels apart from the gyro, when stopped
+        public static double slipSpeedFraction = 0.2; // Added to both per rotation per second the robot is driving
+
+        // Trajectory following
+        // ****MEASURE THE TRACK WIDTH, THIS IS A GUESS****
+        public static double trackWidthMeters = 0.56;
+        public static double ramseteB = 2.0;
+        public static double ramseteZeta = 0.7;
+        // Only used by the offline trajectory generator
+        public static double trajectoryMaxVelocity = 2.5; // m/s
+        public static double trajectoryMaxAcceleration = 2.0; // m/s^2
+
+        // Heading controller used by TurnToAngleCommand
+        public static double headingPeriodSeconds = 0.005; // 200Hz, same as the navX
+        // kP and kD are a starting point from ./gradlew autoMonteCarlo, tune them on the robot
+        public static double headingKP = 40; // RPM per degree
+        public static double headingKD = 2.0; // RPM per degree per second of gyro rate
+        public static double headingKS = 60; // RPM it takes to start turning
+        public static double headingMaxRPM = 3000;
+        // Settled once inside both of these for headingSettleSeconds
+        public static double headingSettleDegrees = 1.5;
+        public static double headingSettleRate = 10; // Degrees per second
+        public static double headingSettleSeconds = 0.06;
+        public static double headingMaxTurnSeconds = 2.0; // A turn gives up after this so auto goes on
+
         // Deacceleration Constants
         public static double deAccel = 0.98;
         public static double lowestVel = 1;
     }
+
+    // Only used by the simulator
+    // ****ROUGH GUESSES, NOTHING HERE WAS MEASURED****
+    public static final class SimConstants {
+        public static double robotMassKg = 50;
+        public static double driveMomentOfInertia = 3.0; // kg m^2 around the center of the robot
+        public static double armMomentOfInertia = 0.2;
+        public static double armMassKg = 2;
+        public static double armCenterOfMassMeters = 0.2; // From the pivot
+        public static double armMaxDegrees = 170; // Hard stop at the top
+        public static double climberGearing = 20;
+        public static double climberMomentOfInertia = 0.1;
+        public static double autoLengthSeconds = 15;
+    }
 }
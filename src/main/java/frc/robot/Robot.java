@@ -5,10 +5,23 @@
 package frc.robot;
 
 import edu.wpi.first.wpilibj.Compressor;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.PneumaticsModuleType;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.util.CanBudget;
+import frc.robot.util.CommandTracer;
+import frc.robot.util.DataLogger;
+import frc.robot.util.JitWarmup;
+import frc.robot.util.LogReplay;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.MotorHealthMonitor;
+import frc.robot.util.PowerBudget;
+import frc.robot.util.ProfiledCommand;
+import frc.robot.util.SparkMaxConfigurator;
+import frc.robot.util.Telemetry;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -20,7 +33,13 @@ public class Robot extends TimedRobot {
   private Command m_autonomousCommand;
 
   private RobotContainer m_robotContainer;
+  private int telemetryProfilerId;
+  private int dataLoggerProfilerId;
   //private Compressor pcmCompressor = new Compressor(1, PneumaticsModuleType.CTREPCM);
+  // Last in the power budget, only made when the robot has one
+  private Compressor compressor = null;
+  private PowerBudget.Consumer compressorPower = null;
+  private boolean compressorOn = false;
 
   
   /**
@@ -29,9 +48,65 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotInit() {
+    if (Constants.profileAllocations) {
+      LoopProfiler.setAllocationTracking(true);
+    }
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
+    // Sets up all the SPARK MAX controllers at once
+    SparkMaxConfigurator.configureAll();
+    // Watches motor current faster than the loop, the subsystems added their motors
+    MotorHealthMonitor.start();
+    if (Constants.hasCompressor && !LogReplay.isActive()) {
+      compressor = new Compressor(Constants.pcmModule, PneumaticsModuleType.CTREPCM);
+      // It starts out running, it's turned on once the budget has room
+      compressor.disable();
+      compressorPower = PowerBudget.add("Compressor", -1, Constants.compressorPdpChannels)
+          .withStartAmps(Constants.compressorStartAmps);
+    }
+    // Shares the battery out between the subsystems, they all registered in RobotContainer
+    PowerBudget.start();
+    // Dashboard values are sent from a background thread
+    telemetryProfilerId = LoopProfiler.register("Telemetry.update");
+    LoopProfiler.registerLoopTelemetry();
+    Telemetry.start();
+    dataLoggerProfilerId = LoopProfiler.register("DataLogger.log");
+    CanBudget.registerTelemetry();
+    JitWarmup.registerTelemetry();
+    // Start and end of every command, written out when the robot is disabled
+    CommandTracer.start();
+    ProfiledCommand.warnUnwrapped();
+    DataLogger.addNumber("Robot/Battery Voltage", RobotController::getBatteryVoltage);
+    DataLogger.addBoolean("Robot/Enabled", DriverStation::isEnabled);
+    DataLogger.addBoolean("Robot/Autonomous", DriverStation::isAutonomous);
+    // Joysticks, every axis and button, so a replayed log drives and presses the same things
+    for (int i = 0; i < Constants.loggedJoysticks; i++) {
+      int stick = i;
+      DataLogger.addNumber(stickButtonsName(stick), () -> DriverStation.getStickButtons(stick));
+      for (int j = 0; j < Constants.loggedJoystickAxes; j++) {
+        int axis = j;
+        DataLogger.addNumber(stickAxisName(stick, axis), () -> DriverStation.getStickAxis(stick, axis));
+      }
+    }
+    DataLogger.start();
+  }
+
+  /**
+   * @param stick driver station port
+   * @return the name the stick's buttons are logged under
+   */
+  public static String stickButtonsName(int stick) {
+    return "DS/Stick " + stick + " Buttons";
+  }
+
+  /**
+   * @param stick driver station port
+   * @param axis axis on the stick
+   * @return the name the axis is logged under
+   */
+  public static String stickAxisName(int stick, int axis) {
+    return "DS/Stick " + stick + " Axis " + axis;
   }
 
   /**
@@ -43,15 +118,51 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotPeriodic() {
+    LoopProfiler.beginCycle();
     CommandScheduler.getInstance().run();
+    // Status frames for this phase of the match
+    CanBudget.update();
+    updateCompressor();
+    long telemetryStart = LoopProfiler.start();
+    Telemetry.update();
+    LoopProfiler.stop(telemetryProfilerId, telemetryStart);
+    long logStart = LoopProfiler.start();
+    DataLogger.log();
+    LoopProfiler.stop(dataLoggerProfilerId, logStart);
+    LoopProfiler.endCycle();
+    JitWarmup.afterCycle();
+  }
+
+  // The tanks can wait, the compressor stops as soon as it's being squeezed and waits for room to start again
+  private void updateCompressor() {
+    if (compressor == null) {
+      return;
+    }
+    boolean on = compressorOn ? compressorPower.getScale() >= 1 : compressorPower.canStart();
+    if (on != compressorOn) {
+      compressorOn = on;
+      if (on) {
+        compressor.enableDigital();
+      } else {
+        compressor.disable();
+      }
+    }
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
   @Override
-  public void disabledInit() {}
+  public void disabledInit() {
+    // After auto or a match, so it can be looked at in chrome://tracing
+    CommandTracer.exportInBackground();
+  }
 
   @Override
-  public void disabledPeriodic() {}
+  public void disabledPeriodic() {
+    // Loads the trajectory of the picked auto, if it has one, before the match starts
+    m_robotContainer.preloadAutonomous();
+    // Compiles the drive code before it's needed
+    JitWarmup.run();
+  }
 
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
   @Override
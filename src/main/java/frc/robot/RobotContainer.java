@@ -4,6 +4,11 @@
 
 package frc.robot;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
@@ -19,7 +24,9 @@ import edu.wpi.first.wpilibj2.command.StartEndCommand;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
 import frc.robot.Constants.Buttons;
 import frc.robot.Constants.DriveConstants;
+import frc.robot.commands.AutoDriveCommand;
 import frc.robot.commands.EyeBallCommand;
+import frc.robot.commands.FollowTrajectoryCommand;
 import frc.robot.commands.OneBallAutoCommand;
 import frc.robot.commands.SetDistanceCommand;
 import frc.robot.commands.SimpleAuto;
@@ -30,6 +37,12 @@ import frc.robot.commands.ToggleArmCommand.PositionMode;
 import frc.robot.subsystems.BallTransitSubsystem;
 import frc.robot.subsystems.ClimberSubsystem;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.subsystems.VisionSubsystem;
+import frc.robot.util.DataLogger;
+import frc.robot.util.DriveMath;
+import frc.robot.util.JitWarmup;
+import frc.robot.util.LoggedInputs;
+import frc.robot.util.ProfiledCommand;
 
 /**
  * This class is where the bulk of the robot should be declared. Since
@@ -46,37 +59,62 @@ public class RobotContainer {
 
 	private final ClimberSubsystem climberSubsystem = new ClimberSubsystem();
 	private final BallTransitSubsystem ballTransitSubsystem = new BallTransitSubsystem();
+	private final VisionSubsystem visionSubsystem = new VisionSubsystem();
 
 	private final TwoBallAutoCommand TwoBallAuto = new TwoBallAutoCommand(driveSubsystem, ballTransitSubsystem);
 	private final OneBallAutoCommand OneBallAuto = new OneBallAutoCommand(driveSubsystem, ballTransitSubsystem);
 	private final SimpleAuto simpleAuto = new SimpleAuto(driveSubsystem, ballTransitSubsystem);
+	private final FollowTrajectoryCommand twoBallTrajectory = new FollowTrajectoryCommand(driveSubsystem, "TwoBall.traj");
+	private final Command twoBallTrajectoryOption = new ProfiledCommand("TwoBallTrajectory", twoBallTrajectory);
 
 	public static SendableChooser<Command> autoChooser = new SendableChooser<>();
+	// Same autos as the chooser, by name, so the simulator can pick one
+	private final Map<String, Command> autos = new LinkedHashMap<>();
+	// Which of the autos was picked, logged so a replay runs the same one
+	private int selectedAuto = -1;
+	private final LoggedInputs autoInput = DataLogger.addInputs("Robot/")
+			.add("Auto", () -> selectedAuto, v -> selectedAuto = (int) v);
 
 	public static final Joystick driverStick = new Joystick(0);
 	public static final Joystick operatorStick = new Joystick(1);
 
 	public RobotContainer() {
 		// Auto Chooser on SmartDashboard
-		autoChooser.setDefaultOption("Two Ball Auto", TwoBallAuto);
-		autoChooser.addOption("One Ball Auto", OneBallAuto);
-		autoChooser.addOption("Simple Auto", simpleAuto);
+		// Autos are wrapped so their loop time shows up in the LoopProfiler
+		addAuto("Two Ball Auto", new ProfiledCommand("TwoBallAuto", TwoBallAuto), true);
+		addAuto("One Ball Auto", new ProfiledCommand("OneBallAuto", OneBallAuto), false);
+		addAuto("Simple Auto", new ProfiledCommand("SimpleAuto", simpleAuto), false);
+		addAuto("Two Ball Trajectory", twoBallTrajectoryOption, false);
 		SmartDashboard.putData(autoChooser);
 		
 		// Default Drive
-		driveSubsystem.setDefaultCommand(new RunCommand(() -> driveSubsystem.manualDrive(
-				(DriveConstants.scaleX * (Math.pow(driverStick.getX(), 3)) +
-						(1 - DriveConstants.scaleY) * driverStick.getX()),
-				-(DriveConstants.scaleY *
-						(Math.pow(driverStick.getY(), 3))
-						+ (1 - DriveConstants.scaleY) *
-								driverStick.getY()),
-				DriveConstants.scaleTurn, DriveConstants.scaleFowd), driveSubsystem));
+		driveSubsystem.setDefaultCommand(new ProfiledCommand("ManualDrive", new RunCommand(
+				() -> driveWithStick(driverStick.getX(), driverStick.getY()), driveSubsystem)));
 	
 		// newDriveSubsystem.setDefaultCommand(new ManualDriveCommand(newDriveSubsystem));
 
 		configureButtonBindings();
 		testButtons();
+		addWarmups();
+	}
+
+	private void driveWithStick(double x, double y) {
+		driveSubsystem.manualDrive(
+				DriveMath.shapeJoystick(x, DriveConstants.scaleX, 1 - DriveConstants.scaleY),
+				-DriveMath.shapeJoystick(y, DriveConstants.scaleY, 1 - DriveConstants.scaleY),
+				DriveConstants.scaleTurn, DriveConstants.scaleFowd);
+	}
+
+	// What the first auto and teleop loops run, warmed up while disabled. The outputs are muted then
+	private void addWarmups() {
+		JitWarmup.add("ManualDrive", input -> driveWithStick(input, -input));
+		// Never reaches the distance, reaching it would reset the encoders
+		AutoDriveCommand autoDrive = new AutoDriveCommand(driveSubsystem, 1e6);
+		JitWarmup.add("AutoDriveCommand", input -> {
+			autoDrive.execute();
+			autoDrive.isFinished();
+		});
+		JitWarmup.add("TurnToAngleCommand", driveSubsystem::warmUpTurn);
 	}
 
 	private void testButtons(){
@@ -107,28 +145,26 @@ public class RobotContainer {
 		/* DRIVE BUTTONS */
 		// Inverse drive
 		new JoystickButton(driverStick, Buttons.inverseControl)
-				.whileHeld(new RunCommand(() -> driveSubsystem.manualDrive(
-						-(DriveConstants.scaleX * (Math.pow(driverStick.getX(), 3))
-								+ (1 - DriveConstants.scaleY) * driverStick.getX()),
-						-(DriveConstants.scaleY * (Math.pow(driverStick.getY(), 3))
-								+ (1 - DriveConstants.scaleY) * driverStick.getY()),
-						DriveConstants.scaleTurn, DriveConstants.scaleFowd), driveSubsystem));
+				.whileHeld(new ProfiledCommand("InverseDrive", new RunCommand(() -> driveSubsystem.manualDrive(
+						-DriveMath.shapeJoystick(driverStick.getX(), DriveConstants.scaleX, 1 - DriveConstants.scaleY),
+						-DriveMath.shapeJoystick(driverStick.getY(), DriveConstants.scaleY, 1 - DriveConstants.scaleY),
+						DriveConstants.scaleTurn, DriveConstants.scaleFowd), driveSubsystem)));
 
 		// Sets Distance between wall and sensor
 		new JoystickButton(driverStick, Buttons.setDistanceButton)
-				.whileHeld(new SetDistanceCommand(driveSubsystem, 196));
+				.whileHeld(new ProfiledCommand(new SetDistanceCommand(driveSubsystem, 196)));
 
 		// Turn to Angle Buttons
 		new JoystickButton(driverStick, Buttons.turn0Toggle)
-				.whileHeld(new TurnToAngleCommand(driveSubsystem, Constants.neededAngle0));
+				.whileHeld(new ProfiledCommand(new TurnToAngleCommand(driveSubsystem, Constants.neededAngle0)));
 		new JoystickButton(driverStick, Buttons.turn90Toggle)
-				.whileHeld(new TurnToAngleCommand(driveSubsystem, Constants.neededAngle90));
+				.whileHeld(new ProfiledCommand(new TurnToAngleCommand(driveSubsystem, Constants.neededAngle90)));
 		new JoystickButton(driverStick, Buttons.turnNegative90Toggle)
-				.whileHeld(new TurnToAngleCommand(driveSubsystem, Constants.neededAngleNegative90));
+				.whileHeld(new ProfiledCommand(new TurnToAngleCommand(driveSubsystem, Constants.neededAngleNegative90)));
 		new JoystickButton(driverStick, Buttons.turn180Toggle)
-				.whileHeld(new TurnToAngleCommand(driveSubsystem, Constants.neededAngle180));
+				.whileHeld(new ProfiledCommand(new TurnToAngleCommand(driveSubsystem, Constants.neededAngle180)));
 		new JoystickButton(driverStick, Buttons.turnToCilmb)
-				.whileHeld(new TurnToAngleCommand(driveSubsystem, Constants.neededCilmbAngle));
+				.whileHeld(new ProfiledCommand(new TurnToAngleCommand(driveSubsystem, Constants.neededCilmbAngle)));
 
 		//Turn to Angle Other Side Buttons
 		/*
@@ -145,9 +181,9 @@ public class RobotContainer {
 		/* OPERATOR BUTTONS */
 		// Auto align to ball command
 		new JoystickButton(operatorStick, Buttons.eyeballLeftButton)
-				.whileHeld(new EyeBallCommand(driveSubsystem, Constants.yawLeftBias));
+				.whileHeld(new ProfiledCommand(new EyeBallCommand(driveSubsystem, visionSubsystem, Constants.yawLeftBias)));
 		new JoystickButton(operatorStick, Buttons.eyeballRightButton)
-				.whileHeld(new EyeBallCommand(driveSubsystem, Constants.yawRightBias));
+				.whileHeld(new ProfiledCommand(new EyeBallCommand(driveSubsystem, visionSubsystem, Constants.yawRightBias)));
 
 		// Intake in and out
 		/* new JoystickButton(operatorStick, Buttons.ballIntake).whileHeld(new StartEndCommand(
@@ -190,8 +226,47 @@ public class RobotContainer {
 		// 4).whileHeld(newRunCommand(()->ballTransitSubsystem.togglePiston()));
 	}
 
+	/**
+	 * Loads the trajectory for the picked auto ahead of time,
+	 * called while disabled so autonomousInit doesn't have to
+	 */
+	public void preloadAutonomous() {
+		if (autoChooser.getSelected() == twoBallTrajectoryOption) {
+			twoBallTrajectory.load();
+		}
+	}
+
 	// Runs the auto command
 	public Command getAutonomousCommand() {
-		return autoChooser.getSelected();
+		Command[] choices = autos.values().toArray(new Command[0]);
+		selectedAuto = Arrays.asList(choices).indexOf(autoChooser.getSelected());
+		// In replay this changes it to the one in the log
+		autoInput.process();
+		return selectedAuto < 0 || selectedAuto >= choices.length ? null : choices[selectedAuto];
+	}
+
+	/**
+	 * @param name the name shown in the auto chooser
+	 * @return the auto, or null if there isn't one with that name
+	 */
+	public Command getAutonomousCommand(String name) {
+		return autos.get(name);
+	}
+
+	public Set<String> getAutonomousNames() {
+		return autos.keySet();
+	}
+
+	public DriveSubsystem getDriveSubsystem() {
+		return driveSubsystem;
+	}
+
+	private void addAuto(String name, Command auto, boolean isDefault) {
+		if (isDefault) {
+			autoChooser.setDefaultOption(name, auto);
+		} else {
+			autoChooser.addOption(name, auto);
+		}
+		autos.put(name, auto);
 	}
 }
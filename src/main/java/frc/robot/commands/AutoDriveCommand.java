@@ -13,10 +13,6 @@ public class AutoDriveCommand extends CommandBase {
    * it was built so that it can end after a condition is reached
    * and make it easier to code autoNav
    */
-  public static boolean collisionDetected = false;
-  double lastLinearAccelerationY;
-  final static double kCollisionThreshold_DeltaG = 0.5f;
-  
   private final DriveSubsystem driveSubsystem;
   private double displacement;
 
@@ -41,16 +37,7 @@ public class AutoDriveCommand extends CommandBase {
     //(Displacement/ (2*pi* radius of the wheel)) * 8.41 = Rotations
     //ONLY INPUT ROTATIONS 
     driveSubsystem.autoDrive(displacement);//Add to the displacement in speed up the motors
-    //To detect collision
-    double currLinearAccelerationY = DriveSubsystem.m_gyro.getWorldLinearAccelY();
-    double jerkY = currLinearAccelerationY - lastLinearAccelerationY;
-    lastLinearAccelerationY = currLinearAccelerationY;
-    
-    //We don't need this
-    //Its just there as an option
-    if(Math.abs(jerkY) > kCollisionThreshold_DeltaG){
-      collisionDetected = true;
-    }
+    //Collisions are detected by DriveSubsystem.collisionDetector at the navX rate
   }
 
   @Override
@@ -4,201 +4,285 @@
 
 package frc.robot.commands;
 
-import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.InstantCommand;
-import edu.wpi.first.wpilibj2.command.ParallelRaceGroup;
-import edu.wpi.first.wpilibj2.command.RunCommand;
-import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
-import edu.wpi.first.wpilibj2.command.WaitCommand;
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
 import frc.robot.Constants;
 import frc.robot.subsystems.ClimberSubsystem;
+import frc.robot.subsystems.DriveInputs;
+import frc.robot.util.CommandTracer;
+import frc.robot.util.DataLogger;
+import frc.robot.util.Telemetry;
+
+/**
+ * Climbs from the mid bar to the high bar, then to the traversal bar.
+ * Each step moves on as soon as the sensors say it's done instead of after a fixed wait:
+ * the pistons once they've had time to move, the arm moves once the encoder has settled,
+ * and the grab and the fall on the robot's swing from the navX pitch.
+ * A step that takes too long aborts the climb and holds the arm where it is.
+ * How long every step took is published so the climb can be timed
+ *
+ * <p>Prerequisites: outer arms retracted and on the mid bar, inner arms retracted and below it
+ */
+public class ClimbSequence extends CommandBase {
+  /** The steps of climbing one bar, done for the high bar and then again for traversal */
+  public enum Step {
+    // Outer: retracted, on the bar. Inner: extended, above the bar
+    extendInner,
+    // Inner: retracted, on the bar. The robot hangs from it
+    retractInner,
+    // Outer: retracted, behind the next bar
+    outerBehindBar,
+    // Outer: extended, behind the next bar
+    extendOuter,
+    // Outer: extended, lined up with the next bar
+    outerToBar,
+    // Outer: retracted, on the next bar. Inner: in the air
+    grabBar,
+    // PID off so the robot swings down to where it started, the inner arms let go on their own
+    fall,
+    // PID back on wherever the arm ended up
+    hold
+  }
+
+  private static final Step[] kSteps = Step.values();
+  private static final String[] kBarNames = {"High", "Traversal"};
+
+  private final ClimberSubsystem climber;
+  // Only read, for the swing
+  private final DriveInputs driveInputs;
 
-// NOTE:  Consider using this command inline, rather than writing a subclass.  For more
-// information, see:
-// https://docs.wpilib.org/en/stable/docs/software/commandbased/convenience-features.html
-public class ClimbSequence extends SequentialCommandGroup {
-  ClimberSubsystem climberSubsystem;
+  private int bar;
+  private Step step;
+  private double climbStart;
+  private double stepStart;
+  // When the current step's condition started holding, NaN if it isn't
+  private double settleStart;
+  private boolean finished;
+
+  // Pitch rate from the last two samples, and whether the swing just changed direction.
+  // A direction counts once the rate has been past climbSwingTurnRate that way for
+  // climbSwingTurnSamples in a row, so noise around zero isn't a turn
+  private double lastPitch;
+  private double lastPitchTime;
+  private double pitchRate;
+  private int swingDirection;
+  private int newDirection;
+  private int newDirectionSamples;
+  private boolean swingTurned;
+
+  // How long each step took the last climb, per bar
+  private final double[][] stepSeconds = new double[kBarNames.length][kSteps.length];
+  private double totalSeconds = Double.NaN;
+  private Step abortedStep = null;
+  // Command trace ids for each step, per bar, and the one that's running
+  private final int[][] traceIds = new int[kBarNames.length][kSteps.length];
+  private int tracedStep = -1;
 
   /**
-   * Toggle the Outer Pneumatics
-   * 
-   * @return An {@link InstantCommand} to toggle the Outer Arms
+   * Make it in RobotContainer with the other commands, it adds itself to the data log
+   * @param climber the climber
+   * @param driveInputs the drivetrain's sensor readings, for the navX pitch
    */
-  InstantCommand ToggleOuterArms() {
-    return new InstantCommand(() -> climberSubsystem.toggleOuterArms(), climberSubsystem);
+  public ClimbSequence(ClimberSubsystem climber, DriveInputs driveInputs) {
+    this.climber = climber;
+    this.driveInputs = driveInputs;
+    addRequirements(climber);
+
+    for (int b = 0; b < kBarNames.length; b++) {
+      for (Step s : kSteps) {
+        int barIndex = b;
+        Telemetry.addNumber("Climb/" + kBarNames[b] + " " + s + " s",
+            () -> stepSeconds[barIndex][s.ordinal()], 0.01, 0.5);
+        traceIds[b][s.ordinal()] = CommandTracer.register("Climb " + kBarNames[b] + " " + s);
+      }
+    }
+    Telemetry.addNumber("Climb/Total s", () -> totalSeconds, 0.01, 0.5);
+    DataLogger.addNumber("Climb/Total s", () -> totalSeconds);
+    Telemetry.addNumber("Climb/Aborted Step", () -> abortedStep == null ? -1 : abortedStep.ordinal(), 0, 0.5);
   }
 
-  /**
-   * Toggle the Inner Pneumatics
-   * 
-   * @return An {@link InstantCommand} to toggle the Inner Arms
-   */
-  InstantCommand ToggleInnerArms() {
-    return new InstantCommand(() -> climberSubsystem.toggleInnerArms(), climberSubsystem);
+  @Override
+  public void initialize() {
+    for (double[] row : stepSeconds) {
+      Arrays.fill(row, 0);
+    }
+    totalSeconds = Double.NaN;
+    abortedStep = null;
+    finished = false;
+    lastPitch = Double.NaN;
+    pitchRate = 0;
+    swingDirection = 0;
+    newDirection = 0;
+    newDirectionSamples = 0;
+    swingTurned = false;
+    bar = 0;
+    climbStart = Timer.getFPGATimestamp();
+    startStep(kSteps[0], climbStart);
   }
 
-  /**
-   * Move the Outer Climbing Arms
-   * 
-   * @param position The Position to Move the Outer Arms to
-   * @return A {@link ParallelRaceGroup} to move the Outer Arms
-   */
-  Command MoveOuterArms(double position) {
-    return new RunCommand(() -> climberSubsystem.setOuterArmsPosition(position), climberSubsystem)
-        .withInterrupt(climberSubsystem::outerMoveFinished);
+  private void startStep(Step next, double now) {
+    endTrace(false);
+    tracedStep = traceIds[bar][next.ordinal()];
+    CommandTracer.begin(tracedStep);
+    step = next;
+    stepStart = now;
+    settleStart = Double.NaN;
+    switch (step) {
+      case extendInner:
+      case retractInner:
+        climber.toggleInnerArms();
+        break;
+      case extendOuter:
+      case grabBar:
+        climber.toggleOuterArms();
+        break;
+      case fall:
+        climber.disablePID();
+        break;
+      case hold:
+        // Wherever the fall left it, read now and not when the command was made
+        climber.enablePID(climber.inputs.outerPosition);
+        break;
+      default:
+        break;
+    }
   }
 
-  /**
-   * Delay the Climbing Cycle for a specified amount of time
-   * 
-   * @param seconds The Amount of Seconds to Delay
-   * @return A {@link WaitCommand} to delay the Climb Sequence
-   */
-  WaitCommand Wait(double seconds) {
-    return new WaitCommand(seconds);
+  @Override
+  public void execute() {
+    double now = Timer.getFPGATimestamp();
+    CommandTracer.executed(tracedStep);
+    updateSwing();
+    if (step == Step.outerBehindBar) {
+      climber.setOuterArmsPosition(Constants.behindBarSetPoint);
+    } else if (step == Step.outerToBar) {
+      climber.setOuterArmsPosition(Constants.barAlignedSetPoint);
+    }
+
+    double elapsed = now - stepStart;
+    if (isStepDone(elapsed, now)) {
+      stepSeconds[bar][step.ordinal()] = elapsed;
+      nextStep(now);
+    } else if (elapsed > Constants.climbStepTimeoutSeconds) {
+      abort(elapsed);
+    }
   }
 
-  /**
-   * Disable PID for the Climber Motors
-   * 
-   * @return An {@link InstantCommand} to disable PID
-   */
-  InstantCommand DisablePID() {
-    return new InstantCommand(() -> climberSubsystem.disablePID(), climberSubsystem);
+  private boolean isStepDone(double elapsed, double now) {
+    switch (step) {
+      case extendInner:
+      case extendOuter:
+        return elapsed >= Constants.climbSolenoidSeconds;
+      case retractInner:
+        // The robot's weight moves onto the inner arms, wait for it to stop swinging
+        return elapsed >= Constants.climbSolenoidSeconds && held(isSwingCalm(), now);
+      case outerBehindBar:
+        return held(isArmSettled(Constants.behindBarSetPoint), now);
+      case outerToBar:
+        return held(isArmSettled(Constants.barAlignedSetPoint), now);
+      case grabBar:
+        // Let go at the end of a swing, when the robot is nearly still
+        return elapsed >= Constants.climbSolenoidSeconds && (isSwingCalm() || swingTurned);
+      case fall:
+        return elapsed >= Constants.climbFallMinSeconds
+            && held(Math.abs(climber.inputs.outerVelocity) < Constants.climbVelocityTolerance && isSwingCalm(), now);
+      case hold:
+      default:
+        return true;
+    }
   }
 
-  /**
-   * Enable PID for the Climber Motors and
-   * 
-   * @param position The position to move the Motors to after enabling PID
-   * @return An {@link InstantCommand} to enable PID and move to a position
-   */
-  InstantCommand EnablePID(double position) {
-    return new InstantCommand(() -> climberSubsystem.enablePID(position), climberSubsystem);
-  }
-
-  /** Creates a new ClimbSequence. */
-  public ClimbSequence(ClimberSubsystem climber) {
-    climberSubsystem = climber;
-    // Add your commands in the addCommands() call, e.g.
-    // addCommands(new FooCommand(), new BarCommand());
-    addCommands(
-        /*
-         * Prerequisites:
-         * Outer: Retracted; On mid bar
-         * Inner: Retracted; Below mid bar
-         */
-
-        /*
-         * Outer: Retracted; On the mid bar
-         * Inner: Extended; Above the mid bar
-         */
-        ToggleInnerArms(),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Retracted; Above the mid bar
-         * Inner: Retracted; On the mid bar
-         */
-        ToggleInnerArms(),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Retracted; Behind the next bar
-         * Inner: Retracted; On the mid bar
-         */
-        MoveOuterArms(Constants.behindBarSetPoint),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Extended; behind the high
-         * Inner: Retracted; on the mid bar
-         */
-        ToggleOuterArms(),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Extended; Aligned with the high
-         * Inner: Retracted; On the mid bar
-         */
-        MoveOuterArms(Constants.barAlignedSetPoint),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Retracted; On the High Bar
-         * Inner: Retracted; In the Air
-         */
-        ToggleOuterArms(),
-        Wait(Constants.MLGWaterBucketClutchSeconds),
-        /**
-         * We disable PID at the right time to let the Robot move naturally and not
-         * destroy the elctric board or break the motor
-         *
-         * Outer: Retracted; On the High Bar
-         * Inner: Retracted; In the Air
-         * 
-         * The Inner arms will let go of the bar on its own
-         * 
-         * We disable for an extended period to allow the robot to naturally fall to its
-         * starting point
-         */
-        DisablePID(),
-        Wait(Constants.secondsDelayAfterGettingToNewBar),
-        /*
-         * Outer: Retracted; At the original start position
-         * Inner: Retracted; At the original start position
-         */
-        EnablePID(climberSubsystem.outerEncoder.getPosition()),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Retracted; On the high bar
-         * Inner: Extended; Above the high bar
-         */
-        ToggleInnerArms(),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Retracted; Above the high bar
-         * Inner: Retracted; On the high bar
-         */
-        ToggleInnerArms(),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Retracted; Behind the traversal bar
-         * Inner: Retracted; On the high bar
-         */
-        MoveOuterArms(Constants.behindBarSetPoint),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Extended; Behind the traversal bar
-         * Inner: Retracted; On the high bar
-         */
-        ToggleOuterArms(),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Extended; Aligned with the traversal bar
-         * Inner: Retracted; On the high bar
-         */
-        MoveOuterArms(Constants.barAlignedSetPoint),
-        Wait(Constants.secondsDelayBetweenSteps),
-        /*
-         * Outer: Retracted; On the traversal Bar
-         * Inner: Retracted; In the Air
-         */
-        ToggleOuterArms(),
-        Wait(Constants.MLGWaterBucketClutchSeconds),
-        /**
-         * We disable PID at the right time to let the Robot move naturally and not
-         * destroy the electrical board or break the motor
-         * 
-         * The Inner arms will let go of the bar on its own
-         *
-         * Outer: Retracted; On the Traversal Bar
-         * Inner: Retracted; In the Air
-         * 
-         * We disable for an extended period to allow the robot to naturally fall to its
-         * starting point
-         */
-        DisablePID(),
-        Wait(Constants.secondsDelayAfterGettingToNewBar),
-        /*
-         * Outer: Retracted; At the original start position
-         * Inner: Retracted; At the original start position
-         */
-        EnablePID(climberSubsystem.outerEncoder.getPosition()));
-  }
-}
\ No newline at end of file
+  private void nextStep(double now) {
+    if (step.ordinal() + 1 < kSteps.length) {
+      startStep(kSteps[step.ordinal() + 1], now);
+    } else if (bar + 1 < kBarNames.length) {
+      bar++;
+      startStep(kSteps[0], now);
+    } else {
+      finished = true;
+      endTrace(false);
+      totalSeconds = now - climbStart;
+    }
+  }
+
+  private void abort(double elapsed) {
+    abortedStep = step;
+    finished = true;
+    endTrace(true);
+    DriverStation.reportError(String.format("Climb aborted: %s on the %s bar took %.1f s",
+        step, kBarNames[bar], elapsed), false);
+    holdArm();
+  }
+
+  private void endTrace(boolean interrupted) {
+    if (tracedStep >= 0) {
+      CommandTracer.end(tracedStep, interrupted);
+      tracedStep = -1;
+    }
+  }
+
+  // Keeps the outer arm where it is, so an abort or interrupt never drops the robot
+  private void holdArm() {
+    climber.enablePID(climber.inputs.outerPosition);
+  }
+
+  private void updateSwing() {
+    double time = driveInputs.timestamp;
+    if (!Double.isNaN(lastPitch) && time > lastPitchTime) {
+      pitchRate = (driveInputs.gyroPitch - lastPitch) / (time - lastPitchTime);
+      int direction = pitchRate > Constants.climbSwingTurnRate ? 1
+          : pitchRate < -Constants.climbSwingTurnRate ? -1 : 0;
+      newDirectionSamples = direction != 0 && direction == newDirection ? newDirectionSamples + 1 : 1;
+      newDirection = direction;
+      swingTurned = false;
+      if (direction != 0 && direction != swingDirection && newDirectionSamples >= Constants.climbSwingTurnSamples) {
+        swingTurned = swingDirection != 0;
+        swingDirection = direction;
+      }
+    }
+    lastPitch = driveInputs.gyroPitch;
+    lastPitchTime = time;
+  }
+
+  private boolean isSwingCalm() {
+    return Math.abs(pitchRate) < Constants.climbSwingCalmRate;
+  }
+
+  private boolean isArmSettled(double target) {
+    return Math.abs(target - climber.inputs.outerPosition) < Constants.climbPositionTolerance
+        && Math.abs(climber.inputs.outerVelocity) < Constants.climbVelocityTolerance;
+  }
+
+  // True once the condition has been true for climbSettleSeconds in a row
+  private boolean held(boolean condition, double now) {
+    if (!condition) {
+      settleStart = Double.NaN;
+      return false;
+    }
+    if (Double.isNaN(settleStart)) {
+      settleStart = now;
+    }
+    return now - settleStart >= Constants.climbSettleSeconds;
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    if (interrupted && !finished) {
+      endTrace(true);
+      holdArm();
+    }
+  }
+
+  @Override
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /** @return the step the last climb aborted on, or null if it didn't */
+  public Step getAbortedStep() {
+    return abortedStep;
+  }
+}
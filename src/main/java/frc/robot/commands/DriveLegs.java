@@ -0,0 +1,52 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.util.CommandTracer;
+
+/**
+ * Autos that are a list of turn in place, then drive straight.
+ * Each leg is {navX angle to turn to, inches to drive}, use kNoTurn to drive without turning first
+ */
+public final class DriveLegs {
+  public static final int kAngle = 0;
+  public static final int kInches = 1;
+  public static final double kNoTurn = Double.NaN;
+
+  private DriveLegs() {}
+
+  /**
+   * (Displacement / (2 * pi * radius of the wheel)) * 8.41 = Rotations
+   * @param inches distance for the wheels to roll
+   * @return motor rotations
+   */
+  public static double inchesToRotations(double inches) {
+    return DriveConstants.gearRatio * (inches / (6 * Math.PI));
+  }
+
+  /**
+   * @param drive the drivetrain
+   * @param legs {angle, inches} for each leg
+   * @return the turn and drive commands in order, each shows up in the command trace
+   */
+  public static Command[] toCommands(DriveSubsystem drive, double[][] legs) {
+    int count = 0;
+    for (double[] leg : legs) {
+      count += Double.isNaN(leg[kAngle]) ? 1 : 2;
+    }
+    Command[] commands = new Command[count];
+    int i = 0;
+    for (double[] leg : legs) {
+      if (!Double.isNaN(leg[kAngle])) {
+        commands[i++] = CommandTracer.traced(new TurnToAngleCommand(drive, leg[kAngle]));
+      }
+      commands[i++] = CommandTracer.traced(new AutoDriveCommand(drive, inchesToRotations(leg[kInches])));
+    }
+    return commands;
+  }
+}
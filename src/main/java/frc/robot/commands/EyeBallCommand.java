@@ -4,22 +4,22 @@
 
 package frc.robot.commands;
 
-import org.photonvision.PhotonCamera;
-import org.photonvision.targeting.PhotonPipelineResult;
-
 import edu.wpi.first.wpilibj2.command.CommandBase;
 import frc.robot.Constants;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.subsystems.VisionSubsystem;
+import frc.robot.subsystems.VisionSubsystem.VisionTarget;
 
 public class EyeBallCommand extends CommandBase {
   private final DriveSubsystem driveSubsystem;
-  private final PhotonCamera eye = new PhotonCamera("Microsoft_LifeCam_HD-3000");
+  private final VisionSubsystem eye;
   double yaw; // The x of the camera view
   double pitch; // The y of the camera view
   private double yawBias = 0;
 
-  public EyeBallCommand(DriveSubsystem drive, double yawBias) {
+  public EyeBallCommand(DriveSubsystem drive, VisionSubsystem vision, double yawBias) {
     driveSubsystem = drive;
+    eye = vision;
     this.yawBias = yawBias;
     addRequirements(drive);
   }
@@ -32,14 +32,14 @@ public class EyeBallCommand extends CommandBase {
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
-    // Gets the values from this object
-    PhotonPipelineResult eyeValues = eye.getLatestResult();
+    // The newest camera result, read by the VisionSubsystem
+    VisionTarget eyeValues = eye.getTarget();
 
-    if (eyeValues.hasTargets()) {
+    if (eyeValues.hasTargets) {
       // Add or subtract to the yaw or pitch to get to a dersired location on the
       // camera
-      yaw = eyeValues.getBestTarget().getYaw() + yawBias;
-      pitch = eyeValues.getBestTarget().getPitch() + Constants.pitchOffset;
+      yaw = eyeValues.yaw + yawBias;
+      pitch = eyeValues.pitch + Constants.pitchOffset;
       driveSubsystem.manualDrive(yaw * 0.20, pitch * 0.3, Constants.yawDriveScale, Constants.pitchDriveScale);
 
     } else if (yaw >= 5 || pitch >= 5) { // This is to prevent the robot from stoping when tracking is flickering
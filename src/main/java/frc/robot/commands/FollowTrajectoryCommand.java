@@ -0,0 +1,148 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.trajectory.TrajectoryFile;
+import frc.robot.util.Telemetry;
+
+/**
+ * Drives a whole precomputed trajectory in one motion with a RAMSETE controller.
+ * The trajectory comes from src/main/deploy/trajectories and is made offline
+ * by ./gradlew generateTrajectories, nothing is generated on the robot
+ */
+public class FollowTrajectoryCommand extends CommandBase {
+  private final DriveSubsystem driveSubsystem;
+  private final String fileName;
+  private TrajectoryFile trajectory;
+  // Set when the file couldn't be loaded, so it's only tried and reported once instead of every loop
+  private boolean loadFailed = false;
+
+  private final double[] sample = new double[TrajectoryFile.kValues];
+  private int sampleIndex = 0;
+  private double startTime;
+
+  // Tracking error for the current run
+  private double maxError = 0;
+  private double sumSquaredError = 0;
+  private int errorSamples = 0;
+
+  // Shared by every trajectory so the dashboard shows the last one
+  private static double lastLoadMillis = 0;
+  private static double lastMaxError = 0;
+  private static double lastRmsError = 0;
+
+  static {
+    Telemetry.addNumber("Trajectory Load ms", () -> lastLoadMillis, 0.01, 1);
+    Telemetry.addNumber("Trajectory Max Error", () -> lastMaxError, 0.001, 0.5);
+    Telemetry.addNumber("Trajectory RMS Error", () -> lastRmsError, 0.001, 0.5);
+  }
+
+  /**
+   * @param drive the drivetrain
+   * @param fileName name of the file in the deploy trajectories folder, like "TwoBall.traj"
+   */
+  public FollowTrajectoryCommand(DriveSubsystem drive, String fileName) {
+    driveSubsystem = drive;
+    this.fileName = fileName;
+    addRequirements(drive);
+  }
+
+  /**
+   * Maps the trajectory file if it isn't already. Call this when the auto is
+   * picked so it isn't done at the start of autonomous
+   * @return true if the trajectory is ready, false if it couldn't be loaded this time or before
+   */
+  public boolean load() {
+    if (trajectory != null) {
+      return true;
+    }
+    if (loadFailed) {
+      return false;
+    }
+    long start = System.nanoTime();
+    try {
+      trajectory = TrajectoryFile.load(new File(Filesystem.getDeployDirectory(), "trajectories/" + fileName));
+    } catch (IOException e) {
+      loadFailed = true;
+      DriverStation.reportError("Could not load trajectory " + fileName + ": " + e.getMessage(), false);
+      return false;
+    }
+    lastLoadMillis = (System.nanoTime() - start) / 1e6;
+    return true;
+  }
+
+  @Override
+  public void initialize() {
+    maxError = 0;
+    sumSquaredError = 0;
+    errorSamples = 0;
+    sampleIndex = 0;
+    if (!load()) {
+      return;
+    }
+    // Start the pose where the trajectory starts
+    driveSubsystem.resetPose(trajectory.get(0, TrajectoryFile.kX),
+        trajectory.get(0, TrajectoryFile.kY), trajectory.get(0, TrajectoryFile.kHeading));
+    startTime = Timer.getFPGATimestamp();
+  }
+
+  @Override
+  public void execute() {
+    if (trajectory == null) {
+      return;
+    }
+    sampleIndex = trajectory.sample(Timer.getFPGATimestamp() - startTime, sampleIndex, sample);
+    double x = driveSubsystem.inputs.poseX;
+    double y = driveSubsystem.inputs.poseY;
+    double heading = driveSubsystem.inputs.poseHeading;
+
+    // Error in the robot's frame
+    double dx = sample[TrajectoryFile.kX] - x;
+    double dy = sample[TrajectoryFile.kY] - y;
+    double errorX = Math.cos(heading) * dx + Math.sin(heading) * dy;
+    double errorY = -Math.sin(heading) * dx + Math.cos(heading) * dy;
+    double errorHeading = Math.IEEEremainder(sample[TrajectoryFile.kHeading] - heading, 2 * Math.PI);
+
+    // RAMSETE
+    double velocity = sample[TrajectoryFile.kVelocity];
+    double angularVelocity = velocity * sample[TrajectoryFile.kCurvature];
+    double k = 2 * DriveConstants.ramseteZeta
+        * Math.sqrt(angularVelocity * angularVelocity + DriveConstants.ramseteB * velocity * velocity);
+    double sinc = Math.abs(errorHeading) < 1e-9 ? 1 : Math.sin(errorHeading) / errorHeading;
+    double v = velocity * Math.cos(errorHeading) + k * errorX;
+    double omega = angularVelocity + k * errorHeading + DriveConstants.ramseteB * velocity * sinc * errorY;
+
+    double halfTrack = DriveConstants.trackWidthMeters / 2;
+    driveSubsystem.driveWheelSpeeds(v - omega * halfTrack, v + omega * halfTrack);
+
+    double error = Math.sqrt(dx * dx + dy * dy);
+    maxError = Math.max(maxError, error);
+    sumSquaredError += error * error;
+    errorSamples++;
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    driveSubsystem.turnOffDriveMotors();
+    if (errorSamples > 0) {
+      lastMaxError = maxError;
+      lastRmsError = Math.sqrt(sumSquaredError / errorSamples);
+    }
+  }
+
+  @Override
+  public boolean isFinished() {
+    return trajectory == null || Timer.getFPGATimestamp() - startTime >= trajectory.getTotalTime();
+  }
+}
@@ -13,24 +13,24 @@ import frc.robot.subsystems.BallTransitSubsystem;
 import frc.robot.subsystems.DriveSubsystem;
 
 public class SimpleAuto extends SequentialCommandGroup {
+  // {navX angle, inches} for each leg, see DriveLegs
+  public static final double[][] kLegs = {
+    {DriveLegs.kNoTurn, -23.125},
+    {164, 69},
+    {-60, 107.1875},
+    {-53, 100.44},
+    {16, 25.9}
+  };
+
   /** Creates a new SimpleAuto. */
   public SimpleAuto(DriveSubsystem drive, BallTransitSubsystem transitSubsystem) {
     //This is to make an on the fly command
-    addCommands(
-      /*new InstantCommand(()->transitSubsystem.resetPosition(), transitSubsystem),
+    /*addCommands(
+      new InstantCommand(()->transitSubsystem.resetPosition(), transitSubsystem),
       new InstantCommand(()->transitSubsystem.releaseArm(), transitSubsystem),
       new WaitCommand(1.5),
-      new StartEndCommand(()->transitSubsystem.outTake(), ()->transitSubsystem.turnOffIntakeMotor(), transitSubsystem).withTimeout(1),
-      */
-      new AutoDriveCommand(drive, -8.41 *  (23.125 / (6 * Math.PI))),
-      new TurnToAngleCommand(drive, 164),
-      new AutoDriveCommand(drive, 8.41 * (69 / (6 * Math.PI))),
-      new TurnToAngleCommand(drive, -60),
-      new AutoDriveCommand(drive, 8.41 * (107.1875 / (6 * Math.PI))),
-      new TurnToAngleCommand(drive, -53),
-      new AutoDriveCommand(drive, 8.41 * ( 100.44 / (6 * Math.PI))),
-      new TurnToAngleCommand(drive, 16),
-      new AutoDriveCommand(drive, 8.41 * (25.9 / (6 * Math.PI)))
-    );
-    }
+      new StartEndCommand(()->transitSubsystem.outTake(), ()->transitSubsystem.turnOffIntakeMotor(), transitSubsystem).withTimeout(1));
+    */
+    addCommands(DriveLegs.toCommands(drive, kLegs));
+  }
 }
@@ -32,8 +32,10 @@ public class SwerveCommand extends CommandBase {
   public void execute() {
     //This just includes both the gyro and ultrasonic senor to create the swerve motion
     //Increase or decrease the scale to have the right motion
-    if (Math.abs(driveSubsystem.distanceError(neededDistance)) > 3 && Math.abs(driveSubsystem.angleError(neededAngle)) > 1) {
-      driveSubsystem.manualDrive(driveSubsystem.angleError(neededAngle) * 0.4, -driveSubsystem.distanceError(neededDistance) * 0.5, 15, 20);
+    double distanceError = driveSubsystem.distanceError(neededDistance);
+    double angleError = driveSubsystem.angleError(neededAngle);
+    if (Math.abs(distanceError) > 3 && Math.abs(angleError) > 1) {
+      driveSubsystem.manualDrive(angleError * 0.4, -distanceError * 0.5, 15, 20);
     }
   }
 
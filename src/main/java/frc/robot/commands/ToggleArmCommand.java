@@ -30,8 +30,13 @@ public class ToggleArmCommand extends CommandBase {
 
 	@Override
 	public void initialize() {
-		
-		if (ballTransitSubsystem.checkArmUp()) {
+		// Go the other way from where it was last sent, even if it's still on the way there
+		PositionMode target = ballTransitSubsystem.getArmTarget();
+		if (target == PositionMode.goUp || target == PositionMode.goUpHigher) {
+			mode = PositionMode.goDown;
+		} else if (target == PositionMode.goDown) {
+			mode = PositionMode.goUp;
+		} else if (ballTransitSubsystem.checkArmUp()) {
 			mode = PositionMode.goDown;
 			// When limit swtich on the bottom is not clicked then set mode to goDown
 		} else if (ballTransitSubsystem.checkArmDown()) {
@@ -53,23 +58,14 @@ public class ToggleArmCommand extends CommandBase {
 	}
 
 	@Override
-	public void end(boolean interrupted) {
-		if(mode == PositionMode.goDown && interrupted){
-			ballTransitSubsystem.setMinOutput(-0.3);
-		}
-	}
+	public void end(boolean interrupted) {}
 
 	// Returns true when the command should end.
 	@Override
 	public boolean isFinished() {
-		if (mode == PositionMode.goDown) {
-			if (ballTransitSubsystem.checkArmDown()){
-				ballTransitSubsystem.setMinOutput(-0.3);
-				return true;
-			}
-			return false;
-		} else if (mode == PositionMode.goUp) {
-			return ballTransitSubsystem.checkArmUp();
+		// The arm's profile is done and it's holding on the target, or it was cut on the way and isn't getting there
+		if (mode == PositionMode.goDown || mode == PositionMode.goUp) {
+			return ballTransitSubsystem.isArmMoveFinished();
 		}
 		return false;
 	}
@@ -12,12 +12,11 @@ public class TurnToAngleCommand extends CommandBase {
   @SuppressWarnings({"PMD.UnusedPrivateField", "PMD.SingularField"})
   private final DriveSubsystem driveSubsystem;
   
-  // The gain for a simple P loop
-  double kP = .4;
   double neededAngle = 0;
 
   /**
    * Turns robot to angle
+   * The turning itself is done by the drive's heading controller at 200Hz, this only starts and stops it
    * @param subsystem
    * @param neededAngle input wanted angle
    */
@@ -29,26 +28,22 @@ public class TurnToAngleCommand extends CommandBase {
 
   // Called when the command is initially scheduled.
   @Override
-  public void initialize() {}
-  
+  public void initialize() {
+    driveSubsystem.startTurn(neededAngle);
+  }
+
   @Override
-  public void execute() {
-    if (Math.abs(driveSubsystem.angleError(neededAngle)) > 1){//This is our allowed angle error
-     driveSubsystem.manualDrive(driveSubsystem.angleError(neededAngle) * kP, 0.0, 55, 0.0);
-    }
-  } 
+  public void execute() {}
 
   @Override
   public void end(boolean interrupted) {
+    driveSubsystem.stopTurn();
     driveSubsystem.resetEncoders();
   }
 
-  // Returns true when the command should end.
+  // Returns true once the heading controller is on the angle and has stopped moving
   @Override
   public boolean isFinished() {
-    if (Math.abs(driveSubsystem.angleError(neededAngle)) < 3){
-      return true;
-    }
-    return false;
+    return driveSubsystem.isTurnSettled();
   }
 }
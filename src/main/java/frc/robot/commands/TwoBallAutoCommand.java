@@ -12,6 +12,15 @@ import frc.robot.subsystems.BallTransitSubsystem;
 import frc.robot.subsystems.DriveSubsystem;
 
 public class TwoBallAutoCommand extends SequentialCommandGroup {
+  // {navX angle, inches} for each leg, see DriveLegs
+  public static final double[][] kLegs = {
+    {DriveLegs.kNoTurn, -23.125},
+    {146, 69},
+    {-89, 107.1875},
+    {40, 100.44},
+    {2, 5}
+  };
+
   /**
    * This is where most of the auto code should go.
    * It should be built by using commands that are running seqentially
@@ -26,15 +35,7 @@ public class TwoBallAutoCommand extends SequentialCommandGroup {
       //Command list of wanted movement
       //new InstantCommand(()->ballTransitSubsystem.releaseArm(), transitSubsystem),
       //new StartEndCommand(()->transitSubsystem.outTake(), ()->transitSubsystem.turnOffIntakeMotor(), transitSubsystem).withTimeout(1),
-      new AutoDriveCommand(drive, -8.41 *  (23.125 / (6 * Math.PI))),
-      new TurnToAngleCommand(drive, 146),
-      new AutoDriveCommand(drive, 8.41 * (69 / (6 * Math.PI))),
-      new TurnToAngleCommand(drive, -89),
-      new AutoDriveCommand(drive, 8.41 * (107.1875 / (6 * Math.PI))),
-      new TurnToAngleCommand(drive, 40),
-      new AutoDriveCommand(drive, 8.41 * ( 100.44 / (6 * Math.PI))),
-      new TurnToAngleCommand(drive, 2),
-      new AutoDriveCommand(drive, 8.41 * (5 / (6 * Math.PI)))
+      DriveLegs.toCommands(drive, kLegs)
 
         //Tests
         /*new SetDistanceCommand(drive, 80),
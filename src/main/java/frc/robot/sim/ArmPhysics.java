@@ -0,0 +1,96 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.sim;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
+
+/**
+ * Physics for an arm on a pivot driven by one NEO, with gravity and hard stops at both ends.
+ * Unlike {@link MechanismPhysics} gravity pulls on it, so the arm's feedforward can be tested
+ */
+public class ArmPhysics {
+  // Smaller steps than the loop so the hard stops and gravity stay stable
+  private static final int kSubsteps = 10;
+
+  private final SparkMaxSim motor;
+  private final DCMotor neo = DCMotor.getNEO(1);
+  private final double gearing;
+  private final double momentOfInertia;
+  // Gravity torque when the arm is level, in Nm
+  private final double gravityTorque;
+  private final double minAngle;
+  private final double maxAngle;
+
+  private DIOSim limitSwitch = null;
+
+  private double angle;
+  private double angularVelocity = 0;
+  private double current = 0;
+
+  /**
+   * @param motor the controller
+   * @param gearing motor rotations per arm rotation
+   * @param momentOfInertia of the arm around the pivot in kg m^2
+   * @param massKg arm mass
+   * @param centerOfMassMeters from the pivot
+   * @param minDegrees the bottom hard stop, where the arm starts, 0 is level
+   * @param maxDegrees the top hard stop
+   */
+  public ArmPhysics(SparkMaxSim motor, double gearing, double momentOfInertia, double massKg,
+      double centerOfMassMeters, double minDegrees, double maxDegrees) {
+    this.motor = motor;
+    this.gearing = gearing;
+    this.momentOfInertia = momentOfInertia;
+    gravityTorque = massKg * 9.81 * centerOfMassMeters;
+    minAngle = Math.toRadians(minDegrees);
+    maxAngle = Math.toRadians(maxDegrees);
+    angle = minAngle;
+  }
+
+  /**
+   * Adds a limit switch that reads true while the arm is on the bottom hard stop
+   * @param limitSwitch the switch
+   * @return this so calls can be chained
+   */
+  public ArmPhysics withLowerLimit(DIOSim limitSwitch) {
+    this.limitSwitch = limitSwitch;
+    return this;
+  }
+
+  /**
+   * Moves the arm forward one step
+   * @param dt seconds
+   */
+  public void update(double dt) {
+    double volts = motor.getOutput(dt) * RobotController.getBatteryVoltage();
+    double startAngle = angle;
+    double h = dt / kSubsteps;
+    for (int i = 0; i < kSubsteps; i++) {
+      double motorSpeed = angularVelocity * gearing;
+      current = (volts - motorSpeed / neo.KvRadPerSecPerVolt) / neo.rOhms;
+      double torque = neo.KtNMPerAmp * current * gearing - gravityTorque * Math.cos(angle);
+      angularVelocity += torque / momentOfInertia * h;
+      angle += angularVelocity * h;
+      if (angle <= minAngle) {
+        angle = minAngle;
+        angularVelocity = Math.max(0, angularVelocity);
+      } else if (angle >= maxAngle) {
+        angle = maxAngle;
+        angularVelocity = Math.min(0, angularVelocity);
+      }
+    }
+
+    // Only add what moved this step so encoder resets from the robot code stick
+    double rotations = (angle - startAngle) / (2 * Math.PI) * gearing;
+    double rpm = angularVelocity / (2 * Math.PI) * gearing * 60;
+    motor.setState(motor.getPosition() + rotations, rpm, Math.abs(current));
+
+    if (limitSwitch != null) {
+      limitSwitch.setValue(angle <= minAngle + 1e-6);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.sim;
+
+import edu.wpi.first.hal.SimDouble;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.BatterySim;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import edu.wpi.first.wpilibj.simulation.SimDeviceSim;
+import frc.robot.Constants;
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * Differential drive physics for the drivetrain.
+ * Moves the four drive encoders and the navX yaw like the real robot would.
+ * {@link #reset(Variation)} puts the robot back at the start and can make it a little
+ * different from the ideal one, the Monte Carlo tool runs the autos on many of those
+ */
+public class DrivetrainPhysics {
+  /** How one simulated robot differs from the ideal one */
+  public static final class Variation {
+    public static final Variation kNone = new Variation(1, 1, 0, 0, 0, 1);
+
+    final double leftStrength;
+    final double rightStrength;
+    final double leftSlip;
+    final double rightSlip;
+    final double gyroDrift;
+    final double trackScale;
+
+    /**
+     * @param leftStrength multiplies the voltage the left motors get
+     * @param rightStrength
+     * @param leftSlip 0 to 1, how much of the wheel travel the robot doesn't move
+     * @param rightSlip
+     * @param gyroDrift navX drift in degrees per second
+     * @param trackScale multiplies the track width, over 1 for wheels that scrub when turning
+     */
+    public Variation(double leftStrength, double rightStrength, double leftSlip, double rightSlip,
+        double gyroDrift, double trackScale) {
+      this.leftStrength = leftStrength;
+      this.rightStrength = rightStrength;
+      this.leftSlip = leftSlip;
+      this.rightSlip = rightSlip;
+      this.gyroDrift = gyroDrift;
+      this.trackScale = trackScale;
+    }
+  }
+
+  private final SparkMaxSim leftFront;
+  private final SparkMaxSim leftBack;
+  private final SparkMaxSim rightFront;
+  private final SparkMaxSim rightBack;
+
+  private DifferentialDrivetrainSim drivetrain;
+  private Variation variation = Variation.kNone;
+  private double time = 0;
+
+  private final SimDouble gyroYaw = new SimDeviceSim("navX-Sensor[0]").getDouble("Yaw");
+
+  private double lastLeftMeters = 0;
+  private double lastRightMeters = 0;
+
+  public DrivetrainPhysics(SparkMaxSim leftFront, SparkMaxSim leftBack, SparkMaxSim rightFront, SparkMaxSim rightBack) {
+    this.leftFront = leftFront;
+    this.leftBack = leftBack;
+    this.rightFront = rightFront;
+    this.rightBack = rightBack;
+    drivetrain = newDrivetrain(1);
+  }
+
+  private static DifferentialDrivetrainSim newDrivetrain(double trackScale) {
+    return new DifferentialDrivetrainSim(DCMotor.getNEO(2), DriveConstants.gearRatio,
+        Constants.SimConstants.driveMomentOfInertia, Constants.SimConstants.robotMassKg,
+        DriveConstants.wheelDiameterMeters / 2, DriveConstants.trackWidthMeters * trackScale, null);
+  }
+
+  /**
+   * Stops the robot at the origin facing forward with the encoders and navX at 0.
+   * The robot code should reset its own encoders and pose after this
+   * @param variation how this robot is different, {@link Variation#kNone} for the ideal one
+   */
+  public void reset(Variation variation) {
+    this.variation = variation;
+    drivetrain = newDrivetrain(variation.trackScale);
+    time = 0;
+    lastLeftMeters = 0;
+    lastRightMeters = 0;
+    for (SparkMaxSim motor : new SparkMaxSim[] {leftFront, leftBack, rightFront, rightBack}) {
+      motor.reset();
+    }
+    gyroYaw.set(0);
+  }
+
+  /**
+   * Moves the robot forward one step
+   * @param dt seconds
+   */
+  public void update(double dt) {
+    double volts = RobotController.getBatteryVoltage();
+    // The right motors turn backwards to drive forward
+    double left = (leftFront.getOutput(dt) + leftBack.getOutput(dt)) / 2;
+    double right = -(rightFront.getOutput(dt) + rightBack.getOutput(dt)) / 2;
+    drivetrain.setInputs(left * volts * variation.leftStrength, right * volts * variation.rightStrength);
+    drivetrain.update(dt);
+    time += dt;
+
+    // Only add what moved this step so encoder resets from the robot code stick.
+    // A slipping wheel turns further than the robot moved
+    double leftDelta = (drivetrain.getLeftPositionMeters() - lastLeftMeters) / DriveConstants.metersPerRotation
+        / (1 - variation.leftSlip);
+    double rightDelta = -(drivetrain.getRightPositionMeters() - lastRightMeters) / DriveConstants.metersPerRotation
+        / (1 - variation.rightSlip);
+    lastLeftMeters = drivetrain.getLeftPositionMeters();
+    lastRightMeters = drivetrain.getRightPositionMeters();
+    double leftRpm = drivetrain.getLeftVelocityMetersPerSecond() / DriveConstants.metersPerRotation * 60;
+    double rightRpm = -drivetrain.getRightVelocityMetersPerSecond() / DriveConstants.metersPerRotation * 60;
+    double leftAmps = drivetrain.getLeftCurrentDrawAmps() / 2;
+    double rightAmps = drivetrain.getRightCurrentDrawAmps() / 2;
+    leftFront.setState(leftFront.getPosition() + leftDelta, leftRpm, leftAmps);
+    leftBack.setState(leftBack.getPosition() + leftDelta, leftRpm, leftAmps);
+    rightFront.setState(rightFront.getPosition() + rightDelta, rightRpm, rightAmps);
+    rightBack.setState(rightBack.getPosition() + rightDelta, rightRpm, rightAmps);
+
+    // navX yaw is clockwise positive and wraps at +-180
+    gyroYaw.set(Math.IEEEremainder(-drivetrain.getHeading().getDegrees() + variation.gyroDrift * time, 360));
+
+    // The drivetrain pulls almost all the current so it's the only thing that sags the battery
+    RoboRioSim.setVInVoltage(BatterySim.calculateDefaultBatteryLoadedVoltage(drivetrain.getCurrentDrawAmps()));
+  }
+
+  /** @return where the robot really is, x in meters */
+  public double getX() {
+    return drivetrain.getPose().getX();
+  }
+
+  /** @return where the robot really is, y in meters */
+  public double getY() {
+    return drivetrain.getPose().getY();
+  }
+
+  /** @return the real heading in degrees, counterclockwise positive */
+  public double getHeading() {
+    return drivetrain.getHeading().getDegrees();
+  }
+}
@@ -0,0 +1,67 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.sim;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
+
+/**
+ * Physics for a mechanism driven by one NEO through a gearbox, like the intake arm or the climber.
+ * Gravity and hard stops aren't modeled, it's just the motor spinning a load
+ */
+public class MechanismPhysics {
+  private final SparkMaxSim motor;
+  private final DCMotorSim mechanism;
+  private final double gearing;
+
+  private DIOSim limitSwitch = null;
+  private double limitPosition = 0;
+
+  private double lastRotations = 0;
+
+  /**
+   * @param motor the controller
+   * @param gearing motor rotations per mechanism rotation
+   * @param momentOfInertia of the load in kg m^2
+   */
+  public MechanismPhysics(SparkMaxSim motor, double gearing, double momentOfInertia) {
+    this.motor = motor;
+    this.gearing = gearing;
+    mechanism = new DCMotorSim(DCMotor.getNEO(1), gearing, momentOfInertia);
+  }
+
+  /**
+   * Adds a limit switch that reads true while the encoder is at or below a position
+   * @param limitSwitch the switch
+   * @param position in motor rotations
+   * @return this so calls can be chained
+   */
+  public MechanismPhysics withLowerLimit(DIOSim limitSwitch, double position) {
+    this.limitSwitch = limitSwitch;
+    limitPosition = position;
+    return this;
+  }
+
+  /**
+   * Moves the mechanism forward one step
+   * @param dt seconds
+   */
+  public void update(double dt) {
+    mechanism.setInputVoltage(motor.getOutput(dt) * RobotController.getBatteryVoltage());
+    mechanism.update(dt);
+
+    // Only add what moved this step so encoder resets from the robot code stick
+    double rotations = mechanism.getAngularPositionRad() / (2 * Math.PI) * gearing;
+    double position = motor.getPosition() + rotations - lastRotations;
+    lastRotations = rotations;
+    motor.setState(position, mechanism.getAngularVelocityRPM() * gearing, mechanism.getCurrentDrawAmps());
+
+    if (limitSwitch != null) {
+      limitSwitch.setValue(position <= limitPosition);
+    }
+  }
+}
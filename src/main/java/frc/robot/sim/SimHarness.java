@@ -0,0 +1,149 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.sim;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants;
+import frc.robot.Robot;
+import frc.robot.RobotContainer;
+import frc.robot.subsystems.DriveSubsystem;
+
+/**
+ * Runs the robot code in the headless simulator with the clock stepped by hand.
+ * {@link #start()} brings up the HAL with timing paused, so nothing moves until {@link #step()}
+ * is called, Notifiers included, and everything runs as fast as the code can go.
+ * Used by the JUnit tests in src/test and by the tools in src/tools.
+ *
+ * <p>The HAL and the command scheduler are one per process, so each test class gets its own
+ * JVM (forkEvery in build.gradle). The Notifier threads would keep a tool's JVM running, so
+ * tools end with System.exit()
+ */
+public final class SimHarness {
+  /** How long one robot loop is */
+  public static final double kPeriod = TimedRobot.kDefaultPeriod;
+
+  // Time to coast to a stop after an auto so the end pose is where the robot stays
+  private static final double kCoastSeconds = 1;
+
+  private static boolean started = false;
+
+  private SimHarness() {}
+
+  /** Gives tests and tools the loop Robot runs every 20ms */
+  public static class SimRobot extends Robot {
+    public void runCycle() {
+      loopFunc();
+    }
+  }
+
+  /** Starts the HAL with the clock paused. Does nothing after the first call */
+  public static synchronized void start() {
+    if (started) {
+      return;
+    }
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+    SimHooks.pauseTiming();
+    started = true;
+  }
+
+  /** Moves the clock one loop */
+  public static void step() {
+    SimHooks.stepTiming(kPeriod);
+  }
+
+  /**
+   * Sets what the driver station says and waits for DriverStation to pick it up
+   * @param enabled
+   * @param autonomous teleop if false
+   */
+  public static void setMode(boolean enabled, boolean autonomous) {
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(autonomous);
+    DriverStationSim.setEnabled(enabled);
+    DriverStationSim.notifyNewData();
+  }
+
+  /**
+   * Plugs in joysticks with every button and the given number of axes
+   * @param sticks how many, starting at port 0
+   * @param axes
+   */
+  public static void setJoysticks(int sticks, int axes) {
+    for (int stick = 0; stick < sticks; stick++) {
+      DriverStationSim.setJoystickAxisCount(stick, axes);
+      DriverStationSim.setJoystickButtonCount(stick, 32);
+    }
+  }
+
+  /**
+   * Drives slow circles with the driver stick, so manual drive changes its setpoints
+   * every loop like a driver would
+   * @param cycle loops since driving started
+   */
+  public static void moveDriverStick(int cycle) {
+    double t = cycle * kPeriod;
+    DriverStationSim.setJoystickAxis(0, 0, 0.5 * Math.sin(t));
+    DriverStationSim.setJoystickAxis(0, 1, -0.8 * Math.cos(0.5 * t));
+    DriverStationSim.notifyNewData();
+  }
+
+  /**
+   * Schedules a command and runs the scheduler until it finishes, which also runs
+   * every subsystem's simulationPeriodic()
+   * @param command
+   * @param maxSeconds gives up after this long
+   * @return how many loops it ran, 0 if it never got scheduled
+   */
+  public static int run(Command command, double maxSeconds) {
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    int maxCycles = (int) Math.ceil(maxSeconds / kPeriod);
+    int cycles = 0;
+    command.schedule();
+    while (cycles < maxCycles && command.isScheduled()) {
+      scheduler.run();
+      step();
+      cycles++;
+    }
+    return cycles;
+  }
+
+  /**
+   * Runs an auto from the starting line like it would in a match, then disables and
+   * lets the robot coast to a stop
+   * @param container
+   * @param auto one of the container's autos
+   * @param variation how the simulated robot differs from the ideal one
+   * @return seconds the auto took, NaN if it didn't finish in the auto period
+   */
+  public static double runAuto(RobotContainer container, Command auto, DrivetrainPhysics.Variation variation) {
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    DriveSubsystem drive = container.getDriveSubsystem();
+    drive.getPhysics().reset(variation);
+    drive.resetGyro();
+    drive.resetEncoders();
+    drive.resetPose(0, 0, 0);
+
+    setMode(true, true);
+    int cycles = run(auto, Constants.SimConstants.autoLengthSeconds);
+    // Zero cycles means it never got scheduled, which isn't finishing
+    boolean finished = cycles > 0 && !auto.isScheduled();
+
+    scheduler.cancelAll();
+    drive.turnOffDriveMotors();
+    setMode(false, true);
+    for (int i = 0; i < kCoastSeconds / kPeriod; i++) {
+      scheduler.run();
+      step();
+    }
+    return finished ? cycles * kPeriod : Double.NaN;
+  }
+}
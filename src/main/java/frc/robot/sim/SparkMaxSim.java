@@ -0,0 +1,144 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.sim;
+
+import com.revrobotics.CANSparkMax;
+
+import edu.wpi.first.hal.SimDouble;
+import edu.wpi.first.wpilibj.simulation.SimDeviceSim;
+import frc.robot.util.SetpointCache;
+import frc.robot.util.SparkMaxConfig;
+
+/**
+ * Stands in for one SPARK MAX in simulation.
+ * REVLib only simulates duty cycle, so the closed loop modes the robot uses
+ * (velocity, smart velocity, smart motion and position) are done here from the last setpoint
+ * the {@link SetpointCache} sent and the gains in the {@link SparkMaxConfig}.
+ * The physics model calls {@link #getOutput} and gives back the new position and velocity
+ */
+public class SparkMaxSim {
+  private final CANSparkMax motor;
+  private final SetpointCache setpoint;
+  private final SparkMaxConfig config;
+
+  private final SimDouble appliedOutput;
+  private final SimDouble position;
+  private final SimDouble velocity;
+  private final SimDouble current;
+
+  // Where the smart velocity / smart motion profile is right now (RPM)
+  private double profileVelocity = 0;
+
+  /**
+   * @param motor the controller
+   * @param setpoint the cache every setpoint for this motor goes through, null if it's only run with set()
+   * @param config the gains the controller is set up with
+   */
+  public SparkMaxSim(CANSparkMax motor, SetpointCache setpoint, SparkMaxConfig config) {
+    this.motor = motor;
+    this.setpoint = setpoint;
+    this.config = config;
+    SimDeviceSim device = new SimDeviceSim("SPARK MAX [" + motor.getDeviceId() + "]");
+    appliedOutput = device.getDouble("Applied Output");
+    position = device.getDouble("Position");
+    velocity = device.getDouble("Velocity");
+    current = device.getDouble("Motor Current");
+  }
+
+  /**
+   * Runs the controller's closed loop for one step
+   * @param dt seconds since the last call
+   * @return the duty cycle the controller would put out, -1 to 1
+   */
+  public double getOutput(double dt) {
+    CANSparkMax.ControlType type = setpoint == null ? CANSparkMax.ControlType.kDutyCycle : setpoint.getLastType();
+    double value = setpoint == null ? motor.get() : setpoint.getLastValue();
+    double measured = velocity.get();
+    double output;
+    if (type == null) {
+      output = 0;
+    } else {
+      switch (type) {
+        case kDutyCycle:
+          profileVelocity = measured;
+          output = value;
+          break;
+        case kVoltage:
+          profileVelocity = measured;
+          output = value / 12;
+          break;
+        case kVelocity:
+          profileVelocity = value;
+          output = velocityLoop(value, measured);
+          break;
+        case kSmartVelocity:
+          profileVelocity = approach(profileVelocity, value, gain(config.maxAcc) * dt);
+          output = velocityLoop(profileVelocity, measured);
+          break;
+        case kSmartMotion:
+          // Trapezoid: cruise at maxVel and slow down in time to stop on the target
+          double remaining = value - position.get();
+          double stopping = Math.sqrt(2 * gain(config.maxAcc) / 60 * Math.abs(remaining)) * 60;
+          double wanted = Math.copySign(Math.min(gain(config.maxVel), stopping), remaining);
+          profileVelocity = approach(profileVelocity, wanted, gain(config.maxAcc) * dt);
+          output = velocityLoop(profileVelocity, measured);
+          break;
+        case kPosition:
+          profileVelocity = measured;
+          output = gain(config.kP) * (value - position.get());
+          break;
+        default:
+          output = 0;
+      }
+      // The controller adds the arbitrary feedforward in every closed loop mode
+      if (type != CANSparkMax.ControlType.kDutyCycle && type != CANSparkMax.ControlType.kVoltage) {
+        output += setpoint.getLastFeedforward() / 12;
+      }
+    }
+    double min = Double.isNaN(config.minOutput) ? -1 : config.minOutput;
+    double max = Double.isNaN(config.maxOutput) ? 1 : config.maxOutput;
+    output = Math.max(min, Math.min(max, output));
+    appliedOutput.set(output);
+    return output;
+  }
+
+  /** Stops the motor where it is with the encoder at 0, for {@link DrivetrainPhysics#reset} */
+  public void reset() {
+    profileVelocity = 0;
+    setState(0, 0, 0);
+  }
+
+  /** @return the encoder position, including any setPosition() the robot code did since the last step */
+  public double getPosition() {
+    return position.get();
+  }
+
+  /**
+   * Writes the physics result back where the robot code reads it
+   * @param rotations encoder position
+   * @param rpm encoder velocity
+   * @param amps motor current
+   */
+  public void setState(double rotations, double rpm, double amps) {
+    position.set(rotations);
+    velocity.set(rpm);
+    current.set(amps);
+  }
+
+  private double velocityLoop(double target, double measured) {
+    return gain(config.kFF) * target + gain(config.kP) * (target - measured);
+  }
+
+  private static double approach(double current, double target, double step) {
+    if (target > current) {
+      return Math.min(target, current + step);
+    }
+    return Math.max(target, current - step);
+  }
+
+  private static double gain(double value) {
+    return Double.isNaN(value) ? 0 : value;
+  }
+}
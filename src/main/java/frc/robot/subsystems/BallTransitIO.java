@@ -0,0 +1,19 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * Where the intake arm's sensor readings come from. {@link BallTransitIOHardware} reads the robot,
+ * the default does nothing for replaying a log
+ */
+public interface BallTransitIO {
+  default void updateInputs(BallTransitInputs inputs) {}
+
+  /** Makes where the arm is now zero, in software so nothing is written to the controller */
+  default void zeroArm(BallTransitInputs inputs) {
+    inputs.armOffset += inputs.armPosition;
+    inputs.armPosition = 0;
+  }
+}
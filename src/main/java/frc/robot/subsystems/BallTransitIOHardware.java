@@ -0,0 +1,97 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.revrobotics.RelativeEncoder;
+
+import edu.wpi.first.wpilibj.AsynchronousInterrupt;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+import frc.robot.util.MotorHealthMonitor;
+import frc.robot.util.PowerBudget;
+
+/**
+ * Reads the arm encoder, the arm down switch, what the motor health monitor found and the
+ * arm and intake's share of the power budget.
+ * The arm is homed off an interrupt on the switch closing instead of zeroing the encoder
+ * every loop it's held down: the edge time is caught on the interrupt thread, and the next
+ * read takes the encoder position at that time as the zero, once per press
+ */
+public class BallTransitIOHardware implements BallTransitIO {
+  private final RelativeEncoder armEncoder;
+  private final DigitalInput armDown;
+  private final MotorHealthMonitor.Motor armHealth;
+  private final MotorHealthMonitor.Motor intakeHealth;
+  private final PowerBudget.Consumer armPower;
+  private final PowerBudget.Consumer intakePower;
+  private final AsynchronousInterrupt armDownInterrupt;
+
+  // Written on the interrupt thread
+  private volatile double edgeTime = Double.NaN;
+  private volatile int edgeCount = 0;
+
+  private int homedEdges = 0;
+  // Raw encoder position of the arm's zero
+  private double offset = 0;
+
+  public BallTransitIOHardware(RelativeEncoder armEncoder, DigitalInput armDown,
+      MotorHealthMonitor.Motor armHealth, MotorHealthMonitor.Motor intakeHealth,
+      PowerBudget.Consumer armPower, PowerBudget.Consumer intakePower) {
+    this.armEncoder = armEncoder;
+    this.armDown = armDown;
+    this.armHealth = armHealth;
+    this.intakeHealth = intakeHealth;
+    this.armPower = armPower;
+    this.intakePower = intakePower;
+    // The switch reads true when the arm is down, so pressing it is the rising edge
+    armDownInterrupt = new AsynchronousInterrupt(armDown, (rising, falling) -> onArmDown());
+    armDownInterrupt.setInterruptEdges(true, false);
+    armDownInterrupt.enable();
+  }
+
+  // Runs on the interrupt thread
+  private void onArmDown() {
+    double time = armDownInterrupt.getRisingTimestamp();
+    // The switch bouncing isn't another press
+    if (time - edgeTime < Constants.armHomeDebounceSeconds) {
+      return;
+    }
+    edgeTime = time;
+    edgeCount++;
+  }
+
+  @Override
+  public void updateInputs(BallTransitInputs inputs) {
+    double raw = armEncoder.getPosition();
+    int edges = edgeCount;
+    if (edges != homedEdges) {
+      homedEdges = edges;
+      // The arm kept going after the switch closed, take that travel back out
+      double travel = armEncoder.getVelocity() / 60 * (Timer.getFPGATimestamp() - edgeTime);
+      double rawAtEdge = raw - travel;
+      // Where the arm thought it was when it hit the switch
+      inputs.armHomeError = rawAtEdge - offset;
+      inputs.armHomes++;
+      offset = rawAtEdge;
+    }
+    inputs.armOffset = offset;
+    inputs.armPosition = raw - offset;
+    inputs.armVelocity = armEncoder.getVelocity();
+    inputs.armDown = armDown.get();
+    inputs.armCut = armHealth.isCut();
+    inputs.intakeCut = intakeHealth.isCut();
+    inputs.intakeSpikes = intakeHealth.getSpikeCount();
+    inputs.intakePowerScale = intakePower.getScale();
+    inputs.armPowerOk = armPower.canStart();
+  }
+
+  @Override
+  public void zeroArm(BallTransitInputs inputs) {
+    offset = armEncoder.getPosition();
+    inputs.armOffset = offset;
+    inputs.armPosition = 0;
+  }
+}
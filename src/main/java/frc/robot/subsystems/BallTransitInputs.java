@@ -0,0 +1,47 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import frc.robot.util.DataLogger;
+import frc.robot.util.LoggedInputs;
+
+/** What the intake arm reads from its sensors in one cycle, filled by {@link BallTransitIO} */
+public class BallTransitInputs {
+  // Arm encoder from where it was last homed, in rotations
+  public double armPosition;
+  // In RPM
+  public double armVelocity;
+  // Raw encoder position of the home, setpoints to the controller are moved by this
+  public double armOffset;
+  // Times the arm was homed on the down switch, and how far off it was the last time
+  public int armHomes;
+  public double armHomeError;
+  // The limit switch at the bottom of the arm
+  public boolean armDown;
+  // Stopped by the motor health monitor for stalling
+  public boolean armCut;
+  public boolean intakeCut;
+  // Current spikes on the intake so far, each is usually a ball
+  public int intakeSpikes;
+  // From the power budget: what the intake output is multiplied by, and if an arm move can start
+  public double intakePowerScale = 1;
+  public boolean armPowerOk = true;
+
+  /** @return every field registered with the data log so it can be replayed */
+  public LoggedInputs registerLog() {
+    return DataLogger.addInputs("Arm/")
+        .add("Position", () -> armPosition, v -> armPosition = v)
+        .add("Velocity", () -> armVelocity, v -> armVelocity = v)
+        .add("Offset", () -> armOffset, v -> armOffset = v)
+        .add("Homes", () -> armHomes, v -> armHomes = (int) v)
+        .add("Home Error", () -> armHomeError, v -> armHomeError = v)
+        .add("Down Switch", () -> armDown ? 1 : 0, v -> armDown = v != 0)
+        .add("Cut", () -> armCut ? 1 : 0, v -> armCut = v != 0)
+        .add("Intake Cut", () -> intakeCut ? 1 : 0, v -> intakeCut = v != 0)
+        .add("Intake Spikes", () -> intakeSpikes, v -> intakeSpikes = (int) v)
+        .add("Intake Power Scale", () -> intakePowerScale, v -> intakePowerScale = v)
+        .add("Power Ok", () -> armPowerOk ? 1 : 0, v -> armPowerOk = v != 0);
+  }
+}
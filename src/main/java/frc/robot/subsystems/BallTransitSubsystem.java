@@ -14,11 +14,29 @@ import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.PneumaticHub;
 import edu.wpi.first.wpilibj.PneumaticsModuleType;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
+import edu.wpi.first.wpilibj.simulation.DIOSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
 import frc.robot.commands.ToggleArmCommand.PositionMode;
+import frc.robot.sim.ArmPhysics;
+import frc.robot.sim.SparkMaxSim;
+import frc.robot.util.CanBudget;
+import frc.robot.util.DataLogger;
+import frc.robot.util.LogReplay;
+import frc.robot.util.LoggedInputs;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.MotionProfile;
+import frc.robot.util.MotorHealthMonitor;
+import frc.robot.util.PowerBudget;
+import frc.robot.util.SetpointCache;
+import frc.robot.util.SparkMaxConfig;
+import frc.robot.util.SparkMaxConfigurator;
+import frc.robot.util.Telemetry;
 
 
 public class BallTransitSubsystem extends SubsystemBase {
@@ -26,31 +44,101 @@ public class BallTransitSubsystem extends SubsystemBase {
   private final CANSparkMax intakeMotor = new CANSparkMax(Constants.intakeMotorID, MotorType.kBrushless);
 
   private SparkMaxPIDController armMotorPIDCon = armIntakeMotor.getPIDController();
+  private final SetpointCache armSetpoint = new SetpointCache(armMotorPIDCon, Constants.setpointRefreshMs)
+      .withDeadband(CANSparkMax.ControlType.kPosition, Constants.positionSetpointDeadband);
 
   private RelativeEncoder armEncoder = armIntakeMotor.getEncoder();
   private DigitalInput armDown = new DigitalInput(Constants.armDownPort);
 
+  // Limited then cut if the arm stalls against something, the intake is cut if a ball jams it
+  private final MotorHealthMonitor.Motor armHealth = MotorHealthMonitor.add("Arm", armIntakeMotor, CanBudget.kEnabled)
+      .withStall(Constants.armStallAmps)
+      .withLimit(Constants.armLimitAmps)
+      .withCut(Constants.armCutSeconds);
+  private final MotorHealthMonitor.Motor intakeHealth = MotorHealthMonitor.add("Intake", intakeMotor, CanBudget.kEnabled)
+      .withStall(Constants.intakeStallAmps)
+      .withSpike(Constants.intakeSpikeAmps)
+      .withCut(Constants.intakeCutSeconds);
+  // Arm moves wait for room in the power budget, the intake is the first thing slowed
+  private final PowerBudget.Consumer armPower = PowerBudget.add("Arm", 1, Constants.armPdpChannels)
+      .withMinScale(1)
+      .withStartAmps(Constants.armStartAmps);
+  private final PowerBudget.Consumer intakePower = PowerBudget.add("Intake", 0, Constants.intakePdpChannels);
+  // Where the arm was last sent, it isn't sent there again after being cut on the way
+  private PositionMode armTarget = PositionMode.broken;
+  // A move that's waiting for the power budget, started from periodic()
+  private PositionMode armPending = null;
+  private double armPendingSince = 0;
+  // -1 in, 1 out, 0 off. Kept so the output follows the power budget while it runs
+  private double intakeDirection = 0;
+
+  // The arm follows a trapezoid planned here, the controller only holds the position it's given
+  // each loop with the feedforward added. Motor rotations from the home
+  private final MotionProfile armProfile = new MotionProfile(Constants.armMaxVelocity, Constants.armMaxAcceleration);
+  private boolean armProfiling = false;
+  private double armProfileStart = 0;
+  private boolean armMoveDone = false;
+  // The arm was cut before it got there, the move is done but it didn't make it
+  private boolean armMoveFailed = false;
+  // How long the last move took from setArmAngle(), and how far off the arm was when it ended
+  private double lastMoveSeconds = 0;
+  private double lastMoveError = 0;
+
+  // Sensor readings for this cycle
+  public final BallTransitInputs inputs = new BallTransitInputs();
+  private final LoggedInputs loggedInputs = inputs.registerLog();
+  // The sensors, or nothing when a log is being replayed
+  private final BallTransitIO io;
+
+  private final int periodicProfilerId = LoopProfiler.register("BallTransitSubsystem.periodic");
+
+  // Only made in simulation
+  private ArmPhysics armPhysics = null;
+
   
 
  
   //private DoubleSolenoid piston = new DoubleSolenoid(0,PneumaticsModuleType.CTREPCM, 1, 1);
 
-  int smartMotionSlot = 0;
-  int allowedErr;
-  int minVel;
-  double kP = 4e-4;
+  // Position loop on the profile, the feedforward does most of the work.
+  // Duty cycle per rotation of error
+  double kP = 0.1;
   double kI = 0;
   double kD = 0;
   double kIz = 0;
-  double kFF = 0.000156;
+  double kFF = 0;
   double kMaxOutput = 1; 
-  double kMinOutput = -.3;
-  double maxVel = 3000;
-  double maxAcc = 1200;
+  double kMinOutput = -1;
 
    public BallTransitSubsystem() {
-     initializePID(armMotorPIDCon, armEncoder);
+     SparkMaxConfig armConfig = new SparkMaxConfig()
+         .pid(kP, kI, kD, kIz, kFF)
+         .outputRange(kMinOutput, kMaxOutput);
+     SparkMaxConfigurator.add(armIntakeMotor, armConfig);
+     // The intake only runs open loop
+     SparkMaxConfigurator.add(intakeMotor, new SparkMaxConfig());
+     // Arm up and down checks, and the position on the dashboard
+     CanBudget.use(armIntakeMotor, CanBudget.Signal.position, Constants.canLoopFrameMs, CanBudget.kEnabled);
+     io = LogReplay.isActive() ? new BallTransitIO() {}
+         : new BallTransitIOHardware(armEncoder, armDown, armHealth, intakeHealth, armPower, intakePower);
+     if (RobotBase.isSimulation() && !LogReplay.isActive()) {
+       armPhysics = new ArmPhysics(new SparkMaxSim(armIntakeMotor, armSetpoint, armConfig),
+           Constants.armGearing, Constants.SimConstants.armMomentOfInertia,
+           Constants.SimConstants.armMassKg, Constants.SimConstants.armCenterOfMassMeters,
+           Constants.armHomeDegrees, Constants.SimConstants.armMaxDegrees)
+           .withLowerLimit(new DIOSim(armDown));
+     }
      resetPosition();
+     Telemetry.addNumber("Position of Arm", () -> inputs.armPosition, 0.01);
+     Telemetry.addNumber("Arm/Homes", () -> inputs.armHomes, 0);
+     Telemetry.addNumber("Arm/Home Error", () -> inputs.armHomeError, 0.01);
+     Telemetry.addNumber("Arm/Last Move s", () -> lastMoveSeconds, 0.01);
+     Telemetry.addNumber("Arm/Move Error", () -> lastMoveError, 0.01);
+     Telemetry.addBoolean("Arm/Move Failed", () -> armMoveFailed);
+     DataLogger.addOutput("Arm/Profile Position", () -> armProfiling ? armProfile.getPosition() : 0);
+     DataLogger.addOutput("Arm/Feedforward", armSetpoint::getLastFeedforward);
+     armSetpoint.logOutputs("Arm/Setpoint");
+     DataLogger.addOutput("Intake/Output", intakeMotor::get);
    }
  
   /*public void togglePiston() {
@@ -59,82 +147,201 @@ public class BallTransitSubsystem extends SubsystemBase {
 */
 
   public void inTake() {
-    intakeMotor.set(-Constants.intakeSpeed);
+    intakeDirection = -1;
+    runIntake();
    }
  
   public void outTake() {
-    intakeMotor.set(Constants.intakeSpeed);
+    intakeDirection = 1;
+    runIntake();
   }
 
   public void turnOffIntakeMotor(){
+    intakeDirection = 0;
     intakeMotor.set(0);
+    intakeHealth.reset();
+  }
+
+  // Called every loop too, so the output follows the power budget. Only sent when it changes
+  private void runIntake() {
+    // Stays off until the button is let go if it jammed. The monitor can cut it after the
+    // inputs were read, so its own state is checked too or this would turn it right back on
+    if (intakeDirection == 0 || inputs.intakeCut || intakeHealth.isCut()) {
+      return;
+    }
+    double output = intakeDirection * Constants.intakeSpeed * inputs.intakePowerScale;
+    if (output != intakeMotor.get()) {
+      intakeMotor.set(output);
+    }
   }
 
   /**
-   * Toggles piston if its out and moves the arm up
+   * Starts moving the arm, calling it again with the same position while it's moving does nothing
    * @param position arm up or down
    */
   public void setArmAngle(PositionMode position) {
+    if (inputs.armCut || armHealth.isCut()) {
+      // Don't push into whatever stalled it again, going somewhere else is fine
+      if (position == armTarget) {
+        return;
+      }
+      armHealth.reset();
+      armSetpoint.invalidate();
+      // The motor was stopped, so the profile isn't where the arm is anymore
+      armProfiling = false;
+    }
+    if (position == armTarget && armProfiling) {
+      armPending = null;
+      return;
+    }
+    if (!inputs.armPowerOk) {
+      // Starting now could brown out the robot, it's started as soon as there's room.
+      // Not waited on forever though, the command moving the arm has to end
+      double now = Timer.getFPGATimestamp();
+      if (armPending != position) {
+        armPending = position;
+        armPendingSince = now;
+      }
+      if (now - armPendingSince < Constants.armDeferMaxSeconds) {
+        return;
+      }
+    }
+    armPending = null;
     if (position == PositionMode.goDown) {
-        armMotorPIDCon.setReference(Constants.armDownPosition, CANSparkMax.ControlType.kSmartMotion);
+        moveArm(position, Constants.armDownPosition);
     } else if (position == PositionMode.goUp) {
-        armMotorPIDCon.setReference(Constants.armUpPosition, CANSparkMax.ControlType.kSmartMotion);
+        moveArm(position, Constants.armUpPosition);
     }else if (position == PositionMode.goUpHigher){
-      armMotorPIDCon.setReference(Constants.releaseArmPosition, CANSparkMax.ControlType.kSmartMotion);
+      moveArm(position, Constants.releaseArmPosition);
+    }
+  }
+
+  private void moveArm(PositionMode position, double goal) {
+    double now = Timer.getFPGATimestamp();
+    if (armProfiling) {
+      // Turning around mid move, start from where the profile is so the setpoint doesn't jump
+      armProfile.sample(now - armProfileStart);
+      armProfile.start(armProfile.getPosition(), armProfile.getVelocity(), goal);
+    } else {
+      armProfile.start(inputs.armPosition, inputs.armVelocity / 60, goal);
     }
+    armTarget = position;
+    armProfiling = true;
+    armProfileStart = now;
+    armMoveDone = false;
+    armMoveFailed = false;
+    followArmProfile();
+  }
+
+  // Sends where the profile is now, call every loop while moving and holding.
+  // The live cut is checked too, like the intake, so a cut after the inputs were read sticks
+  private void followArmProfile() {
+    if (!armProfiling) {
+      return;
+    }
+    if (inputs.armCut && !armMoveDone) {
+      // It's not getting there, end the move so whatever is waiting on it can finish
+      armMoveDone = true;
+      armMoveFailed = true;
+    }
+    if (inputs.armCut || armHealth.isCut()) {
+      return;
+    }
+    double time = Timer.getFPGATimestamp() - armProfileStart;
+    armProfile.sample(time);
+    double position = armProfile.getPosition();
+    double velocity = armProfile.getVelocity();
+    double angle = Math.toRadians(Constants.armHomeDegrees + position / Constants.armGearing * 360);
+    double feedforward = Constants.armKS * Math.signum(velocity)
+        + Constants.armKG * Math.cos(angle)
+        + Constants.armKV * velocity
+        + Constants.armKA * armProfile.getAcceleration();
+    // The controller's encoder is never zeroed, so its setpoints are moved by the home
+    armSetpoint.setReference(position + inputs.armOffset, CANSparkMax.ControlType.kPosition, feedforward);
+    if (!armMoveDone && armProfile.isFinished(time)) {
+      armMoveDone = true;
+      lastMoveSeconds = time;
+      lastMoveError = inputs.armPosition - position;
+    }
+  }
+
+  /**
+   * @return true once the arm's profile has reached where it was last sent and stopped,
+   * or the arm was cut on the way, see {@link #isArmMoveFailed()}
+   */
+  public boolean isArmMoveFinished() {
+    return armPending == null && armProfiling && armMoveDone;
+  }
+
+  /** @return true if the last move ended because the arm was cut before it got there */
+  public boolean isArmMoveFailed() {
+    return armMoveFailed;
+  }
+
+  /** @return where the arm was last sent, broken if it's off */
+  public PositionMode getArmTarget() {
+    return armTarget;
+  }
+
+  /** @return seconds the last arm move took */
+  public double getLastMoveSeconds() {
+    return lastMoveSeconds;
+  }
+
+  /** @return rotations the arm was off the profile when the last move ended */
+  public double getLastMoveError() {
+    return lastMoveError;
   }
 
   public void resetPosition(){
-    armEncoder.setPosition(0);
+    io.zeroArm(inputs);
+    armSetpoint.invalidate();
+    // A profile from before is in the old zero
+    armProfiling = false;
   }
 
   public void releaseArm(){
-    armMotorPIDCon.setReference(Constants.releaseArmPosition, CANSparkMax.ControlType.kSmartMotion);
+    setArmAngle(PositionMode.goUpHigher);
   }
 
   public void turnOffArmMotor(){
-    armIntakeMotor.set(0);
+    armSetpoint.setReference(0, CANSparkMax.ControlType.kDutyCycle);
+    armTarget = PositionMode.broken;
+    armProfiling = false;
+    armPending = null;
   }
 
    public boolean checkArmUp(){
-     if (armEncoder.getPosition() >= Constants.armUpPosition - 0.2){
+     if (inputs.armPosition >= Constants.armUpPosition - 0.2){
        return true;
      }
      return false;
    }
 
    public boolean checkArmDown(){
-     if (armEncoder.getPosition() <= Constants.armDownPosition + 0.2){
+     if (inputs.armPosition <= Constants.armDownPosition + 0.2){
        return true;
      }
      return false;
    }
 
-  public void setMinOutput(double output){
-    /*if (kMinOutput != output){
-      armMotorPIDCon.setOutputRange(-0.3, output);
-    }*/
-  }
-
-  public void initializePID(SparkMaxPIDController p, RelativeEncoder h) {
-    p.setP(kP);
-    p.setI(kI);
-    p.setD(kD);
-    p.setIZone(kIz);
-    p.setFF(kFF);
-    p.setOutputRange(kMinOutput, kMaxOutput);
-    p.setSmartMotionMaxVelocity(maxVel, smartMotionSlot);
-    p.setSmartMotionMinOutputVelocity(minVel, smartMotionSlot);
-    p.setSmartMotionMaxAccel(maxAcc, smartMotionSlot);
-    p.setSmartMotionAllowedClosedLoopError(allowedErr, smartMotionSlot);
-  }
-
   @Override
   public void periodic() {
-    SmartDashboard.putNumber("Position of Arm", armEncoder.getPosition());
+    long start = LoopProfiler.start();
+    io.updateInputs(inputs);
+    loggedInputs.process();
+    if (armPending != null) {
+      setArmAngle(armPending);
+    }
+    followArmProfile();
+    runIntake();
+    LoopProfiler.stop(periodicProfilerId, start);
+  }
 
-    if(armDown.get()){
-      armEncoder.setPosition(0);
+  @Override
+  public void simulationPeriodic() {
+    if (armPhysics != null) {
+      armPhysics.update(TimedRobot.kDefaultPeriod);
     }
   }
 }
@@ -0,0 +1,13 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * Where the climber's sensor readings come from. {@link ClimberIOHardware} reads the robot,
+ * the default does nothing for replaying a log
+ */
+public interface ClimberIO {
+  default void updateInputs(ClimberInputs inputs) {}
+}
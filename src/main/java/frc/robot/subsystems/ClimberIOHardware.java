@@ -0,0 +1,22 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.revrobotics.RelativeEncoder;
+
+/** Reads the outer arm encoder */
+public class ClimberIOHardware implements ClimberIO {
+  private final RelativeEncoder outerEncoder;
+
+  public ClimberIOHardware(RelativeEncoder outerEncoder) {
+    this.outerEncoder = outerEncoder;
+  }
+
+  @Override
+  public void updateInputs(ClimberInputs inputs) {
+    inputs.outerPosition = outerEncoder.getPosition();
+    inputs.outerVelocity = outerEncoder.getVelocity();
+  }
+}
@@ -0,0 +1,22 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import frc.robot.util.DataLogger;
+import frc.robot.util.LoggedInputs;
+
+/** What the climber reads from its sensors in one cycle, filled by {@link ClimberIO} */
+public class ClimberInputs {
+  // Outer arm encoder, in rotations and RPM
+  public double outerPosition;
+  public double outerVelocity;
+
+  /** @return every field registered with the data log so it can be replayed */
+  public LoggedInputs registerLog() {
+    return DataLogger.addInputs("Climber/")
+        .add("Outer Position", () -> outerPosition, v -> outerPosition = v)
+        .add("Outer Velocity", () -> outerVelocity, v -> outerVelocity = v);
+  }
+}
@@ -11,9 +11,23 @@ import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.PneumaticsModuleType;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.DoubleSolenoid.Value;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.sim.MechanismPhysics;
+import frc.robot.sim.SparkMaxSim;
+import frc.robot.util.CanBudget;
+import frc.robot.util.DataLogger;
+import frc.robot.util.LogReplay;
+import frc.robot.util.LoggedInputs;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.MotorHealthMonitor;
+import frc.robot.util.PowerBudget;
+import frc.robot.util.SetpointCache;
+import frc.robot.util.SparkMaxConfig;
+import frc.robot.util.SparkMaxConfigurator;
 
 public class ClimberSubsystem extends SubsystemBase {
 
@@ -41,35 +55,75 @@ public class ClimberSubsystem extends SubsystemBase {
 
 	public RelativeEncoder outerEncoder = outerMotor.getEncoder();
 
+	// The climb can be started any time in teleop, not just in the endgame, so it's read fast in both
+	private static final CanBudget.Phase[] kClimbPhases = {CanBudget.Phase.teleop, CanBudget.Phase.endgame};
+
+	// Holding the robot up looks like a stall, so the climber is never limited or cut, stalls are only reported
+	public final MotorHealthMonitor.Motor outerHealth = MotorHealthMonitor.add("Climber", outerMotor, kClimbPhases)
+			.withStall(Constants.climberStallAmps);
+	// Never scaled, it's holding the robot up, but what it draws comes before the arm and intake
+	private final PowerBudget.Consumer outerPower = PowerBudget.add("Climber", 2, Constants.climberPdpChannels)
+			.withMinScale(1);
+
+	// Sensor readings for this cycle
+	public final ClimberInputs inputs = new ClimberInputs();
+	private final LoggedInputs loggedInputs = inputs.registerLog();
+	// The sensors, or nothing when a log is being replayed
+	private final ClimberIO io;
+
 	public SparkMaxPIDController outerController = outerMotor.getPIDController();
 
+	private final SetpointCache outerSetpoint = new SetpointCache(outerController, Constants.setpointRefreshMs)
+			.withDeadband(CANSparkMax.ControlType.kSmartMotion, Constants.positionSetpointDeadband);
+
 	public double currentOuterReferencePoint = 0;
 
 	public boolean outerPIDEnabled = true;
 
+	private final int periodicProfilerId = LoopProfiler.register("ClimberSubsystem.periodic");
+
+	// Only made in simulation
+	private MechanismPhysics outerPhysics = null;
+
 	/* Creates a new ClimberSubsystem. */
 	public ClimberSubsystem() {
-		initializePID(outerController, outerEncoder);
-	}
-
-	public void initializePID(SparkMaxPIDController p, RelativeEncoder h) {
-		p.setP(kP);
-		p.setI(kI);
-		p.setD(kD);
-		p.setIZone(kIz);
-		p.setFF(kFF);
-		p.setOutputRange(kMinOutput, kMaxOutput);
-		p.setSmartMotionMaxVelocity(maxVel, smartMotionSlot);
-		p.setSmartMotionMinOutputVelocity(minVel, smartMotionSlot);
-		p.setSmartMotionMaxAccel(maxAcc, smartMotionSlot);
-		p.setSmartMotionAllowedClosedLoopError(allowedErr, smartMotionSlot);
-		h.setPositionConversionFactor(1);
-		h.setVelocityConversionFactor(1);
+		SparkMaxConfig config = new SparkMaxConfig()
+				.pid(kP, kI, kD, kIz, kFF)
+				.outputRange(kMinOutput, kMaxOutput)
+				.smartMotion(smartMotionSlot, maxVel, minVel, maxAcc, allowedErr)
+				.conversionFactors(1, 1);
+		SparkMaxConfigurator.add(outerMotor, config);
+		// Only the climb reads the arm
+		CanBudget.use(outerMotor, CanBudget.Signal.position, Constants.canLoopFrameMs, kClimbPhases);
+		CanBudget.use(outerMotor, CanBudget.Signal.velocity, Constants.canLoopFrameMs, kClimbPhases);
+		io = LogReplay.isActive() ? new ClimberIO() {} : new ClimberIOHardware(outerEncoder);
+		DataLogger.addNumber("Climber/Outer Target", () -> currentOuterReferencePoint);
+		DataLogger.addBoolean("Climber/Outer PID", () -> outerPIDEnabled);
+		outerSetpoint.logOutputs("Climber/Outer Setpoint");
+		DataLogger.addOutput("Climber/Left Outer", () -> leftOuterPneumatic.get().ordinal());
+		DataLogger.addOutput("Climber/Right Outer", () -> rightOuterPneumatic.get().ordinal());
+		DataLogger.addOutput("Climber/Left Inner", () -> leftInnerPneumatic.get().ordinal());
+		DataLogger.addOutput("Climber/Right Inner", () -> rightInnerPneumatic.get().ordinal());
+		if (RobotBase.isSimulation() && !LogReplay.isActive()) {
+			outerPhysics = new MechanismPhysics(new SparkMaxSim(outerMotor, outerSetpoint, config),
+					Constants.SimConstants.climberGearing, Constants.SimConstants.climberMomentOfInertia);
+		}
 	}
 
 	@Override
 	public void periodic() {
 		// This method will be called once per scheduler run
+		long start = LoopProfiler.start();
+		io.updateInputs(inputs);
+		loggedInputs.process();
+		LoopProfiler.stop(periodicProfilerId, start);
+	}
+
+	@Override
+	public void simulationPeriodic() {
+		if (outerPhysics != null) {
+			outerPhysics.update(TimedRobot.kDefaultPeriod);
+		}
 	}
 
 	/**
@@ -79,16 +133,16 @@ public class ClimberSubsystem extends SubsystemBase {
 	 */
 	public void setOuterArmsPosition(double position) {
 		if (outerPIDEnabled) {
-			outerController.setReference(position, CANSparkMax.ControlType.kSmartMotion);
+			outerSetpoint.setReference(position, CANSparkMax.ControlType.kSmartMotion);
 		} else {
-			outerMotor.set(0);
+			outerSetpoint.setReference(0, CANSparkMax.ControlType.kDutyCycle);
 		}
 		currentOuterReferencePoint = position;
 	}
 
 	public void disablePID() {
 		setOuterPID(false);
-		outerMotor.set(0);
+		outerSetpoint.setReference(0, CANSparkMax.ControlType.kDutyCycle);
 	}
 
 	public void enablePID(double position) {
@@ -132,6 +186,6 @@ public class ClimberSubsystem extends SubsystemBase {
 	}
 
 	public boolean outerMoveFinished() {
-		return Math.abs(getPositionError(currentOuterReferencePoint, outerEncoder.getPosition())) < 1.0;
+		return Math.abs(getPositionError(currentOuterReferencePoint, inputs.outerPosition)) < 1.0;
 	}
 }
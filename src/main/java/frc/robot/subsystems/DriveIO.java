@@ -0,0 +1,17 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+/**
+ * Where the drivetrain's sensor readings come from. {@link DriveIOHardware} reads the robot,
+ * and when a log is being replayed the default does nothing since the logged values are put in instead
+ */
+public interface DriveIO {
+  /**
+   * Reads every sensor once
+   * @param inputs filled in, except the timestamp
+   */
+  default void updateInputs(DriveInputs inputs) {}
+}
@@ -0,0 +1,81 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.kauailabs.navx.frc.AHRS;
+import com.revrobotics.RelativeEncoder;
+
+import edu.wpi.first.wpilibj.AnalogInput;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.util.PoseEstimator;
+import frc.robot.util.PowerBudget;
+
+/**
+ * Reads the navX, the four drive encoders, the ultrasonic and the drive's share of the power budget.
+ * Also runs the odometry on its own Notifier since it reads the encoders and gyro faster than the
+ * main loop, the pose it got to is read into the inputs like any other sensor
+ */
+public class DriveIOHardware implements DriveIO {
+  private final AHRS gyro;
+  private final RelativeEncoder leftFrontEncoder;
+  private final RelativeEncoder leftBackEncoder;
+  private final RelativeEncoder rightFrontEncoder;
+  private final RelativeEncoder rightBackEncoder;
+  private final AnalogInput ultrasonic;
+  private final PowerBudget.Consumer power;
+  private final PoseEstimator poseEstimator;
+  private final Notifier odometryNotifier = new Notifier(this::updateOdometry);
+
+  public DriveIOHardware(AHRS gyro, RelativeEncoder leftFrontEncoder, RelativeEncoder leftBackEncoder,
+      RelativeEncoder rightFrontEncoder, RelativeEncoder rightBackEncoder, AnalogInput ultrasonic,
+      PowerBudget.Consumer power, PoseEstimator poseEstimator) {
+    this.gyro = gyro;
+    this.leftFrontEncoder = leftFrontEncoder;
+    this.leftBackEncoder = leftBackEncoder;
+    this.rightFrontEncoder = rightFrontEncoder;
+    this.rightBackEncoder = rightBackEncoder;
+    this.ultrasonic = ultrasonic;
+    this.power = power;
+    this.poseEstimator = poseEstimator;
+    odometryNotifier.setName("Odometry");
+    odometryNotifier.startPeriodic(DriveConstants.odometryPeriodSeconds);
+  }
+
+  // Runs on the Notifier thread
+  private void updateOdometry() {
+    // The right motors turn backwards to drive forward
+    double left = (leftFrontEncoder.getPosition() + leftBackEncoder.getPosition()) / 2;
+    double right = -(rightFrontEncoder.getPosition() + rightBackEncoder.getPosition()) / 2;
+    poseEstimator.update(Timer.getFPGATimestamp(), left, right, gyro.getAngle());
+  }
+
+  @Override
+  public void updateInputs(DriveInputs inputs) {
+    inputs.gyroAngle = gyro.getAngle();
+    inputs.gyroRate = gyro.getRate();
+    inputs.gyroPitch = gyro.getPitch();
+    inputs.accelX = gyro.getWorldLinearAccelX();
+    inputs.accelY = gyro.getWorldLinearAccelY();
+    inputs.accelZ = gyro.getWorldLinearAccelZ();
+
+    inputs.leftFrontPosition = leftFrontEncoder.getPosition();
+    inputs.leftFrontVelocity = leftFrontEncoder.getVelocity();
+    inputs.leftBackPosition = leftBackEncoder.getPosition();
+    inputs.leftBackVelocity = leftBackEncoder.getVelocity();
+    inputs.rightFrontPosition = rightFrontEncoder.getPosition();
+    inputs.rightFrontVelocity = rightFrontEncoder.getVelocity();
+    inputs.rightBackPosition = rightBackEncoder.getPosition();
+    inputs.rightBackVelocity = rightBackEncoder.getVelocity();
+
+    inputs.ultrasonicDistance = ultrasonic.getValue() * 0.125;
+    inputs.powerScale = power.getScale();
+
+    inputs.poseX = poseEstimator.getX();
+    inputs.poseY = poseEstimator.getY();
+    inputs.poseHeading = poseEstimator.getHeading();
+  }
+}
@@ -0,0 +1,76 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import frc.robot.util.DataLogger;
+import frc.robot.util.LoggedInputs;
+
+/**
+ * Everything the drivetrain reads from its sensors in one cycle.
+ * {@link DriveSubsystem} fills this once at the start of every scheduler run
+ * through its {@link DriveIO} so all commands see the same sample and nothing reads the hardware twice
+ */
+public class DriveInputs {
+  // When this sample was taken (FPGA seconds)
+  public double timestamp;
+
+  // Gyro
+  public double gyroAngle; // degrees, keeps counting past 360
+  public double gyroRate; // degrees per second
+  public double gyroPitch; // degrees, for the swing on the climb
+  public double accelX; // world frame, in G
+  public double accelY;
+  public double accelZ;
+
+  // Encoders, in rotations and RPM
+  public double leftFrontPosition;
+  public double leftFrontVelocity;
+  public double leftBackPosition;
+  public double leftBackVelocity;
+  public double rightFrontPosition;
+  public double rightFrontVelocity;
+  public double rightBackPosition;
+  public double rightBackVelocity;
+
+  // Ultrasonic distance in cm
+  public double ultrasonicDistance;
+
+  // What the power budget lets the driver have, manual drive speeds are multiplied by it
+  public double powerScale = 1;
+
+  // Where the odometry thread has the robot, meters and radians. Logged so a replay follows the same path
+  public double poseX;
+  public double poseY;
+  public double poseHeading;
+
+  // Set from the heading controller's thread, logged so a replayed turn ends on the same cycle
+  public boolean turnSettled;
+
+  /** @return every field registered with the data log so it can be replayed */
+  public LoggedInputs registerLog() {
+    return DataLogger.addInputs("Drive/")
+        .add("Timestamp", () -> timestamp, v -> timestamp = v)
+        .add("Gyro Angle", () -> gyroAngle, v -> gyroAngle = v)
+        .add("Gyro Rate", () -> gyroRate, v -> gyroRate = v)
+        .add("Gyro Pitch", () -> gyroPitch, v -> gyroPitch = v)
+        .add("Accel X", () -> accelX, v -> accelX = v)
+        .add("Accel Y", () -> accelY, v -> accelY = v)
+        .add("Accel Z", () -> accelZ, v -> accelZ = v)
+        .add("Left Front Position", () -> leftFrontPosition, v -> leftFrontPosition = v)
+        .add("Left Front Velocity", () -> leftFrontVelocity, v -> leftFrontVelocity = v)
+        .add("Left Back Position", () -> leftBackPosition, v -> leftBackPosition = v)
+        .add("Left Back Velocity", () -> leftBackVelocity, v -> leftBackVelocity = v)
+        .add("Right Front Position", () -> rightFrontPosition, v -> rightFrontPosition = v)
+        .add("Right Front Velocity", () -> rightFrontVelocity, v -> rightFrontVelocity = v)
+        .add("Right Back Position", () -> rightBackPosition, v -> rightBackPosition = v)
+        .add("Right Back Velocity", () -> rightBackVelocity, v -> rightBackVelocity = v)
+        .add("Ultrasonic", () -> ultrasonicDistance, v -> ultrasonicDistance = v)
+        .add("Power Scale", () -> powerScale, v -> powerScale = v)
+        .add("Pose X", () -> poseX, v -> poseX = v)
+        .add("Pose Y", () -> poseY, v -> poseY = v)
+        .add("Pose Heading", () -> poseHeading, v -> poseHeading = v)
+        .add("Turn Settled", () -> turnSettled ? 1 : 0, v -> turnSettled = v != 0);
+  }
+}
@@ -12,17 +12,36 @@ import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 
 import edu.wpi.first.wpilibj.AnalogInput;
 import edu.wpi.first.wpilibj.PowerDistribution;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.SerialPort;
 import edu.wpi.first.wpilibj.SPI;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.PowerDistribution.ModuleType;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.Constants.DriveConstants;
 import frc.robot.Robot;
 import frc.robot.RobotContainer;
-import frc.robot.commands.AutoDriveCommand;
+import frc.robot.sim.DrivetrainPhysics;
+import frc.robot.sim.SparkMaxSim;
+import frc.robot.util.CollisionDetector;
+import frc.robot.util.CanBudget;
+import frc.robot.util.DataLogger;
+import frc.robot.util.DriveMath;
+import frc.robot.util.HeadingController;
+import frc.robot.util.LogReplay;
+import frc.robot.util.LoggedInputs;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.PoseEstimator;
+import frc.robot.util.PowerBudget;
+import frc.robot.util.SetpointCache;
+import frc.robot.util.SparkMaxConfig;
+import frc.robot.util.SparkMaxConfigurator;
+import frc.robot.util.Telemetry;
+import frc.robot.util.WheelSlipDetector;
 
 public class DriveSubsystem extends SubsystemBase {
   private final CANSparkMax leftFrontMotor = new CANSparkMax(Constants.leftFrontMotorID, MotorType.kBrushless);
@@ -42,7 +61,11 @@ public class DriveSubsystem extends SubsystemBase {
   private SparkMaxPIDController rightFrontPIDCon = rightFrontMotor.getPIDController();
   private SparkMaxPIDController rightBackPIDCon = rightBackMotor.getPIDController();
 
-  
+  // Only sends setpoints over CAN when they change
+  private final SetpointCache leftFrontSetpoint = newSetpointCache(leftFrontPIDCon);
+  private final SetpointCache leftBackSetpoint = newSetpointCache(leftBackPIDCon);
+  private final SetpointCache rightFrontSetpoint = newSetpointCache(rightFrontPIDCon);
+  private final SetpointCache rightBackSetpoint = newSetpointCache(rightBackPIDCon);
 
   public final AnalogInput ultrasonic = new AnalogInput(0);
   //public final AnalogInput ultrasonic2 = new AnalogInput(1);
@@ -56,27 +79,149 @@ public class DriveSubsystem extends SubsystemBase {
   double kFF = 0.000156;
   double kMaxOutput = 1;
   double kMinOutput = -1;
-  double maxVel = 4000;
-  double maxAcc = 1500;
+  double maxVel = DriveConstants.smartMotionMaxVelocity;
+  double maxAcc = DriveConstants.smartMotionMaxAcceleration;
 
   // The gyro sensor
   //public static final AHRS m_gyro = new AHRS(SerialPort.Port.kUSB1);
-  public static final AHRS m_gyro = new AHRS(SPI.Port.kMXP);
+  public static final AHRS m_gyro = new AHRS(SPI.Port.kMXP, Constants.navXUpdateRateHz);
+  // Watches every navX update for hits and tipping
+  public static final CollisionDetector collisionDetector = new CollisionDetector(m_gyro);
+
+  private final int periodicProfilerId = LoopProfiler.register("DriveSubsystem.periodic");
+  // Drive gets its share of the battery first, it's only slowed if it alone would brown out
+  private final PowerBudget.Consumer drivePower = PowerBudget.add("Drive", 3, Constants.drivePdpChannels)
+      .withMinScale(Constants.driveMinPowerScale);
+
+  // Sensor readings for this cycle, commands should read these instead of the hardware
+  public final DriveInputs inputs = new DriveInputs();
+  private final LoggedInputs loggedInputs = inputs.registerLog();
+  // The sensors, or nothing when a log is being replayed
+  private final DriveIO io;
+
+  // Field pose from the encoders and gyro, updated faster than the main loop by DriveIOHardware.
+  // Commands read the pose from the inputs
+  private final PoseEstimator poseEstimator = new PoseEstimator(DriveConstants.metersPerRotation,
+      DriveConstants.maxMotorRotationsPerSecond, DriveConstants.poseHistorySize);
+  // Distance for auto legs from all four encoders and the gyro, and wheel slip
+  public final WheelSlipDetector slipDetector = new WheelSlipDetector(DriveConstants.metersPerRotation,
+      DriveConstants.trackWidthMeters);
+
+  // Turns in place for TurnToAngleCommand on its own 200Hz thread, or every loop from the log in replay
+  private final HeadingController headingController =
+      new HeadingController(LogReplay.isActive() ? null : m_gyro, this::turnInPlace);
+
+  // Only made in simulation
+  private DrivetrainPhysics physics = null;
 
   //private PowerDistribution powerDistributionModule = new PowerDistribution(0, ModuleType.kCTRE);
   //private static final Timer time = new Timer();
   public DriveSubsystem() {
     Shuffleboard.getTab("Gyro").add(m_gyro);
-    leftFrontMotor.restoreFactoryDefaults();
-    leftBackMotor.restoreFactoryDefaults();
-    rightFrontMotor.restoreFactoryDefaults();
-    rightBackMotor.restoreFactoryDefaults();
-    initializePID(leftFrontPIDCon, m_leftFrontEncoder);
-    initializePID(leftBackPIDCon, leftBackEncoder);
-    initializePID(rightFrontPIDCon, m_rightFrontEncoder);
-    initializePID(rightBackPIDCon, rightBackEncoder);
+    // Written in parallel, and only where different, by SparkMaxConfigurator in robotInit()
+    SparkMaxConfig config = new SparkMaxConfig()
+        .pid(kP, kI, kD, kIz, kFF)
+        .outputRange(kMinOutput, kMaxOutput)
+        .smartMotion(smartMotionSlot, maxVel, minVel, maxAcc, allowedErr);
+    SparkMaxConfigurator.add(leftFrontMotor, config);
+    SparkMaxConfigurator.add(leftBackMotor, config);
+    SparkMaxConfigurator.add(rightFrontMotor, config);
+    SparkMaxConfigurator.add(rightBackMotor, config);
+    registerCanSignals();
+    if (LogReplay.isActive()) {
+      io = new DriveIO() {};
+    } else {
+      io = new DriveIOHardware(m_gyro, m_leftFrontEncoder, leftBackEncoder, m_rightFrontEncoder,
+          rightBackEncoder, ultrasonic, drivePower, poseEstimator);
+    }
+    // Replay doesn't need physics, the sensor readings come from the log
+    if (RobotBase.isSimulation() && !LogReplay.isActive()) {
+      physics = new DrivetrainPhysics(
+          new SparkMaxSim(leftFrontMotor, leftFrontSetpoint, config),
+          new SparkMaxSim(leftBackMotor, leftBackSetpoint, config),
+          new SparkMaxSim(rightFrontMotor, rightFrontSetpoint, config),
+          new SparkMaxSim(rightBackMotor, rightBackSetpoint, config));
+    }
     resetEncoders();
+    updateInputs();
+    registerTelemetry();
+    registerLogSignals();
+  }
+
+  // What the drive reads off the controllers, the velocity loops run on the controllers themselves
+  private void registerCanSignals() {
+    for (CANSparkMax motor : new CANSparkMax[] {leftFrontMotor, leftBackMotor, rightFrontMotor, rightBackMotor}) {
+      CanBudget.use(motor, CanBudget.Signal.position, Constants.canOdometryFrameMs, CanBudget.kEnabled);
+    }
+    // Only shown on the dashboard
+    CanBudget.use(leftFrontMotor, CanBudget.Signal.velocity, Constants.canDashboardFrameMs, CanBudget.kEnabled);
+    CanBudget.use(rightFrontMotor, CanBudget.Signal.velocity, Constants.canDashboardFrameMs, CanBudget.kEnabled);
+    CanBudget.use(leftBackMotor, CanBudget.Signal.velocity, Constants.canDashboardFrameMs, CanBudget.kEnabled);
   }
+
+  /**
+   * Reads every drivetrain sensor once into {@link #inputs}.
+   * This is the only place the gyro, encoders and ultrasonic get read
+   */
+  private void updateInputs() {
+    inputs.timestamp = Timer.getFPGATimestamp();
+    io.updateInputs(inputs);
+    inputs.turnSettled = headingController.isSettled();
+    loggedInputs.process();
+    if (LogReplay.isActive()) {
+      // No Notifier in replay, the turn moves on the logged gyro once a loop
+      headingController.step(inputs.timestamp, inputs.gyroAngle, inputs.gyroRate);
+    }
+    // The right motors turn backwards to drive forward
+    slipDetector.update(inputs.timestamp, inputs.leftFrontPosition, inputs.leftBackPosition,
+        -inputs.rightFrontPosition, -inputs.rightBackPosition, inputs.gyroAngle);
+  }
+
+  private void registerTelemetry() {
+    // "Process Variable" used to be a second copy of "Velocity" so it was dropped
+    Telemetry.addNumber("Postion", () -> inputs.leftBackPosition, 0.01);
+    Telemetry.addNumber("Velocity", () -> inputs.leftBackVelocity, 1);
+    Telemetry.addNumber("Joystick x", RobotContainer.driverStick::getX, 0.005);
+    Telemetry.addNumber("Joystick y", RobotContainer.driverStick::getY, 0.005);
+    Telemetry.addBoolean("Collision Detected?", () -> collisionDetector.getCollisionCount() > 0);
+    Telemetry.addNumber("Collisions", collisionDetector::getCollisionCount, 0);
+    Telemetry.addBoolean("Tipping?", collisionDetector::isTipping);
+
+    Telemetry.addNumber("Left Velocity", () -> inputs.leftFrontVelocity, 1);
+    Telemetry.addNumber("Right Velocity", () -> inputs.rightFrontVelocity, 1);
+
+    Telemetry.addNumber("Drive Distance", slipDetector::getDistance, 0.01);
+    Telemetry.addBoolean("Wheel Slip?", slipDetector::isSlipping);
+    Telemetry.addNumber("Wheel Slips", slipDetector::getSlipCount, 0);
+
+    Telemetry.addNumber("Pose X", () -> inputs.poseX, 0.01);
+    Telemetry.addNumber("Pose Y", () -> inputs.poseY, 0.01);
+    Telemetry.addNumber("Pose Heading", () -> Math.toDegrees(inputs.poseHeading), 0.1);
+
+    Telemetry.addNumber("Turn Settle ms", headingController::getLastSettleMillis, 1);
+    Telemetry.addNumber("Turn Overshoot", headingController::getLastOvershoot, 0.1);
+    Telemetry.addNumber("Turn Settle p50 ms", () -> headingController.getSettleMillis(0.5), 1, 1);
+    Telemetry.addNumber("Turn Settle p95 ms", () -> headingController.getSettleMillis(0.95), 1, 1);
+    Telemetry.addNumber("Turns", headingController::getTurnCount, 0);
+    Telemetry.addNumber("Turn Timeouts", headingController::getTimeoutCount, 0);
+
+    Telemetry.addNumber("Setpoint Writes Sent", SetpointCache::getSentWrites, 0, 0.5);
+    Telemetry.addNumber("Setpoint Writes Suppressed", SetpointCache::getSuppressedWrites, 0, 0.5);
+  }
+
+  // The inputs are registered by DriveInputs.registerLog(), the pose and turn settled are in there too
+  private void registerLogSignals() {
+    leftFrontSetpoint.logOutputs("Drive/Left Front Setpoint");
+    leftBackSetpoint.logOutputs("Drive/Left Back Setpoint");
+    rightFrontSetpoint.logOutputs("Drive/Right Front Setpoint");
+    rightBackSetpoint.logOutputs("Drive/Right Back Setpoint");
+    DataLogger.addBoolean("Drive/Tipping", collisionDetector::isTipping);
+    DataLogger.addNumber("Drive/Distance", slipDetector::getDistance);
+    DataLogger.addBoolean("Drive/Slip Left", () -> slipDetector.isSlipping(WheelSlipDetector.Slip.left));
+    DataLogger.addBoolean("Drive/Slip Right", () -> slipDetector.isSlipping(WheelSlipDetector.Slip.right));
+    DataLogger.addBoolean("Drive/Slip Yaw", () -> slipDetector.isSlipping(WheelSlipDetector.Slip.yaw));
+  }
+
   /**
    * Sets the speed of the motors
    * @param x rotation
@@ -92,18 +237,75 @@ public class DriveSubsystem extends SubsystemBase {
       if (Math.abs(x) <= 0.09 && Math.abs(y) >= 0.5){
         x = 0;
       }
-      leftFrontPIDCon.setReference(setPointLeft(x, y, scaleX, scaleY), CANSparkMax.ControlType.kSmartVelocity);
-      leftBackPIDCon.setReference(setPointLeft(x, y, scaleX, scaleY), CANSparkMax.ControlType.kSmartVelocity);
-      rightFrontPIDCon.setReference(setPointRight(x, y, scaleX, scaleY), CANSparkMax.ControlType.kSmartVelocity);
-      rightBackPIDCon.setReference(setPointRight(x, y, scaleX, scaleY), CANSparkMax.ControlType.kSmartVelocity);
+      double left = setPointLeft(x, y, scaleX, scaleY) * inputs.powerScale;
+      double right = setPointRight(x, y, scaleX, scaleY) * inputs.powerScale;
+      leftFrontSetpoint.setReference(left, CANSparkMax.ControlType.kSmartVelocity);
+      leftBackSetpoint.setReference(left, CANSparkMax.ControlType.kSmartVelocity);
+      rightFrontSetpoint.setReference(right, CANSparkMax.ControlType.kSmartVelocity);
+      rightBackSetpoint.setReference(right, CANSparkMax.ControlType.kSmartVelocity);
     }
   }
 
+  /**
+   * Sets the wheel speeds directly, used when following trajectories
+   * @param leftMetersPerSecond left side speed, positive is forward
+   * @param rightMetersPerSecond right side speed, positive is forward
+   */
+  public void driveWheelSpeeds(double leftMetersPerSecond, double rightMetersPerSecond) {
+    double left = leftMetersPerSecond / DriveConstants.metersPerRotation * 60;
+    // The right motors turn backwards to drive forward
+    double right = -rightMetersPerSecond / DriveConstants.metersPerRotation * 60;
+    // kVelocity instead of kSmartVelocity since the trajectory already limits acceleration
+    leftFrontSetpoint.setReference(left, CANSparkMax.ControlType.kVelocity);
+    leftBackSetpoint.setReference(left, CANSparkMax.ControlType.kVelocity);
+    rightFrontSetpoint.setReference(right, CANSparkMax.ControlType.kVelocity);
+    rightBackSetpoint.setReference(right, CANSparkMax.ControlType.kVelocity);
+  }
+
+  /**
+   * Starts turning in place to a gyro angle. The heading controller drives the motors
+   * until {@link #stopTurn()}, so nothing else should drive them in between
+   * @param angle navX angle in degrees
+   */
+  public void startTurn(double angle) {
+    headingController.start(angle, inputs.gyroAngle);
+    inputs.turnSettled = false;
+  }
+
+  /** @return true once the turn is on the angle and not moving, as of this cycle's inputs */
+  public boolean isTurnSettled() {
+    return inputs.turnSettled;
+  }
+
+  /** Stops the heading controller and the motors */
+  public void stopTurn() {
+    headingController.stop();
+  }
+
+  /**
+   * Runs what a turn runs on the heading controller thread with a made up angle, for JitWarmup
+   * @param input from -1 to 1
+   */
+  public void warmUpTurn(double input) {
+    headingController.warmUp(input * 180, input * 100);
+    isTurnSettled();
+  }
+
+  // Runs on the heading controller thread, positive RPM turns clockwise
+  private void turnInPlace(double rpm) {
+    // Same as manualDrive turning: both sides get the same RPM since the right motors are backwards
+    leftFrontSetpoint.setReference(rpm, CANSparkMax.ControlType.kVelocity);
+    leftBackSetpoint.setReference(rpm, CANSparkMax.ControlType.kVelocity);
+    rightFrontSetpoint.setReference(rpm, CANSparkMax.ControlType.kVelocity);
+    rightBackSetpoint.setReference(rpm, CANSparkMax.ControlType.kVelocity);
+  }
+
   public void turnOffDriveMotors(){
-    leftFrontMotor.set(0);
-    rightFrontMotor.set(0);
-    leftBackMotor.set(0);
-    rightBackMotor.set(0);
+    // Same as motor.set(0), but only sent once while the robot is stopped
+    leftFrontSetpoint.setReference(0, CANSparkMax.ControlType.kDutyCycle);
+    rightFrontSetpoint.setReference(0, CANSparkMax.ControlType.kDutyCycle);
+    leftBackSetpoint.setReference(0, CANSparkMax.ControlType.kDutyCycle);
+    rightBackSetpoint.setReference(0, CANSparkMax.ControlType.kDutyCycle);
   }
 
   /**
@@ -113,9 +315,7 @@ public class DriveSubsystem extends SubsystemBase {
     else the oppsite will occur
   */
   public double setPointLeft(double Jx, double Jy, double scaleX, double scaleY) {
-    double yScale = ((Jy) * scaleY);
-    double xScale = (Jx) * scaleX;
-    return xScale + yScale;
+    return DriveMath.setPointLeft(Jx, Jy, scaleX, scaleY);
   }
   
   /**
@@ -125,9 +325,7 @@ public class DriveSubsystem extends SubsystemBase {
     else the oppsite will occur
   */
   public double setPointRight(double Jx, double Jy, double scaleX, double scaleY) {
-    double xScale = (-(Jx) * scaleX);
-    double yScale = ((Jy) * scaleY);
-    return -1 * (xScale + yScale);
+    return DriveMath.setPointRight(Jx, Jy, scaleX, scaleY);
   }
 
   /**
@@ -135,10 +333,10 @@ public class DriveSubsystem extends SubsystemBase {
    * @param displacement number of rotations
    */
   public void autoDrive(double displacement) {
-    leftFrontPIDCon.setReference(displacement, CANSparkMax.ControlType.kSmartMotion);
-    leftBackPIDCon.setReference(displacement, CANSparkMax.ControlType.kSmartMotion);
-    rightFrontPIDCon.setReference(-displacement, CANSparkMax.ControlType.kSmartMotion);
-    rightBackPIDCon.setReference(-displacement, CANSparkMax.ControlType.kSmartMotion);
+    leftFrontSetpoint.setReference(displacement, CANSparkMax.ControlType.kSmartMotion);
+    leftBackSetpoint.setReference(displacement, CANSparkMax.ControlType.kSmartMotion);
+    rightFrontSetpoint.setReference(-displacement, CANSparkMax.ControlType.kSmartMotion);
+    rightBackSetpoint.setReference(-displacement, CANSparkMax.ControlType.kSmartMotion);
   }
   
   /**
@@ -147,21 +345,28 @@ public class DriveSubsystem extends SubsystemBase {
    * @return the angle Error
    */
   public double angleError(double expectedAngle){
-    //The IEEEremainder is just to convert the angle of anything greater then 180 to the negative side
-    //Ex: 270 degrees -> -90 degrees
-    double angleSubtract = Math.IEEEremainder(expectedAngle, 360) - Math.IEEEremainder(m_gyro.getAngle(), 360);
-    if (angleSubtract > 180) {
-      return angleSubtract - 360;
-    } else if (angleSubtract < -180) {
-      return angleSubtract + 360;
-    } else {
-      return angleSubtract;
-    }
+    return DriveMath.angleError(expectedAngle, inputs.gyroAngle);
   }
   
   public void resetGyro() {
     m_gyro.calibrate();
     m_gyro.reset();
+    inputs.gyroAngle = 0;
+    // Keep the field heading where it was, only the gyro's zero moved
+    resetPose(inputs.poseX, inputs.poseY, inputs.poseHeading);
+  }
+
+  /**
+   * Moves the odometry to a field pose, this cycle's inputs too so commands see it right away
+   * @param x meters
+   * @param y meters
+   * @param heading radians
+   */
+  public void resetPose(double x, double y, double heading) {
+    poseEstimator.resetPose(x, y, heading, inputs.gyroAngle);
+    inputs.poseX = x;
+    inputs.poseY = y;
+    inputs.poseHeading = heading;
   }
   /**
    * ExpectedDistance - Current Distance
@@ -169,16 +374,16 @@ public class DriveSubsystem extends SubsystemBase {
    * @return Distance left to go
    */
   public double distanceError(double expectedDistance) {
-    return expectedDistance - (ultrasonic.getValue() * 0.125);
+    return expectedDistance - inputs.ultrasonicDistance;
   }
 
   /**
-   * Checks if the point is Reached
+   * Checks if the point is Reached, from the distance all four encoders and the gyro agree on
    * @param displacement
    * @return whether the point is reached (true) or not (false)
    */
   public boolean pointReached(double displacement) {
-    if (Math.abs(m_leftFrontEncoder.getPosition()) >= Math.abs(displacement) - 1) {
+    if (Math.abs(slipDetector.getDistance()) >= Math.abs(displacement) - 1) {
       resetEncoders();
       return true;
     }
@@ -190,40 +395,37 @@ public class DriveSubsystem extends SubsystemBase {
     leftBackEncoder.setPosition(0);
     m_rightFrontEncoder.setPosition(0);
     rightBackEncoder.setPosition(0);
+    // Zero this cycle's sample too so the next command doesn't see the old distance
+    inputs.leftFrontPosition = 0;
+    inputs.leftBackPosition = 0;
+    inputs.rightFrontPosition = 0;
+    inputs.rightBackPosition = 0;
+    slipDetector.reset();
+    poseEstimator.encodersReset(Timer.getFPGATimestamp());
+    // A position setpoint means something different after the reset so always resend it
+    leftFrontSetpoint.invalidate();
+    leftBackSetpoint.invalidate();
+    rightFrontSetpoint.invalidate();
+    rightBackSetpoint.invalidate();
   }
 
-  public void initializePID(SparkMaxPIDController p, RelativeEncoder h) {
-    p.setP(kP);
-    p.setI(kI);
-    p.setD(kD);
-    p.setIZone(kIz);
-    p.setFF(kFF);
-    p.setOutputRange(kMinOutput, kMaxOutput);
-    p.setSmartMotionMaxVelocity(maxVel, smartMotionSlot);
-    p.setSmartMotionMinOutputVelocity(minVel, smartMotionSlot);
-    p.setSmartMotionMaxAccel(maxAcc, smartMotionSlot);
-    p.setSmartMotionAllowedClosedLoopError(allowedErr, smartMotionSlot);
+  private static SetpointCache newSetpointCache(SparkMaxPIDController p) {
+    return new SetpointCache(p, Constants.setpointRefreshMs)
+        .withDeadband(CANSparkMax.ControlType.kSmartVelocity, Constants.velocitySetpointDeadband)
+        .withDeadband(CANSparkMax.ControlType.kVelocity, Constants.velocitySetpointDeadband)
+        .withDeadband(CANSparkMax.ControlType.kSmartMotion, Constants.positionSetpointDeadband);
   }
 
   @Override
   public void periodic() {
-    double processVariable = leftBackEncoder.getVelocity();
-    
-    //SmartDashboard.putNumber("PDP Thing", powerDistributionModule.getModule());
-
     // This method will be called once per scheduler run
-    
-    //SmartDashboard.putNumber("Ultrasonic", ultrasonic.getValue() * 0.125);
-    SmartDashboard.putNumber("Postion", leftBackEncoder.getPosition());
-    SmartDashboard.putNumber("Velocity", leftBackEncoder.getVelocity());
-    SmartDashboard.putNumber("Joystick x", RobotContainer.driverStick.getX());
-    SmartDashboard.putNumber("Joystick y", RobotContainer.driverStick.getY());
-    SmartDashboard.putNumber("Process Variable", processVariable);
-    SmartDashboard.putBoolean("Collision Detected?", AutoDriveCommand.collisionDetected);
+    // Dashboard values are registered with Telemetry in the constructor
+    long start = LoopProfiler.start();
+    // Runs before any command so every command this cycle sees the same sample
+    updateInputs();
 
-    SmartDashboard.putNumber("Left Velocity", m_leftFrontEncoder.getVelocity());
-    SmartDashboard.putNumber("Right Velocity", m_rightFrontEncoder.getVelocity());
-    
+    //SmartDashboard.putNumber("PDP Thing", powerDistributionModule.getModule());
+    //SmartDashboard.putNumber("Ultrasonic", ultrasonic.getValue() * 0.125);
 
     /*SmartDashboard.putNumber("Total Current", powerDistributionModule.getTotalCurrent());
     SmartDashboard.putNumber("Total Power", powerDistributionModule.getTotalPower());
@@ -239,5 +441,18 @@ public class DriveSubsystem extends SubsystemBase {
     SmartDashboard.putNumber("Current of Motor 2", powerDistributionModule.getCurrent(2));
     SmartDashboard.putNumber("Current of Motor 3", powerDistributionModule.getCurrent(3));*/
     //BallTransitSubsystem.toggleIntake(Constants.Buttons.intakeBallToggle);
+    LoopProfiler.stop(periodicProfilerId, start);
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    if (physics != null) {
+      physics.update(TimedRobot.kDefaultPeriod);
+    }
+  }
+
+  /** @return the simulated drivetrain, null on the real robot and in replay */
+  public DrivetrainPhysics getPhysics() {
+    return physics;
   }
 }
@@ -0,0 +1,117 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import org.photonvision.PhotonCamera;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants;
+import frc.robot.util.DataLogger;
+import frc.robot.util.LogReplay;
+import frc.robot.util.LoggedInputs;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.SingleSlotHandoff;
+import frc.robot.util.Telemetry;
+
+/**
+ * Owns the camera. Results are read on a background thread and the newest one
+ * is handed to the main loop once per cycle, so commands never wait on NetworkTables
+ */
+public class VisionSubsystem extends SubsystemBase {
+  /** One camera result, reused so no objects are made per frame */
+  public static class VisionTarget {
+    public boolean hasTargets;
+    public double yaw;
+    public double pitch;
+    public double area;
+    // When the frame was captured (FPGA seconds) and how long processing took
+    public double captureTimestamp;
+    public double latencyMillis;
+  }
+
+  private final PhotonCamera camera = new PhotonCamera(Constants.cameraName);
+  private final SingleSlotHandoff<VisionTarget> handoff = new SingleSlotHandoff<>(VisionTarget::new);
+  private final Notifier reader = new Notifier(this::readCamera);
+  // Only touched on the reader thread
+  private double lastCaptureTimestamp = Double.NaN;
+
+  // The camera isn't read when a log is replayed, the logged result goes here instead
+  private final VisionTarget replayTarget = new VisionTarget();
+  private final LoggedInputs loggedInputs = DataLogger.addInputs("Vision/")
+      .add("Has Targets", () -> getTarget().hasTargets ? 1 : 0, v -> replayTarget.hasTargets = v != 0)
+      .add("Yaw", () -> getTarget().yaw, v -> replayTarget.yaw = v)
+      .add("Pitch", () -> getTarget().pitch, v -> replayTarget.pitch = v)
+      .add("Area", () -> getTarget().area, v -> replayTarget.area = v)
+      .add("Capture Timestamp", () -> getTarget().captureTimestamp, v -> replayTarget.captureTimestamp = v)
+      .add("Latency ms", () -> getTarget().latencyMillis, v -> replayTarget.latencyMillis = v);
+
+  private final int periodicProfilerId = LoopProfiler.register("VisionSubsystem.periodic");
+
+  public VisionSubsystem() {
+    reader.setName("Vision");
+    if (!LogReplay.isActive()) {
+      reader.startPeriodic(Constants.visionPollSeconds);
+    }
+    Telemetry.addBoolean("Vision Has Target", this::hasTargets);
+    Telemetry.addNumber("Vision Latency ms", () -> getTarget().latencyMillis, 0.5, 0.25);
+  }
+
+  // Runs on the Notifier thread
+  private void readCamera() {
+    PhotonPipelineResult result = camera.getLatestResult();
+    double captureTimestamp = result.getTimestampSeconds();
+    if (captureTimestamp == lastCaptureTimestamp) {
+      return; // Same frame as last time
+    }
+    lastCaptureTimestamp = captureTimestamp;
+
+    VisionTarget out = handoff.getWriteBuffer();
+    out.hasTargets = result.hasTargets();
+    if (out.hasTargets) {
+      PhotonTrackedTarget best = result.getBestTarget();
+      out.yaw = best.getYaw();
+      out.pitch = best.getPitch();
+      out.area = best.getArea();
+    }
+    out.captureTimestamp = captureTimestamp;
+    out.latencyMillis = result.getLatencyMillis();
+    handoff.publish();
+  }
+
+  @Override
+  public void periodic() {
+    long start = LoopProfiler.start();
+    // Picks up the newest frame, if there is one, for every command this cycle
+    handoff.poll();
+    loggedInputs.process();
+    LoopProfiler.stop(periodicProfilerId, start);
+  }
+
+  /** @return the newest result, only valid until the next cycle */
+  public VisionTarget getTarget() {
+    return LogReplay.isActive() ? replayTarget : handoff.get();
+  }
+
+  public boolean hasTargets() {
+    return getTarget().hasTargets;
+  }
+
+  public double getYaw() {
+    return getTarget().yaw;
+  }
+
+  public double getPitch() {
+    return getTarget().pitch;
+  }
+
+  /** @return seconds since the newest frame was captured */
+  public double getAge() {
+    return Timer.getFPGATimestamp() - getTarget().captureTimestamp;
+  }
+}
@@ -0,0 +1,146 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A trajectory made offline by the tools/GenerateTrajectories program.
+ *
+ * <p>The file is a 12 byte header (magic, version, sample count as ints) and then
+ * one 28 byte sample per time step: time, x, y, heading, velocity, acceleration
+ * and curvature as little endian floats. Units are seconds, meters and radians.
+ * The file is memory mapped and samples are read straight out of it, so loading
+ * doesn't parse anything or make objects per sample
+ */
+public class TrajectoryFile {
+  public static final int kMagic = 0x5452414A; // "TRAJ"
+  public static final int kVersion = 1;
+  private static final int kHeaderBytes = 12;
+  private static final int kSampleBytes = 28;
+
+  // Order of the floats in a sample, also the order of values in sample()'s output
+  public static final int kTime = 0;
+  public static final int kX = 1;
+  public static final int kY = 2;
+  public static final int kHeading = 3;
+  public static final int kVelocity = 4;
+  public static final int kAcceleration = 5;
+  public static final int kCurvature = 6;
+  public static final int kValues = 7;
+
+  private final ByteBuffer buffer;
+  private final int sampleCount;
+
+  private TrajectoryFile(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (this.buffer.getInt(0) != kMagic || this.buffer.getInt(4) != kVersion) {
+      throw new IOException("Not a version " + kVersion + " trajectory file");
+    }
+    sampleCount = this.buffer.getInt(8);
+    if (sampleCount < 1 || this.buffer.capacity() < kHeaderBytes + sampleCount * kSampleBytes) {
+      throw new IOException("Trajectory file is cut short");
+    }
+  }
+
+  /**
+   * Memory maps a trajectory file
+   * @param file the .traj file
+   * @return the trajectory
+   * @throws IOException if the file can't be read or isn't a trajectory
+   */
+  public static TrajectoryFile load(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel()) {
+      // The mapping stays valid after the channel is closed
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      mapped.load();
+      return new TrajectoryFile(mapped);
+    }
+  }
+
+  /**
+   * Writes a trajectory file. Every array must have count values
+   * @param file where to write
+   * @param samples one array per value, indexed by kTime, kX, ...
+   * @param count number of samples
+   * @throws IOException if the file can't be written
+   */
+  public static void write(File file, double[][] samples, int count) throws IOException {
+    ByteBuffer out = ByteBuffer.allocate(kHeaderBytes + count * kSampleBytes).order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(kMagic).putInt(kVersion).putInt(count);
+    for (int i = 0; i < count; i++) {
+      for (int value = 0; value < kValues; value++) {
+        out.putFloat((float) samples[value][i]);
+      }
+    }
+    out.flip();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        FileChannel channel = raf.getChannel()) {
+      channel.truncate(0);
+      channel.write(out);
+    }
+  }
+
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * @param index sample number
+   * @param value one of kTime, kX, ...
+   * @return the value
+   */
+  public double get(int index, int value) {
+    return buffer.getFloat(kHeaderBytes + index * kSampleBytes + value * 4);
+  }
+
+  public double getTotalTime() {
+    return get(sampleCount - 1, kTime);
+  }
+
+  /**
+   * Interpolates the trajectory at a time
+   * @param time seconds since the start
+   * @param hint index to start searching from, the return value of the last call
+   * @param out gets the kValues values, indexed by kTime, kX, ...
+   * @return the index to pass as the hint next time
+   */
+  public int sample(double time, int hint, double[] out) {
+    int i = Math.max(0, Math.min(hint, sampleCount - 1));
+    if (get(i, kTime) > time) {
+      i = 0;
+    }
+    while (i < sampleCount - 1 && get(i + 1, kTime) <= time) {
+      i++;
+    }
+    if (i == sampleCount - 1) {
+      for (int value = 0; value < kValues; value++) {
+        out[value] = get(i, value);
+      }
+      return i;
+    }
+    double startTime = get(i, kTime);
+    double fraction = (time - startTime) / (get(i + 1, kTime) - startTime);
+    fraction = Math.max(0, Math.min(1, fraction));
+    for (int value = 0; value < kValues; value++) {
+      double a = get(i, value);
+      double b = get(i + 1, value);
+      if (value == kHeading) {
+        out[value] = a + Math.IEEEremainder(b - a, 2 * Math.PI) * fraction;
+      } else {
+        out[value] = a + (b - a) * fraction;
+      }
+    }
+    out[kTime] = time;
+    return i;
+  }
+}
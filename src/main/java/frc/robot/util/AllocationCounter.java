@@ -0,0 +1,61 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads how many bytes a thread has allocated so far, for the {@link LoopProfiler}.
+ * Kept in its own class so a JVM without com.sun.management only fails if profiling is turned on.
+ * On Java 11 every read allocates a couple of small arrays itself, {@link #getReadOverhead()}
+ * is how much so it can be taken back out
+ */
+final class AllocationCounter {
+  private static com.sun.management.ThreadMXBean threads = null;
+  private static long readOverhead = 0;
+
+  private AllocationCounter() {}
+
+  /** @return true if the counter works on this JVM, turns it on the first time */
+  static synchronized boolean enable() {
+    if (threads != null) {
+      return true;
+    }
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return false;
+    }
+    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+    if (!sunBean.isThreadAllocatedMemorySupported()) {
+      return false;
+    }
+    sunBean.setThreadAllocatedMemoryEnabled(true);
+    threads = sunBean;
+
+    // Two reads in a row only differ by what a read allocates. Smallest of a few in case the JIT is busy
+    long thread = Thread.currentThread().getId();
+    long overhead = Long.MAX_VALUE;
+    for (int i = 0; i < 16; i++) {
+      long first = threads.getThreadAllocatedBytes(thread);
+      long second = threads.getThreadAllocatedBytes(thread);
+      overhead = Math.min(overhead, second - first);
+    }
+    readOverhead = overhead;
+    return true;
+  }
+
+  /**
+   * @param thread id of the thread
+   * @return bytes it has allocated since it started
+   */
+  static long read(long thread) {
+    return threads.getThreadAllocatedBytes(thread);
+  }
+
+  /** @return bytes one {@link #read} allocates */
+  static long getReadOverhead() {
+    return readOverhead;
+  }
+}
@@ -0,0 +1,237 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.FaultID;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+
+import edu.wpi.first.hal.can.CANJNI;
+import edu.wpi.first.hal.can.CANStatus;
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.Constants;
+
+/**
+ * Sets how often every SPARK MAX sends its status frames from what the code actually reads.
+ * Each subsystem says which signals it reads off which controller, how often, and in which
+ * phases of the match with {@link #use}. Every frame nobody reads in the current phase is slowed
+ * to Constants.canIdleFrameMs, so the back drive encoders' velocity or the climber position in
+ * teleop stop taking up the bus.
+ *
+ * <p>{@link #update()} switches the frames when the phase changes and puts them back if a
+ * controller resets (frame periods aren't kept through a brownout). It also reads the bus
+ * utilization and error counters and publishes them, with how much of the match the bus
+ * spent over Constants.canUtilizationTarget. Clearing the reset fault clears every sticky fault,
+ * so they're read first, logged and reported to the driver station if there's more than the reset
+ */
+public final class CanBudget {
+  private CanBudget() {}
+
+  /** What the code reads off a SPARK MAX, each comes in one status frame */
+  public enum Signal {
+    // Applied output and faults
+    output(PeriodicFrame.kStatus0),
+    // Velocity, current, temperature and bus voltage
+    velocity(PeriodicFrame.kStatus1),
+    // Encoder position
+    position(PeriodicFrame.kStatus2);
+
+    private final PeriodicFrame frame;
+
+    Signal(PeriodicFrame frame) {
+      this.frame = frame;
+    }
+  }
+
+  public enum Phase {
+    disabled,
+    autonomous,
+    teleop,
+    // The last Constants.endgameSeconds of teleop, or all of it when there's no match timer
+    endgame
+  }
+
+  /** Every phase but disabled, for signals read whenever the robot is running */
+  public static final Phase[] kEnabled = {Phase.autonomous, Phase.teleop, Phase.endgame};
+
+  private static final PeriodicFrame[] kFrames = PeriodicFrame.values();
+  private static final FaultID[] kFaults = FaultID.values();
+  private static final Phase[] kPhases = Phase.values();
+
+  private static final class Controller {
+    final CANSparkMax motor;
+    // Fastest period anything asked for, by phase and frame. 0 if nothing reads it
+    final int[][] periods = new int[kPhases.length][kFrames.length];
+    // What the controller was last told, 0 if it hasn't been
+    final int[] applied = new int[kFrames.length];
+    // Sticky fault bits read before the last clear, by FaultID ordinal
+    int stickyFaults = 0;
+
+    Controller(CANSparkMax motor) {
+      this.motor = motor;
+    }
+  }
+
+  private static final List<Controller> controllers = new ArrayList<>();
+  private static Phase phase = null;
+  private static int cycles = 0;
+
+  private static final CANStatus status = new CANStatus();
+  private static double utilization = 0;
+  // In tenths of a percent
+  private static final Histogram utilizationHistory = new Histogram(1, 1001);
+  private static long samplesOverTarget = 0;
+  private static double plannedFramesPerSecond = 0;
+  private static int resets = 0;
+
+  /**
+   * Says a signal is read off a controller. Call while making the subsystems
+   * @param motor the controller
+   * @param signal what's read
+   * @param periodMs how often it has to be fresh
+   * @param phases when it's read
+   */
+  public static synchronized void use(CANSparkMax motor, Signal signal, int periodMs, Phase... phases) {
+    Controller controller = find(motor);
+    int frame = signal.frame.ordinal();
+    for (Phase p : phases) {
+      int current = controller.periods[p.ordinal()][frame];
+      controller.periods[p.ordinal()][frame] = current == 0 ? periodMs : Math.min(current, periodMs);
+    }
+  }
+
+  private static Controller find(CANSparkMax motor) {
+    for (Controller controller : controllers) {
+      if (controller.motor == motor) {
+        return controller;
+      }
+    }
+    Controller controller = new Controller(motor);
+    controllers.add(controller);
+    return controller;
+  }
+
+  /** Publishes the bus numbers, call once from robotInit() */
+  public static void registerTelemetry() {
+    Telemetry.addNumber("CAN/Utilization %", () -> utilization * 100, 0.5);
+    Telemetry.addNumber("CAN/Utilization p99 %", () -> utilizationHistory.percentile(0.99) / 10.0, 0.5, 1);
+    Telemetry.addNumber("CAN/Over Target %", CanBudget::getPercentOverTarget, 0.1, 1);
+    Telemetry.addNumber("CAN/Planned Frames per s", () -> plannedFramesPerSecond, 1, 1);
+    Telemetry.addNumber("CAN/Bus Off", () -> status.busOffCount, 0, 1);
+    Telemetry.addNumber("CAN/TX Full", () -> status.txFullCount, 0, 1);
+    Telemetry.addNumber("CAN/TX Errors", () -> status.transmitErrorCount, 0, 1);
+    Telemetry.addNumber("CAN/RX Errors", () -> status.receiveErrorCount, 0, 1);
+    Telemetry.addNumber("CAN/Controller Resets", () -> resets, 0, 1);
+    Telemetry.addNumber("CAN/Phase", () -> phase == null ? -1 : phase.ordinal(), 0);
+    DataLogger.addNumber("CAN/Utilization", () -> utilization);
+    for (Controller controller : controllers) {
+      DataLogger.addNumber("CAN/SPARK MAX " + controller.motor.getDeviceId() + " Sticky Faults",
+          () -> controller.stickyFaults);
+    }
+  }
+
+  /** Call every loop */
+  public static synchronized void update() {
+    Phase next = currentPhase();
+    if (phase == null) {
+      // Every controller comes up with the reset fault set, this one isn't counted
+      for (Controller controller : controllers) {
+        clearFaults(controller);
+      }
+    }
+    if (next != phase) {
+      phase = next;
+      apply();
+    }
+    if (++cycles % Constants.canSampleCycles == 0) {
+      sample();
+    }
+  }
+
+  private static Phase currentPhase() {
+    if (DriverStation.isDisabled()) {
+      return Phase.disabled;
+    }
+    if (DriverStation.isAutonomous()) {
+      return Phase.autonomous;
+    }
+    // -1 without a match timer, like in the pit, then the climber can always be tested
+    double matchTime = DriverStation.getMatchTime();
+    return matchTime > Constants.endgameSeconds ? Phase.teleop : Phase.endgame;
+  }
+
+  // Only sends the frames that changed
+  private static void apply() {
+    double frames = 0;
+    for (Controller controller : controllers) {
+      for (int f = 0; f < kFrames.length; f++) {
+        int period = controller.periods[phase.ordinal()][f];
+        if (period == 0) {
+          period = f == PeriodicFrame.kStatus0.ordinal() ? Constants.canIdleOutputFrameMs : Constants.canIdleFrameMs;
+        }
+        if (period != controller.applied[f]) {
+          controller.motor.setPeriodicFramePeriod(kFrames[f], period);
+          controller.applied[f] = period;
+        }
+        frames += 1000.0 / period;
+      }
+    }
+    plannedFramesPerSecond = frames;
+  }
+
+  private static void sample() {
+    CANJNI.getCANStatus(status);
+    utilization = status.percentBusUtilization;
+    utilizationHistory.record(Math.round(utilization * 1000));
+    if (utilization > Constants.canUtilizationTarget) {
+      samplesOverTarget++;
+    }
+
+    // A controller that reset is back on its default frames
+    boolean reapply = false;
+    for (Controller controller : controllers) {
+      if (controller.motor.getStickyFault(FaultID.kHasReset)) {
+        clearFaults(controller);
+        Arrays.fill(controller.applied, 0);
+        reapply = true;
+        resets++;
+      }
+    }
+    if (reapply && phase != null) {
+      apply();
+    }
+  }
+
+  // Clearing drops every sticky fault, not just the reset, so the others are kept and reported first
+  private static void clearFaults(Controller controller) {
+    int faults = controller.motor.getStickyFaults() & 0xFFFF;
+    controller.stickyFaults = faults;
+    if ((faults & ~(1 << FaultID.kHasReset.ordinal())) != 0) {
+      StringBuilder names = new StringBuilder();
+      for (FaultID fault : kFaults) {
+        if (fault != FaultID.kHasReset && (faults & (1 << fault.ordinal())) != 0) {
+          names.append(' ').append(fault.name());
+        }
+      }
+      DriverStation.reportWarning("SPARK MAX " + controller.motor.getDeviceId() + " sticky faults:" + names, false);
+    }
+    controller.motor.clearFaults();
+  }
+
+  /** @return the phase the frames are set for, null before the first update */
+  public static synchronized Phase getPhase() {
+    return phase;
+  }
+
+  /** @return percent of the samples where the bus was over Constants.canUtilizationTarget */
+  public static synchronized double getPercentOverTarget() {
+    long count = utilizationHistory.getCount();
+    return count == 0 ? 0 : 100.0 * samplesOverTarget / count;
+  }
+}
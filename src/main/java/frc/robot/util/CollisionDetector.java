@@ -0,0 +1,151 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.kauailabs.navx.AHRSProtocol.AHRSUpdateBase;
+import com.kauailabs.navx.frc.AHRS;
+import com.kauailabs.navx.frc.ITimestampedDataSubscriber;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+
+/**
+ * Detects collisions and tipping from every navX update instead of once per loop.
+ * The navX calls us on its own thread at its update rate, we look at the jerk on
+ * X and Y and at pitch/roll, and put what we find in a lock-free ring of events
+ * that any command can read.
+ *
+ * <p>The collision threshold was tuned on the change between two 20ms loops, so every update
+ * is still compared with the acceleration from Constants.collisionWindowSeconds ago
+ */
+public class CollisionDetector implements ITimestampedDataSubscriber {
+  public static final int kCollision = 1;
+  public static final int kTipOver = 2;
+
+  // Power of two so the index can wrap with a mask
+  private static final int kCapacity = 64;
+  // Each event is three longs: FPGA time in microseconds, type, magnitude bits
+  private static final int kFields = 3;
+
+  /** A copy of one event, reuse the same one for every read */
+  public static class Event {
+    public double timestamp;
+    public int type;
+    // Jerk in G for a collision, degrees of tilt for a tip over
+    public double magnitude;
+  }
+
+  private final AtomicLongArray events = new AtomicLongArray(kCapacity * kFields);
+  // Number of events ever written, the newest is at eventCount - 1
+  private final AtomicLong eventCount = new AtomicLong();
+  private volatile long collisionCount = 0;
+  private volatile double lastCollisionTime = Double.NEGATIVE_INFINITY;
+  private volatile boolean tipping = false;
+
+  // Only touched on the navX thread. The last collisionWindowSeconds of accelerations
+  private final double[] historyX;
+  private final double[] historyY;
+  private long samples = 0;
+
+  public CollisionDetector(AHRS gyro) {
+    int window = Math.max(1, (int) Math.round(Constants.collisionWindowSeconds * (Constants.navXUpdateRateHz & 0xFF)));
+    historyX = new double[window];
+    historyY = new double[window];
+    gyro.registerCallback(this, null);
+  }
+
+  // Runs on the navX thread every time it sends an update
+  @Override
+  public void timestampedDataReceived(long systemTimestamp, long sensorTimestamp, AHRSUpdateBase data,
+      Object context) {
+    double now = Timer.getFPGATimestamp();
+    double accelX = data.linear_accel_x;
+    double accelY = data.linear_accel_y;
+
+    int slot = (int) (samples % historyX.length);
+    // The oldest sample in the window, about to be written over
+    double lastAccelX = historyX[slot];
+    double lastAccelY = historyY[slot];
+    if (samples >= historyX.length && now - lastCollisionTime > Constants.collisionDebounceSeconds) {
+      double jerkX = accelX - lastAccelX;
+      double jerkY = accelY - lastAccelY;
+      if (DriveMath.isCollision(accelX, lastAccelX, Constants.collisionThresholdDeltaG)
+          || DriveMath.isCollision(accelY, lastAccelY, Constants.collisionThresholdDeltaG)) {
+        lastCollisionTime = now;
+        collisionCount = collisionCount + 1;
+        addEvent(now, kCollision, Math.max(Math.abs(jerkX), Math.abs(jerkY)));
+      }
+    }
+    historyX[slot] = accelX;
+    historyY[slot] = accelY;
+    samples++;
+
+    double tilt = Math.max(Math.abs(data.pitch), Math.abs(data.roll));
+    if (!tipping && tilt > Constants.tipOverDegrees) {
+      tipping = true;
+      addEvent(now, kTipOver, tilt);
+    } else if (tipping && tilt < Constants.tipOverDegrees - Constants.tipOverHysteresisDegrees) {
+      tipping = false;
+    }
+  }
+
+  private void addEvent(double timestamp, int type, double magnitude) {
+    long index = eventCount.get();
+    int slot = (int) (index & (kCapacity - 1)) * kFields;
+    events.set(slot, (long) (timestamp * 1e6));
+    events.set(slot + 1, type);
+    events.set(slot + 2, Double.doubleToRawLongBits(magnitude));
+    // Publishing the count after the fields is what makes them visible to readers
+    eventCount.set(index + 1);
+  }
+
+  /** @return how many events have ever happened, use as a cursor for {@link #readEvent} */
+  public long getEventCount() {
+    return eventCount.get();
+  }
+
+  /**
+   * Copies an event out of the ring
+   * @param index from 0 to {@link #getEventCount()} - 1
+   * @param out where to copy the event
+   * @return false if the event was already written over or doesn't exist yet
+   */
+  public boolean readEvent(long index, Event out) {
+    if (index < 0 || index >= eventCount.get()) {
+      return false;
+    }
+    int slot = (int) (index & (kCapacity - 1)) * kFields;
+    out.timestamp = events.get(slot) / 1e6;
+    out.type = (int) events.get(slot + 1);
+    out.magnitude = Double.longBitsToDouble(events.get(slot + 2));
+    // If the writer lapped us while copying, the copy might be mixed up
+    return eventCount.get() - index < kCapacity;
+  }
+
+  public long getCollisionCount() {
+    return collisionCount;
+  }
+
+  /** @return FPGA time of the newest collision */
+  public double getLastCollisionTime() {
+    return lastCollisionTime;
+  }
+
+  /**
+   * @param timestamp FPGA time, like when a command started
+   * @return true if there was a collision after that time
+   */
+  public boolean collidedSince(double timestamp) {
+    return lastCollisionTime > timestamp;
+  }
+
+  /** @return true while the robot is tilted past the tip over angle */
+  public boolean isTipping() {
+    return tipping;
+  }
+}
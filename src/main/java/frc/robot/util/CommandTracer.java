@@ -0,0 +1,301 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants;
+
+/**
+ * Records when every command starts and ends so a match can be looked at as a timeline.
+ * {@link #start()} hooks the CommandScheduler, so everything it schedules is traced. The steps
+ * inside a command group never reach the scheduler, so wrap them with {@link #traced}, and a
+ * command with steps of its own can trace them with {@link #begin} and {@link #end}.
+ *
+ * <p>Each event is a timestamp, a name id and a type written into preallocated arrays, so
+ * recording costs a few array stores and is left on for matches. The ring keeps the last
+ * Constants.traceCapacity events.
+ * {@link #export} writes them out as Chrome trace event JSON, open it in chrome://tracing or
+ * ui.perfetto.dev. Every traced name gets its own row, with how many times execute() ran and
+ * whether it was interrupted on each span
+ */
+public final class CommandTracer {
+  private CommandTracer() {}
+
+  private static final byte kBegin = 0;
+  private static final byte kEnd = 1;
+  private static final byte kInterrupted = 2;
+
+  private static final int kCapacity = Constants.traceCapacity;
+  private static final long[] times = new long[kCapacity];
+  private static final int[] ids = new int[kCapacity];
+  private static final byte[] types = new byte[kCapacity];
+  // Executes since the span began, on end events
+  private static final int[] counts = new int[kCapacity];
+  private static long eventCount = 0;
+
+  private static String[] names = new String[0];
+  private static int[] executes = new int[0];
+  private static final Map<Command, Integer> commandIds = new IdentityHashMap<>();
+  private static boolean started = false;
+  private static long exportedCount = 0;
+
+  /**
+   * Gives a name an id to trace it under, call when making the command and not every time it runs
+   * @param name shown as the row in the trace
+   * @return the id for {@link #begin} and {@link #end}
+   */
+  public static synchronized int register(String name) {
+    names = Arrays.copyOf(names, names.length + 1);
+    executes = Arrays.copyOf(executes, executes.length + 1);
+    names[names.length - 1] = name;
+    return names.length - 1;
+  }
+
+  /** Traces everything the scheduler runs, call once from robotInit() */
+  public static synchronized void start() {
+    if (started || !Constants.traceCommands) {
+      return;
+    }
+    started = true;
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    scheduler.onCommandInitialize(command -> begin(idOf(command)));
+    scheduler.onCommandExecute(command -> executed(idOf(command)));
+    scheduler.onCommandFinish(command -> end(idOf(command), false));
+    scheduler.onCommandInterrupt(command -> end(idOf(command), true));
+  }
+
+  // Only allocates the first time a command is seen
+  private static synchronized int idOf(Command command) {
+    Integer id = commandIds.get(command);
+    if (id == null) {
+      id = register(command.getName());
+      commandIds.put(command, id);
+    }
+    return id;
+  }
+
+  /** @param id from {@link #register}, a span for it starts now */
+  public static synchronized void begin(int id) {
+    executes[id] = 0;
+    record(id, kBegin, 0);
+  }
+
+  /**
+   * @param id from {@link #register}, its span ends now
+   * @param interrupted true if it didn't get to finish
+   */
+  public static synchronized void end(int id, boolean interrupted) {
+    record(id, interrupted ? kInterrupted : kEnd, executes[id]);
+  }
+
+  /** @param id counts one more execute() in its span */
+  public static synchronized void executed(int id) {
+    executes[id]++;
+  }
+
+  private static void record(int id, byte type, int count) {
+    int slot = (int) (eventCount % kCapacity);
+    times[slot] = RobotController.getFPGATime();
+    ids[slot] = id;
+    types[slot] = type;
+    counts[slot] = count;
+    eventCount++;
+  }
+
+  /**
+   * Wraps a command so its span shows up in the trace, for the steps of a command group
+   * @param command the command
+   * @return a command that runs exactly like it
+   */
+  public static Command traced(Command command) {
+    return new TracedCommand(command);
+  }
+
+  // Runs exactly like the command it wraps, like ProfiledCommand
+  private static final class TracedCommand extends CommandBase {
+    private final Command command;
+    private final int id;
+
+    TracedCommand(Command command) {
+      this.command = command;
+      id = register(command.getName());
+      setName(command.getName());
+      m_requirements.addAll(command.getRequirements());
+    }
+
+    @Override
+    public void initialize() {
+      begin(id);
+      command.initialize();
+    }
+
+    @Override
+    public void execute() {
+      command.execute();
+      executed(id);
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+      command.end(interrupted);
+      CommandTracer.end(id, interrupted);
+    }
+
+    @Override
+    public boolean isFinished() {
+      return command.isFinished();
+    }
+
+    @Override
+    public boolean runsWhenDisabled() {
+      return command.runsWhenDisabled();
+    }
+  }
+
+  /** @return how many events have been recorded, including ones the ring has written over */
+  public static synchronized long getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Writes the trace next to the data log on a background thread, so it can be called from
+   * disabledInit() after every match without holding up the loop. Does nothing if there's nothing new
+   */
+  public static void exportInBackground() {
+    Snapshot snapshot = snapshot();
+    if (snapshot == null) {
+      return;
+    }
+    File directory = new File(RobotBase.isSimulation() ? "logs" : Constants.dataLogDirectory);
+    Thread thread = new Thread(() -> {
+      try {
+        write(snapshot, new File(directory, "commands.json"));
+      } catch (IOException e) {
+        System.err.println("Couldn't write the command trace: " + e.getMessage());
+      }
+    }, "CommandTracer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Writes the trace now, for tools at the end of a simulation
+   * @param file where the JSON goes
+   * @throws IOException if it couldn't be written
+   */
+  public static void export(File file) throws IOException {
+    Snapshot snapshot = snapshot();
+    if (snapshot != null) {
+      write(snapshot, file);
+    }
+  }
+
+  // A copy of the ring so writing doesn't hold the lock
+  private static final class Snapshot {
+    long[] times;
+    int[] ids;
+    byte[] types;
+    int[] counts;
+    String[] names;
+    int[] executes;
+    long now;
+  }
+
+  private static synchronized Snapshot snapshot() {
+    if (eventCount == exportedCount) {
+      return null;
+    }
+    exportedCount = eventCount;
+    int size = (int) Math.min(eventCount, kCapacity);
+    long first = eventCount - size;
+    Snapshot snapshot = new Snapshot();
+    snapshot.times = new long[size];
+    snapshot.ids = new int[size];
+    snapshot.types = new byte[size];
+    snapshot.counts = new int[size];
+    for (int i = 0; i < size; i++) {
+      int slot = (int) ((first + i) % kCapacity);
+      snapshot.times[i] = times[slot];
+      snapshot.ids[i] = ids[slot];
+      snapshot.types[i] = types[slot];
+      snapshot.counts[i] = counts[slot];
+    }
+    snapshot.names = names.clone();
+    snapshot.executes = executes.clone();
+    snapshot.now = RobotController.getFPGATime();
+    return snapshot;
+  }
+
+  // Spans are complete events on one row per name, so ones that overlap still line up
+  private static void write(Snapshot snapshot, File file) throws IOException {
+    File directory = file.getAbsoluteFile().getParentFile();
+    if (directory != null) {
+      directory.mkdirs();
+    }
+    try (Writer out = new BufferedWriter(new FileWriter(file))) {
+      out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+      boolean firstEvent = true;
+      for (int id = 0; id < snapshot.names.length; id++) {
+        firstEvent = comma(out, firstEvent);
+        out.write(String.format("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+            id, escape(snapshot.names[id])));
+      }
+      // FPGA microseconds, which is what the trace format wants
+      long[] open = new long[snapshot.names.length];
+      Arrays.fill(open, -1);
+      for (int i = 0; i < snapshot.times.length; i++) {
+        int id = snapshot.ids[i];
+        if (snapshot.types[i] == kBegin) {
+          open[id] = snapshot.times[i];
+        } else if (open[id] >= 0) {
+          // An end whose begin was written over is left out
+          firstEvent = comma(out, firstEvent);
+          writeSpan(out, snapshot.names[id], id, open[id], snapshot.times[i],
+              snapshot.counts[i], snapshot.types[i] == kInterrupted ? "true" : "false");
+          open[id] = -1;
+        }
+      }
+      // Still running when the trace was taken
+      for (int id = 0; id < open.length; id++) {
+        if (open[id] >= 0) {
+          firstEvent = comma(out, firstEvent);
+          writeSpan(out, snapshot.names[id], id, open[id], snapshot.now, snapshot.executes[id], "\"running\"");
+        }
+      }
+      out.write("\n]}\n");
+    }
+  }
+
+  private static void writeSpan(Writer out, String name, int id, long begin, long end, int executes,
+      String interrupted) throws IOException {
+    out.write(String.format(
+        "{\"name\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%d,\"dur\":%d,\"args\":{\"executes\":%d,\"interrupted\":%s}}",
+        escape(name), id, begin, end - begin, executes, interrupted));
+  }
+
+  private static boolean comma(Writer out, boolean first) throws IOException {
+    if (!first) {
+      out.write(",\n");
+    }
+    return false;
+  }
+
+  private static String escape(String text) {
+    return text.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+}
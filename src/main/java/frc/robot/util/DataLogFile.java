@@ -0,0 +1,161 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a log written by {@link DataLogger}. {@link #seek} moves to one record and the
+ * getters read straight out of the mapped file, so going through a whole log makes no objects.
+ * Columns are numbered like the names in the header: numbers first, then booleans
+ */
+public class DataLogFile {
+  private final File file;
+  private final MappedByteBuffer buffer;
+  private final String[] names;
+  private final int numberCount;
+  private final int booleanCount;
+  private final int recordSize;
+  private final long capacity;
+  private final int headerSize;
+  private final long newest;
+
+  // Offset of the record seek() found
+  private int offset = -1;
+
+  /**
+   * Maps the file and finds the newest record
+   * @param file a log copied off the robot
+   * @throws IOException if it can't be read or isn't a data log
+   */
+  public DataLogFile(File file) throws IOException {
+    this.file = file;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt(0) != DataLogger.kMagic) {
+      throw new IOException(file + " isn't a robot data log");
+    }
+    if (buffer.getInt(4) != DataLogger.kVersion) {
+      throw new IOException(file + " is version " + buffer.getInt(4) + ", this reads " + DataLogger.kVersion);
+    }
+    numberCount = buffer.getInt(DataLogger.kNumberCountOffset);
+    booleanCount = buffer.getInt(DataLogger.kBooleanCountOffset);
+    recordSize = buffer.getInt(DataLogger.kRecordSizeOffset);
+    capacity = buffer.getInt(DataLogger.kCapacityOffset);
+    int namesLength = buffer.getInt(DataLogger.kNamesOffset);
+    byte[] nameBytes = new byte[namesLength];
+    for (int i = 0; i < namesLength; i++) {
+      nameBytes[i] = buffer.get(DataLogger.kNamesOffset + 4 + i);
+    }
+    names = namesLength == 0 ? new String[0] : new String(nameBytes, StandardCharsets.UTF_8).split("\n");
+    headerSize = (DataLogger.kNamesOffset + 4 + namesLength + 7) & ~7;
+
+    // The newest record is the biggest sequence number that's in the right slot.
+    // Found this way instead of from the write count so a log cut off by a power loss still reads
+    long found = -1;
+    for (long slot = 0; slot < capacity; slot++) {
+      long sequence = buffer.getLong((int) (headerSize + slot * recordSize));
+      if (sequence >= 0 && sequence % capacity == slot) {
+        found = Math.max(found, sequence);
+      }
+    }
+    newest = found;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public String[] getNames() {
+    return names;
+  }
+
+  public int getNumberCount() {
+    return numberCount;
+  }
+
+  public int getBooleanCount() {
+    return booleanCount;
+  }
+
+  /**
+   * @param name a signal name
+   * @return its column, or -1 if it isn't in this log
+   */
+  public int indexOf(String name) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** @return the sequence number of the oldest record still in the ring, -1 if there are none */
+  public long getOldestSequence() {
+    return newest < 0 ? -1 : Math.max(0, newest - capacity + 1);
+  }
+
+  /** @return the sequence number of the newest record, -1 if there are none */
+  public long getNewestSequence() {
+    return newest;
+  }
+
+  /**
+   * Moves to a record
+   * @param sequence its sequence number
+   * @return false if it was overwritten or only half written, the getters can't be used then
+   */
+  public boolean seek(long sequence) {
+    if (sequence < 0 || sequence > newest) {
+      offset = -1;
+      return false;
+    }
+    int at = (int) (headerSize + (sequence % capacity) * recordSize);
+    offset = buffer.getLong(at) == sequence ? at : -1;
+    return offset >= 0;
+  }
+
+  /** @return FPGA time of the current record in microseconds */
+  public long getTimeMicros() {
+    return buffer.getLong(offset + 8);
+  }
+
+  /**
+   * @param column a number column
+   * @return its value in the current record
+   */
+  public double getNumber(int column) {
+    return buffer.getDouble(offset + 16 + 8 * column);
+  }
+
+  /**
+   * @param column a boolean column, counted after the numbers like the names are
+   * @return its value in the current record
+   */
+  public boolean getBoolean(int column) {
+    long bits = buffer.getLong(offset + 16 + 8 * numberCount);
+    return ((bits >>> (column - numberCount)) & 1) != 0;
+  }
+
+  /**
+   * @param column any column
+   * @return its value in the current record, booleans are 0 or 1
+   */
+  public double getValue(int column) {
+    if (column < numberCount) {
+      return getNumber(column);
+    }
+    return getBoolean(column) ? 1 : 0;
+  }
+}
@@ -0,0 +1,256 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.Constants;
+
+/**
+ * Records registered signals every loop into a ring file that is memory mapped, so
+ * logging is just writing numbers into memory. The file is made full size at startup and
+ * a background thread flushes it to disk, the main loop never allocates or waits on the disk.
+ * Read the file on a desktop with ./gradlew readDataLog, or run the robot code against it
+ * with ./gradlew replayLog, which needs sensor reads registered as inputs and what the code
+ * commands registered as outputs
+ *
+ * <p>File layout, all little endian:
+ * <pre>
+ * header:  int magic, int version, int number count, int boolean count,
+ *          int record size, int capacity, long records written,
+ *          int names length, names (UTF-8, one per line, numbers then booleans),
+ *          padding to a multiple of 8
+ * records: capacity slots of {long sequence, long FPGA time in us, double per number,
+ *          long with one bit per boolean}. Record n is in slot n % capacity
+ * </pre>
+ */
+public final class DataLogger {
+  public static final int kMagic = 0x524C4F47; // "RLOG"
+  public static final int kVersion = 1;
+  public static final int kMaxBooleans = 64;
+
+  // Header offsets
+  public static final int kNumberCountOffset = 8;
+  public static final int kBooleanCountOffset = 12;
+  public static final int kRecordSizeOffset = 16;
+  public static final int kCapacityOffset = 20;
+  public static final int kWriteCountOffset = 24;
+  public static final int kNamesOffset = 32;
+
+  private static final double kFlushPeriodSeconds = 1;
+
+  private static final List<String> numberNames = new ArrayList<>();
+  private static final List<DoubleSupplier> numberSupplierList = new ArrayList<>();
+  private static final List<String> booleanNames = new ArrayList<>();
+  private static final List<BooleanSupplier> booleanSupplierList = new ArrayList<>();
+  // Compared against the log by LogReplay, also in numberNames
+  private static final List<String> outputNames = new ArrayList<>();
+  private static final List<DoubleSupplier> outputSuppliers = new ArrayList<>();
+
+  // Copied to arrays by start() so log() doesn't go through a List
+  private static DoubleSupplier[] numberSuppliers;
+  private static BooleanSupplier[] booleanSuppliers;
+
+  private static MappedByteBuffer buffer = null;
+  private static int headerSize;
+  private static int recordSize;
+  private static long capacity;
+  private static long writeCount = 0;
+  private static Notifier flusher;
+
+  private DataLogger() {}
+
+  /**
+   * Registers a number to record every loop. Call before {@link #start()}
+   * @param name shown by the reader
+   * @param supplier where the value comes from
+   */
+  public static synchronized void addNumber(String name, DoubleSupplier supplier) {
+    checkNotStarted();
+    numberNames.add(name);
+    numberSupplierList.add(supplier);
+  }
+
+  /**
+   * Registers a boolean to record every loop. Call before {@link #start()}
+   * @param name shown by the reader
+   * @param supplier where the value comes from
+   */
+  public static synchronized void addBoolean(String name, BooleanSupplier supplier) {
+    checkNotStarted();
+    if (booleanNames.size() >= kMaxBooleans) {
+      throw new IllegalStateException("Too many logged booleans, the record only has " + kMaxBooleans + " bits");
+    }
+    booleanNames.add(name);
+    booleanSupplierList.add(supplier);
+  }
+
+  /**
+   * Starts a group of sensor readings that can be replayed. Call before {@link #start()}
+   * @param prefix put in front of every name in the group, like "Drive/"
+   * @return the group, add the inputs to it
+   */
+  public static LoggedInputs addInputs(String prefix) {
+    checkNotStarted();
+    return new LoggedInputs(prefix);
+  }
+
+  /**
+   * Registers something the code commands, like a motor setpoint. It's recorded like a number,
+   * and replaying a log checks the replayed code commands the same thing. Call before {@link #start()}
+   * @param name shown by the reader
+   * @param supplier where the value comes from
+   */
+  public static synchronized void addOutput(String name, DoubleSupplier supplier) {
+    addNumber(name, supplier);
+    outputNames.add(name);
+    outputSuppliers.add(supplier);
+  }
+
+  static synchronized List<String> getOutputNames() {
+    return outputNames;
+  }
+
+  static synchronized List<DoubleSupplier> getOutputSuppliers() {
+    return outputSuppliers;
+  }
+
+  private static void checkNotStarted() {
+    if (buffer != null) {
+      throw new IllegalStateException("Register log signals before DataLogger.start()");
+    }
+  }
+
+  /**
+   * Makes the log file and starts the flush thread. Call from robotInit() after everything
+   * is registered. The last few logs are kept as .1, .2, ... so a reboot doesn't lose the match
+   */
+  public static synchronized void start() {
+    // Replaying a log shouldn't write a new one over the old ones
+    if (buffer != null || LogReplay.isActive()) {
+      return;
+    }
+    numberSuppliers = numberSupplierList.toArray(new DoubleSupplier[0]);
+    booleanSuppliers = booleanSupplierList.toArray(new BooleanSupplier[0]);
+
+    StringBuilder names = new StringBuilder();
+    for (String name : numberNames) {
+      names.append(name).append('\n');
+    }
+    for (String name : booleanNames) {
+      names.append(name).append('\n');
+    }
+    byte[] nameBytes = names.toString().getBytes(StandardCharsets.UTF_8);
+    headerSize = (kNamesOffset + 4 + nameBytes.length + 7) & ~7;
+    recordSize = 8 + 8 + 8 * numberSuppliers.length + 8;
+    capacity = (Constants.dataLogBytes - headerSize) / recordSize;
+
+    File file = getLogFile();
+    try {
+      rotate(file);
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        long size = headerSize + capacity * recordSize;
+        raf.setLength(size);
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    } catch (IOException e) {
+      DriverStation.reportError("Data log disabled, couldn't make " + file + ": " + e.getMessage(), false);
+      buffer = null;
+      return;
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    // Touch every page now so the main loop never waits on the first write to a page
+    for (int i = 0; i < buffer.capacity(); i += 8) {
+      buffer.putLong(i, 0);
+    }
+    buffer.putInt(0, kMagic);
+    buffer.putInt(4, kVersion);
+    buffer.putInt(kNumberCountOffset, numberSuppliers.length);
+    buffer.putInt(kBooleanCountOffset, booleanSuppliers.length);
+    buffer.putInt(kRecordSizeOffset, recordSize);
+    buffer.putInt(kCapacityOffset, (int) capacity);
+    buffer.putLong(kWriteCountOffset, 0);
+    buffer.putInt(kNamesOffset, nameBytes.length);
+    for (int i = 0; i < nameBytes.length; i++) {
+      buffer.put(kNamesOffset + 4 + i, nameBytes[i]);
+    }
+
+    flusher = new Notifier(DataLogger::flush);
+    flusher.setName("DataLogger");
+    flusher.startPeriodic(kFlushPeriodSeconds);
+    System.out.printf("Data log %s: %d numbers, %d booleans, %d records of %d bytes%n",
+        file, numberSuppliers.length, booleanSuppliers.length, capacity, recordSize);
+  }
+
+  /**
+   * Writes one record of every signal. Call once per loop from the main thread
+   */
+  public static void log() {
+    MappedByteBuffer b = buffer;
+    if (b == null) {
+      return;
+    }
+    long sequence = writeCount;
+    int offset = (int) (headerSize + (sequence % capacity) * recordSize);
+    // Marked invalid until it's all written, the reader skips half written records
+    b.putLong(offset, -1);
+    b.putLong(offset + 8, RobotController.getFPGATime());
+    int position = offset + 16;
+    for (DoubleSupplier supplier : numberSuppliers) {
+      b.putDouble(position, supplier.getAsDouble());
+      position += 8;
+    }
+    long bits = 0;
+    for (int i = 0; i < booleanSuppliers.length; i++) {
+      if (booleanSuppliers[i].getAsBoolean()) {
+        bits |= 1L << i;
+      }
+    }
+    b.putLong(position, bits);
+    b.putLong(offset, sequence);
+    writeCount = sequence + 1;
+    b.putLong(kWriteCountOffset, writeCount);
+  }
+
+  // Runs on the Notifier thread, the only place that waits on the disk
+  private static void flush() {
+    MappedByteBuffer b = buffer;
+    if (b != null) {
+      b.force();
+    }
+  }
+
+  private static File getLogFile() {
+    // There's no /home/lvuser in simulation
+    File directory = new File(RobotBase.isSimulation() ? "logs" : Constants.dataLogDirectory);
+    directory.mkdirs();
+    return new File(directory, "robot.rlog");
+  }
+
+  private static void rotate(File file) {
+    for (int i = Constants.dataLogsKept - 1; i >= 1; i--) {
+      File older = new File(file.getPath() + "." + i);
+      File newer = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+      if (newer.exists()) {
+        older.delete();
+        newer.renameTo(older);
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+/**
+ * The math that runs every cycle for driving, kept away from any hardware
+ * so it can be benchmarked on a desktop JVM
+ */
+public final class DriveMath {
+  private DriveMath() {}
+
+  /**
+   * Expected Angle - Current Angle, wrapped to -180 to 180
+   * @param expectedAngle wanted angle in degrees
+   * @param currentAngle gyro angle in degrees
+   * @return the angle Error
+   */
+  public static double angleError(double expectedAngle, double currentAngle) {
+    //The IEEEremainder is just to convert the angle of anything greater then 180 to the negative side
+    //Ex: 270 degrees -> -90 degrees
+    double angleSubtract = Math.IEEEremainder(expectedAngle, 360) - Math.IEEEremainder(currentAngle, 360);
+    if (angleSubtract > 180) {
+      return angleSubtract - 360;
+    } else if (angleSubtract < -180) {
+      return angleSubtract + 360;
+    } else {
+      return angleSubtract;
+    }
+  }
+
+  /**
+    Velocity of the left motors in rotations per min
+    If wanting to turn right, then the output of setPointLeft will
+    be greater then setPointRight
+  */
+  public static double setPointLeft(double Jx, double Jy, double scaleX, double scaleY) {
+    double yScale = ((Jy) * scaleY);
+    double xScale = (Jx) * scaleX;
+    return xScale + yScale;
+  }
+
+  /**
+    Velocity of the right motors in rotations per min
+    If wanting to turn left, then the output of setPointRight will be greater then
+    setPointLeft
+  */
+  public static double setPointRight(double Jx, double Jy, double scaleX, double scaleY) {
+    double xScale = (-(Jx) * scaleX);
+    double yScale = ((Jy) * scaleY);
+    return -1 * (xScale + yScale);
+  }
+
+  /**
+   * Cubic joystick shaping, small movements are finer and full stick is still full speed
+   * @param value joystick axis
+   * @param cubicScale how much of the output comes from value^3
+   * @param linearScale how much of the output comes from value
+   * @return the shaped value
+   */
+  public static double shapeJoystick(double value, double cubicScale, double linearScale) {
+    return cubicScale * (value * value * value) + linearScale * value;
+  }
+
+  /**
+   * PD for turning in place, with the gyro rate as the D so there's no kick when the target changes
+   * @param error expected angle - current angle in degrees
+   * @param rate gyro rate in degrees per second, same direction as the angle
+   * @param kP RPM per degree of error
+   * @param kD RPM per degree per second
+   * @param kS RPM to get the robot moving at all, added in the direction of the error
+   * @param maxRPM the output is clamped to this
+   * @return RPM for the motors, positive turns clockwise
+   */
+  public static double headingOutput(double error, double rate, double kP, double kD, double kS, double maxRPM) {
+    double output = kP * error - kD * rate + Math.copySign(kS, error);
+    return Math.max(-maxRPM, Math.min(maxRPM, output));
+  }
+
+  /**
+   * Checks if the change in acceleration between two samples looks like a hit
+   * @param currentAccel acceleration now in G
+   * @param lastAccel acceleration last sample in G
+   * @param threshold change in G that counts as a collision
+   * @return true if the jerk is over the threshold
+   */
+  public static boolean isCollision(double currentAccel, double lastAccel, double threshold) {
+    return Math.abs(currentAccel - lastAccel) > threshold;
+  }
+}
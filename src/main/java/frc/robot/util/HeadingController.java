@@ -0,0 +1,186 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.function.DoubleConsumer;
+
+import com.kauailabs.navx.frc.AHRS;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * Turns the robot in place to an angle on its own Notifier, faster than the main loop.
+ * It's a PD on the navX angle with the navX rate as the D, and it's settled only when
+ * both the error and the rate have been small for a little while.
+ * Every turn's time to settle and overshoot is recorded so tuning can be measured.
+ * A turn that hasn't settled after headingMaxTurnSeconds gives up and counts as settled,
+ * so a robot pinned against something doesn't hang the auto.
+ * When a log is replayed there's no navX to read, so there's no Notifier either and
+ * {@link #step} is called every loop with the logged readings
+ */
+public class HeadingController {
+  private final AHRS gyro;
+  // Gets the RPM to turn at, positive is clockwise
+  private final DoubleConsumer output;
+  private final Notifier notifier = new Notifier(this::update);
+
+  // Settle times from 0 to 5 seconds in 10ms buckets
+  private final Histogram settleTimes = new Histogram(10_000_000L, 500);
+
+  // Only changed while holding the lock
+  private boolean running = false;
+  private double target = 0;
+  private double startTime = 0;
+  private double startError = 0;
+  private double settleStart = Double.NaN;
+  private double overshoot = 0;
+  private volatile boolean settled = false;
+
+  private volatile double lastSettleMillis = 0;
+  private volatile double lastOvershoot = 0;
+  private volatile long turnCount = 0;
+  private volatile long timeoutCount = 0;
+
+  /**
+   * @param gyro the navX, or null in replay where {@link #step} is called instead
+   * @param output called on the Notifier thread with the motor RPM, positive turns clockwise
+   */
+  public HeadingController(AHRS gyro, DoubleConsumer output) {
+    this.gyro = gyro;
+    this.output = output;
+    notifier.setName("Heading");
+  }
+
+  /**
+   * Starts turning to an angle
+   * @param angle navX angle in degrees
+   * @param currentAngle the navX angle from this cycle's inputs
+   */
+  public synchronized void start(double angle, double currentAngle) {
+    target = angle;
+    startTime = Timer.getFPGATimestamp();
+    startError = DriveMath.angleError(angle, currentAngle);
+    settleStart = Double.NaN;
+    overshoot = 0;
+    settled = false;
+    if (!running) {
+      running = true;
+      if (gyro != null) {
+        notifier.startPeriodic(DriveConstants.headingPeriodSeconds);
+      }
+    }
+  }
+
+  /**
+   * Stops turning and stops the motors. The output isn't called again after this returns,
+   * so the main thread can drive again
+   */
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    notifier.stop();
+    output.accept(0);
+  }
+
+  /** @return true once the error and rate have both been small for long enough, or the turn timed out */
+  public boolean isSettled() {
+    return settled;
+  }
+
+  // Runs on the Notifier thread
+  private void update() {
+    step(Timer.getFPGATimestamp(), gyro.getAngle(), gyro.getRate());
+  }
+
+  /**
+   * Runs the controller once. The Notifier does this with the navX, replay does it every loop
+   * @param now FPGA seconds
+   * @param angle navX angle in degrees
+   * @param rate navX rate in degrees per second
+   */
+  public synchronized void step(double now, double angle, double rate) {
+    if (!running) {
+      return;
+    }
+    double error = DriveMath.angleError(target, angle);
+
+    // Going past the target shows up as the error changing sign
+    if (Math.signum(error) != Math.signum(startError)) {
+      overshoot = Math.max(overshoot, Math.abs(error));
+    }
+
+    boolean inside = Math.abs(error) < DriveConstants.headingSettleDegrees
+        && Math.abs(rate) < DriveConstants.headingSettleRate;
+    if (!inside) {
+      settleStart = Double.NaN;
+    } else if (Double.isNaN(settleStart)) {
+      settleStart = now;
+    } else if (!settled && now - settleStart >= DriveConstants.headingSettleSeconds) {
+      settled = true;
+      recordTurn();
+    }
+    if (!settled && now - startTime >= DriveConstants.headingMaxTurnSeconds) {
+      settled = true;
+      timeoutCount++;
+    }
+
+    output.accept(computeOutput(error, rate));
+  }
+
+  private static double computeOutput(double error, double rate) {
+    // No kS inside the band or it would chatter back and forth around the target
+    double kS = Math.abs(error) < DriveConstants.headingSettleDegrees ? 0 : DriveConstants.headingKS;
+    return DriveMath.headingOutput(error, rate, DriveConstants.headingKP, DriveConstants.headingKD,
+        kS, DriveConstants.headingMaxRPM);
+  }
+
+  /**
+   * Runs the control law and the output once for {@link JitWarmup} without touching the turn.
+   * Only while disabled and not turning, the output has to be muted
+   * @param angle made up gyro angle
+   * @param rate made up gyro rate
+   */
+  public void warmUp(double angle, double rate) {
+    output.accept(computeOutput(DriveMath.angleError(0, angle), rate));
+  }
+
+  private void recordTurn() {
+    // Counted from the start of the turn, not counting the settle window itself
+    double seconds = settleStart - startTime;
+    settleTimes.record((long) (seconds * 1e9));
+    lastSettleMillis = seconds * 1000;
+    lastOvershoot = overshoot;
+    turnCount++;
+  }
+
+  public double getLastSettleMillis() {
+    return lastSettleMillis;
+  }
+
+  public double getLastOvershoot() {
+    return lastOvershoot;
+  }
+
+  public long getTurnCount() {
+    return turnCount;
+  }
+
+  /** @return how many turns gave up before settling */
+  public long getTimeoutCount() {
+    return timeoutCount;
+  }
+
+  /**
+   * @param percentile 0 to 1
+   * @return settle time of all the turns so far in milliseconds
+   */
+  public synchronized double getSettleMillis(double percentile) {
+    return settleTimes.percentile(percentile) / 1e6;
+  }
+}
@@ -0,0 +1,70 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed bucket histogram of durations in nanoseconds.
+ * Everything is allocated up front so recording never creates garbage
+ */
+public class Histogram {
+  private final long bucketWidthNanos;
+  // The last bucket also holds everything past the end of the range
+  private final long[] counts;
+  private long total = 0;
+  private long maxNanos = 0;
+
+  /**
+   * @param bucketWidthNanos width of one bucket
+   * @param bucketCount number of buckets, so the range is width * count
+   */
+  public Histogram(long bucketWidthNanos, int bucketCount) {
+    this.bucketWidthNanos = bucketWidthNanos;
+    this.counts = new long[bucketCount];
+  }
+
+  public void record(long nanos) {
+    int bucket = (int) Math.min(Math.max(nanos, 0) / bucketWidthNanos, counts.length - 1);
+    counts[bucket]++;
+    total++;
+    if (nanos > maxNanos) {
+      maxNanos = nanos;
+    }
+  }
+
+  /**
+   * @param percentile between 0 and 1
+   * @return upper edge of the bucket that holds the percentile, in nanoseconds
+   */
+  public long percentile(double percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long needed = (long) Math.ceil(percentile * total);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= needed) {
+        return Math.min((i + 1) * bucketWidthNanos, maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+
+  public long getMax() {
+    return maxNanos;
+  }
+
+  public long getCount() {
+    return total;
+  }
+
+  public void reset() {
+    Arrays.fill(counts, 0);
+    total = 0;
+    maxNanos = 0;
+  }
+}
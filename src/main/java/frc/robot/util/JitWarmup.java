@@ -0,0 +1,136 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.Constants;
+
+/**
+ * Runs the code autonomous and teleop depend on thousands of times while the robot is disabled,
+ * so the JIT has compiled it before the first enabled loop instead of during it.
+ * Each exercise is called with a made up input that sweeps between -1 and 1 so both sides of
+ * its branches get run. Every {@link SetpointCache} is muted while they run so nothing reaches
+ * the motors, the caches don't remember any of it either.
+ *
+ * <p>It also times the first Constants.warmupReportCycles loops after every enable and
+ * reports them, so runs with Constants.jitWarmup on and off can be compared.
+ * Muting is the one thing that runs differently, so the first real write can still make the JIT
+ * recompile the method that sends it, but everything around it is already compiled
+ */
+public final class JitWarmup {
+  private JitWarmup() {}
+
+  private static String[] names = new String[0];
+  private static DoubleConsumer[] exercises = new DoubleConsumer[0];
+  private static int iterations = 0;
+  private static boolean done = false;
+  private static double warmupMillis = 0;
+
+  // First loops after an enable
+  private static boolean wasEnabled = false;
+  private static int enabledCycles = 0;
+  private static long firstCyclesTotal = 0;
+  private static long firstCyclesMax = 0;
+  private static int firstCyclesOverBudget = 0;
+  private static double lastMeanMillis = 0;
+  private static double lastMaxMillis = 0;
+
+  /**
+   * Adds code to warm up. It has to be safe to run while disabled and leave nothing changed
+   * other than through a {@link SetpointCache}
+   * @param name shown when warm-up is done
+   * @param exercise called with a value from -1 to 1
+   */
+  public static synchronized void add(String name, DoubleConsumer exercise) {
+    names = Arrays.copyOf(names, names.length + 1);
+    exercises = Arrays.copyOf(exercises, exercises.length + 1);
+    names[names.length - 1] = name;
+    exercises[exercises.length - 1] = exercise;
+  }
+
+  /** Publishes the warm-up and first loop numbers, call once from robotInit() */
+  public static void registerTelemetry() {
+    Telemetry.addBoolean("Warmup/Done", () -> done);
+    Telemetry.addNumber("Warmup/ms", () -> warmupMillis, 1, 1);
+    Telemetry.addNumber("Warmup/First Loops Mean ms", () -> lastMeanMillis, 0.01, 1);
+    Telemetry.addNumber("Warmup/First Loops Max ms", () -> lastMaxMillis, 0.01, 1);
+  }
+
+  /** Warms up for up to Constants.warmupBudgetMs, call from disabledPeriodic() */
+  public static void run() {
+    if (done || !Constants.jitWarmup || !DriverStation.isDisabled()) {
+      return;
+    }
+    long start = System.nanoTime();
+    long budget = (long) (Constants.warmupBudgetMs * 1e6);
+    SetpointCache.setMuted(true);
+    try {
+      while (iterations < Constants.warmupIterations && System.nanoTime() - start < budget) {
+        // Triangle wave so the input keeps changing
+        double input = 1 - Math.abs((iterations % 400) / 100.0 - 2);
+        for (DoubleConsumer exercise : exercises) {
+          exercise.accept(input);
+        }
+        iterations++;
+      }
+    } finally {
+      SetpointCache.setMuted(false);
+    }
+    warmupMillis += (System.nanoTime() - start) / 1e6;
+    if (iterations >= Constants.warmupIterations) {
+      done = true;
+      System.out.printf("JIT warm-up of %s done, %d runs in %.0f ms%n",
+          String.join(", ", names), iterations, warmupMillis);
+    }
+  }
+
+  /** Times the first loops after an enable, call at the very end of robotPeriodic() */
+  public static void afterCycle() {
+    boolean enabled = DriverStation.isEnabled();
+    if (enabled && !wasEnabled) {
+      enabledCycles = 0;
+      firstCyclesTotal = 0;
+      firstCyclesMax = 0;
+      firstCyclesOverBudget = 0;
+    }
+    wasEnabled = enabled;
+    if (!enabled || enabledCycles >= Constants.warmupReportCycles) {
+      return;
+    }
+    long nanos = LoopProfiler.getLastCycleNanos();
+    firstCyclesTotal += nanos;
+    firstCyclesMax = Math.max(firstCyclesMax, nanos);
+    if (nanos > 20_000_000L) {
+      firstCyclesOverBudget++;
+    }
+    if (++enabledCycles == Constants.warmupReportCycles) {
+      lastMeanMillis = firstCyclesTotal / 1e6 / enabledCycles;
+      lastMaxMillis = firstCyclesMax / 1e6;
+      System.out.println(describeFirstCycles());
+    }
+  }
+
+  /** @return the timing of the first loops after the last enable, and whether it was warmed up */
+  public static String describeFirstCycles() {
+    String warmup = !Constants.jitWarmup ? "warm-up off" : done ? "warmed up" : "warm-up not finished";
+    return String.format("First %d enabled loops (%s): mean %.2f ms, max %.2f ms, %d over 20 ms",
+        enabledCycles, warmup, lastMeanMillis, lastMaxMillis, firstCyclesOverBudget);
+  }
+
+  public static boolean isDone() {
+    return done;
+  }
+
+  public static double getFirstCyclesMeanMillis() {
+    return lastMeanMillis;
+  }
+
+  public static double getFirstCyclesMaxMillis() {
+    return lastMaxMillis;
+  }
+}
@@ -0,0 +1,191 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Feeds a recorded data log back through the robot code on a desktop.
+ * While a log is open the subsystems don't read their hardware, {@link LoggedInputs}
+ * puts the logged readings in instead, and {@link #compareOutputs()} checks every
+ * output registered with {@link DataLogger#addOutput} against what was recorded.
+ * The replay tool (./gradlew replayLog) moves through the log with {@link #next()}
+ */
+public final class LogReplay {
+  // Replay runs the same code on the same numbers, so anything more than rounding is a real difference
+  private static final double kTolerance = 1e-9;
+
+  private static DataLogFile log = null;
+  private static long sequence = -1;
+  private static long replayed = 0;
+  private static long skipped = 0;
+  private static Output[] outputs = null;
+
+  private static final class Output {
+    final String name;
+    final DoubleSupplier supplier;
+    final int column;
+    long divergedCount = 0;
+    double firstTime = Double.NaN;
+    double firstRecorded;
+    double firstReplayed;
+    double maxError = 0;
+
+    Output(String name, DoubleSupplier supplier, int column) {
+      this.name = name;
+      this.supplier = supplier;
+      this.column = column;
+    }
+  }
+
+  private LogReplay() {}
+
+  /**
+   * Opens a log to replay. Call before any subsystem is made, they pick
+   * their hardware or the log when they're constructed
+   * @param file the log
+   * @throws IOException if it can't be read
+   */
+  public static void open(File file) throws IOException {
+    log = new DataLogFile(file);
+    sequence = log.getOldestSequence() - 1;
+  }
+
+  /** @return true when the robot code is running against a log instead of hardware */
+  public static boolean isActive() {
+    return log != null;
+  }
+
+  public static DataLogFile getLog() {
+    return log;
+  }
+
+  /**
+   * Moves to the next whole record
+   * @return false at the end of the log
+   */
+  public static boolean next() {
+    while (++sequence <= log.getNewestSequence()) {
+      if (log.seek(sequence)) {
+        replayed++;
+        return true;
+      }
+      skipped++;
+    }
+    return false;
+  }
+
+  /** @return true once {@link #next()} has moved to a record, and until the end of the log */
+  public static boolean hasRecord() {
+    return log != null && replayed > 0 && sequence <= log.getNewestSequence();
+  }
+
+  /** @return FPGA time of the current record in microseconds */
+  public static long getTimeMicros() {
+    return log.getTimeMicros();
+  }
+
+  /**
+   * @param names signal names
+   * @return the column of each one in the log, -1 for any that aren't in it
+   */
+  public static int[] findColumns(String[] names) {
+    int[] columns = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      columns[i] = log.indexOf(names[i]);
+    }
+    return columns;
+  }
+
+  /**
+   * @param column from {@link #findColumns}
+   * @return its value in the current record, booleans are 0 or 1
+   */
+  public static double getValue(int column) {
+    return log.getValue(column);
+  }
+
+  /**
+   * Checks every registered output against the current record.
+   * Call after the robot code has run the cycle for the record
+   */
+  public static void compareOutputs() {
+    if (outputs == null) {
+      List<String> names = DataLogger.getOutputNames();
+      List<DoubleSupplier> suppliers = DataLogger.getOutputSuppliers();
+      outputs = new Output[names.size()];
+      for (int i = 0; i < outputs.length; i++) {
+        outputs[i] = new Output(names.get(i), suppliers.get(i), log.indexOf(names.get(i)));
+      }
+    }
+    for (Output output : outputs) {
+      if (output.column < 0) {
+        continue;
+      }
+      double recorded = log.getValue(output.column);
+      double value = output.supplier.getAsDouble();
+      if (same(recorded, value)) {
+        continue;
+      }
+      if (output.divergedCount == 0) {
+        output.firstTime = log.getTimeMicros() / 1e6;
+        output.firstRecorded = recorded;
+        output.firstReplayed = value;
+      }
+      output.divergedCount++;
+      double error = Math.abs(recorded - value);
+      output.maxError = Double.isNaN(error) ? Double.POSITIVE_INFINITY : Math.max(output.maxError, error);
+    }
+  }
+
+  private static boolean same(double recorded, double value) {
+    if (Double.isNaN(recorded) || Double.isNaN(value)) {
+      return Double.isNaN(recorded) && Double.isNaN(value);
+    }
+    return Math.abs(recorded - value) <= kTolerance;
+  }
+
+  /**
+   * Prints which outputs diverged, the earliest first since the later ones usually follow from it
+   * @param out where to print
+   * @return true if every output matched the log
+   */
+  public static boolean printReport(PrintStream out) {
+    out.printf("Replayed %d records of %s (%d half written or overwritten)%n", replayed, log.getFile(), skipped);
+    if (outputs == null) {
+      return true;
+    }
+    List<String> missing = new ArrayList<>();
+    List<Output> diverged = new ArrayList<>();
+    for (Output output : outputs) {
+      if (output.column < 0) {
+        missing.add(output.name);
+      } else if (output.divergedCount > 0) {
+        diverged.add(output);
+      }
+    }
+    if (!missing.isEmpty()) {
+      out.println("Not in the log, not checked: " + String.join(", ", missing));
+    }
+    if (diverged.isEmpty()) {
+      out.printf("All %d outputs match the log%n", outputs.length - missing.size());
+      return true;
+    }
+    diverged.sort(Comparator.comparingDouble(o -> o.firstTime));
+    out.printf("%d of %d outputs diverged:%n", diverged.size(), outputs.length - missing.size());
+    out.printf("  %-32s %8s %10s %14s %14s %12s%n", "Output", "Records", "First (s)", "Recorded", "Replayed", "Max error");
+    for (Output output : diverged) {
+      out.printf("  %-32s %8d %10.3f %14.6g %14.6g %12.6g%n", output.name, output.divergedCount,
+          output.firstTime, output.firstRecorded, output.firstReplayed, output.maxError);
+    }
+    return false;
+  }
+}
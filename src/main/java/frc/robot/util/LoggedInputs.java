@@ -0,0 +1,79 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * One subsystem's sensor readings in the data log. Each value has a getter, used on the
+ * robot, and a setter, used when replaying a log on a desktop.
+ * Call {@link #process()} right after the subsystem reads its sensors: on the robot it
+ * saves the values for this cycle's record, in replay it overwrites them with the logged ones.
+ * They're saved then and not when the record is written because commands can change the
+ * inputs later in the cycle (like resetEncoders() zeroing the positions)
+ */
+public class LoggedInputs {
+  private final String prefix;
+  private String[] names = new String[0];
+  private DoubleSupplier[] getters = new DoubleSupplier[0];
+  private DoubleConsumer[] setters = new DoubleConsumer[0];
+  // What process() saved this cycle, the data log writes these
+  private double[] values = new double[0];
+  // Where each value is in the replayed log, found the first time it's replayed
+  private int[] columns = null;
+
+  /** Made by {@link DataLogger#addInputs(String)} */
+  LoggedInputs(String prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * Adds one input. Booleans are logged as 0 or 1
+   * @param name shown by the reader after the group's prefix
+   * @param getter reads the input on the robot
+   * @param setter puts the logged value back in replay
+   * @return this group so calls can be chained
+   */
+  public LoggedInputs add(String name, DoubleSupplier getter, DoubleConsumer setter) {
+    int index = names.length;
+    names = Arrays.copyOf(names, index + 1);
+    getters = Arrays.copyOf(getters, index + 1);
+    setters = Arrays.copyOf(setters, index + 1);
+    values = Arrays.copyOf(values, index + 1);
+    names[index] = prefix + name;
+    getters[index] = getter;
+    setters[index] = setter;
+    DataLogger.addNumber(prefix + name, () -> values[index]);
+    return this;
+  }
+
+  /**
+   * Saves the inputs for the log, or in replay sets them to the logged values.
+   * Call once per cycle right after the sensors are read
+   */
+  public void process() {
+    if (LogReplay.isActive()) {
+      // Nothing to put in before the first record, like when the subsystems are made
+      if (!LogReplay.hasRecord()) {
+        return;
+      }
+      if (columns == null) {
+        columns = LogReplay.findColumns(names);
+      }
+      for (int i = 0; i < setters.length; i++) {
+        // Left alone if the log is older than the input
+        if (columns[i] >= 0) {
+          setters[i].accept(LogReplay.getValue(columns[i]));
+        }
+      }
+      return;
+    }
+    for (int i = 0; i < getters.length; i++) {
+      values[i] = getters[i].getAsDouble();
+    }
+  }
+}
@@ -0,0 +1,357 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.Constants;
+
+/**
+ * Times each subsystem periodic() and command execute()/isFinished() so we can
+ * tell what blew the 20ms budget.
+ * Every section gets a preallocated {@link Histogram} whose p50/p99/max are published
+ * with {@link Telemetry}. When a cycle overruns, the sections that ran in it are ranked
+ * by time and saved.
+ *
+ * <p>With {@link #setAllocationTracking} on, the main thread's allocated bytes counter is read
+ * at the same points, so each section also gets the bytes it allocated. A section's bytes include
+ * any section nested in it, and whatever the cycle allocated outside a section shows up as "other".
+ * The top allocators go to the driver station console every 10 seconds
+ */
+public final class LoopProfiler {
+  private static final int kMaxSections = 64;
+  private static final long kBudgetNanos = 20_000_000L;
+  // 50us buckets up to 25ms
+  private static final long kBucketWidthNanos = 50_000L;
+  private static final int kBucketCount = 500;
+  // How many of the slowest sections are kept for an overrun
+  private static final int kRankedSections = 5;
+  // How many overruns are kept before the oldest is written over
+  private static final int kOverrunHistory = 16;
+
+  private static final String[] names = new String[kMaxSections];
+  private static final Histogram[] histograms = new Histogram[kMaxSections];
+  private static int sectionCount = 0;
+
+  // Time spent in each section during the current cycle
+  private static final long[] cycleNanos = new long[kMaxSections];
+  private static final boolean[] inCycle = new boolean[kMaxSections];
+  private static final int[] touched = new int[kMaxSections];
+  private static int touchedCount = 0;
+  private static long cycleStart = 0;
+  private static long lastCycleNanos = 0;
+
+  private static final Histogram loopHistogram = new Histogram(kBucketWidthNanos, kBucketCount);
+  private static long overrunCount = 0;
+  // Ring of ranked breakdowns, one row per overrun
+  private static final long[] overrunTotals = new long[kOverrunHistory];
+  private static final int[][] overrunSections = new int[kOverrunHistory][kRankedSections];
+  private static final long[][] overrunSectionNanos = new long[kOverrunHistory][kRankedSections];
+
+  // Allocation tracking, only used while it's on
+  private static final int kMaxDepth = 16;
+  // The top allocators are reported after this many cycles
+  private static final int kAllocationReportCycles = 500;
+  private static boolean trackAllocations = false;
+  private static long mainThread = -1;
+  // Counter reads so far, each one allocates AllocationCounter.getReadOverhead() bytes itself
+  private static long counterReads = 0;
+  // Open sections, start() pushes and stop() pops. depth counts every open section, ones past
+  // kMaxDepth aren't kept and their bytes go to the section around them
+  private static final long[] startBytes = new long[kMaxDepth];
+  private static final long[] startReads = new long[kMaxDepth];
+  private static int depth = 0;
+  private static final long[] sectionBytes = new long[kMaxSections];
+  private static long cycleStartBytes = 0;
+  private static long cycleStartReads = 0;
+  private static long cycleSectionBytes = 0;
+  private static long allocationCycles = 0;
+  private static long totalBytes = 0;
+  private static long otherBytes = 0;
+  // 64 byte buckets up to 64KB
+  private static final Histogram cycleBytes = new Histogram(64, 1000);
+
+  private LoopProfiler() {}
+
+  /**
+   * Gets the id of a section, creating it the first time a name is used.
+   * Call this from constructors, not from periodic code
+   * @param name name shown on the dashboard
+   * @return the id to pass to {@link #stop(int, long)}
+   */
+  public static synchronized int register(String name) {
+    for (int i = 0; i < sectionCount; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    if (sectionCount >= kMaxSections) {
+      throw new IllegalStateException("Too many profiled sections, raise kMaxSections");
+    }
+    int id = sectionCount++;
+    names[id] = name;
+    Histogram histogram = new Histogram(kBucketWidthNanos, kBucketCount);
+    histograms[id] = histogram;
+    Telemetry.addNumber("Loop/" + name + " p50 ms", () -> histogram.percentile(0.5) / 1e6, 0.01, 1);
+    Telemetry.addNumber("Loop/" + name + " p99 ms", () -> histogram.percentile(0.99) / 1e6, 0.01, 1);
+    Telemetry.addNumber("Loop/" + name + " max ms", () -> histogram.getMax() / 1e6, 0.01, 1);
+    if (Constants.profileAllocations) {
+      Telemetry.addNumber("Alloc/" + name + " bytes per cycle", () -> getAllocatedBytesPerCycle(id), 1, 1);
+    }
+    return id;
+  }
+
+  /** @return the start time to pass to {@link #stop(int, long)} */
+  public static long start() {
+    if (trackAllocations && Thread.currentThread().getId() == mainThread) {
+      if (depth < kMaxDepth) {
+        startReads[depth] = counterReads;
+        startBytes[depth] = readCounter();
+      }
+      depth++;
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the time since start for a section
+   * @param id from {@link #register(String)}
+   * @param startNanos from {@link #start()}
+   */
+  public static void stop(int id, long startNanos) {
+    long elapsed = System.nanoTime() - startNanos;
+    histograms[id].record(elapsed);
+    if (!inCycle[id]) {
+      inCycle[id] = true;
+      touched[touchedCount++] = id;
+    }
+    cycleNanos[id] += elapsed;
+    if (trackAllocations && depth > 0 && Thread.currentThread().getId() == mainThread) {
+      depth--;
+      if (depth >= kMaxDepth) {
+        return;
+      }
+      long bytes = allocatedSince(startBytes[depth], startReads[depth]);
+      sectionBytes[id] += bytes;
+      if (depth == 0) {
+        cycleSectionBytes += bytes;
+      }
+    }
+  }
+
+  /** Call at the start of robotPeriodic() */
+  public static void beginCycle() {
+    for (int i = 0; i < touchedCount; i++) {
+      cycleNanos[touched[i]] = 0;
+      inCycle[touched[i]] = false;
+    }
+    touchedCount = 0;
+    if (trackAllocations) {
+      depth = 0;
+      cycleSectionBytes = 0;
+      cycleStartReads = counterReads;
+      cycleStartBytes = readCounter();
+    }
+    cycleStart = System.nanoTime();
+  }
+
+  /** Call at the end of robotPeriodic() */
+  public static void endCycle() {
+    long total = System.nanoTime() - cycleStart;
+    lastCycleNanos = total;
+    loopHistogram.record(total);
+    if (total > kBudgetNanos) {
+      recordOverrun(total);
+    }
+    if (trackAllocations) {
+      long bytes = allocatedSince(cycleStartBytes, cycleStartReads);
+      cycleBytes.record(bytes);
+      totalBytes += bytes;
+      otherBytes += Math.max(0, bytes - cycleSectionBytes);
+      allocationCycles++;
+      if (allocationCycles % kAllocationReportCycles == 0) {
+        DriverStation.reportWarning(describeTopAllocators(5), false);
+      }
+    }
+  }
+
+  private static long readCounter() {
+    counterReads++;
+    return AllocationCounter.read(mainThread);
+  }
+
+  // Takes out what the counter reads in between allocated themselves
+  private static long allocatedSince(long bytes, long reads) {
+    long now = readCounter();
+    return Math.max(0, now - bytes - (counterReads - reads) * AllocationCounter.getReadOverhead());
+  }
+
+  /**
+   * Turns allocation tracking on or off. Call from the main loop's thread, only that thread is tracked
+   * @param on true to track
+   * @return false if this JVM can't count allocations, tracking stays off then
+   */
+  public static boolean setAllocationTracking(boolean on) {
+    if (on && !AllocationCounter.enable()) {
+      DriverStation.reportWarning("Allocation profiling isn't supported on this JVM", false);
+      return false;
+    }
+    mainThread = Thread.currentThread().getId();
+    depth = 0;
+    trackAllocations = on;
+    return true;
+  }
+
+  /** Forgets the allocations counted so far, like after warming up */
+  public static void resetAllocations() {
+    for (int i = 0; i < sectionCount; i++) {
+      sectionBytes[i] = 0;
+    }
+    allocationCycles = 0;
+    totalBytes = 0;
+    otherBytes = 0;
+    cycleBytes.reset();
+  }
+
+  /** @return average bytes allocated per cycle since tracking started or was reset */
+  public static double getAllocatedBytesPerCycle() {
+    return allocationCycles == 0 ? 0 : (double) totalBytes / allocationCycles;
+  }
+
+  /**
+   * @param id from {@link #register(String)}
+   * @return average bytes the section allocated per cycle
+   */
+  public static double getAllocatedBytesPerCycle(int id) {
+    return allocationCycles == 0 ? 0 : (double) sectionBytes[id] / allocationCycles;
+  }
+
+  /** @return bytes allocated by each cycle, in the same units as its buckets */
+  public static Histogram getCycleBytes() {
+    return cycleBytes;
+  }
+
+  /**
+   * @param count how many sections to list
+   * @return the sections that allocated the most per cycle, biggest first
+   */
+  public static String describeTopAllocators(int count) {
+    int[] top = new int[count];
+    int filled = 0;
+    for (int id = 0; id < sectionCount; id++) {
+      if (sectionBytes[id] == 0) {
+        continue;
+      }
+      int pos = Math.min(filled, count - 1);
+      if (filled == count && sectionBytes[top[pos]] >= sectionBytes[id]) {
+        continue;
+      }
+      while (pos > 0 && sectionBytes[top[pos - 1]] < sectionBytes[id]) {
+        top[pos] = top[pos - 1];
+        pos--;
+      }
+      top[pos] = id;
+      if (filled < count) {
+        filled++;
+      }
+    }
+    StringBuilder text = new StringBuilder(String.format("Allocations %.0f bytes per cycle:",
+        getAllocatedBytesPerCycle()));
+    for (int i = 0; i < filled; i++) {
+      text.append(String.format(" %s=%.0f", names[top[i]], getAllocatedBytesPerCycle(top[i])));
+    }
+    if (allocationCycles > 0) {
+      text.append(String.format(" other=%.0f", (double) otherBytes / allocationCycles));
+    }
+    return text.toString();
+  }
+
+  private static void recordOverrun(long total) {
+    int row = (int) (overrunCount % kOverrunHistory);
+    overrunCount++;
+    overrunTotals[row] = total;
+    int[] ranked = overrunSections[row];
+    long[] rankedNanos = overrunSectionNanos[row];
+    // Keep the slowest sections, sorted by insertion since there are only a few slots
+    int filled = 0;
+    for (int t = 0; t < touchedCount; t++) {
+      int id = touched[t];
+      long nanos = cycleNanos[id];
+      int pos = filled;
+      while (pos > 0 && rankedNanos[pos - 1] < nanos) {
+        if (pos < kRankedSections) {
+          ranked[pos] = ranked[pos - 1];
+          rankedNanos[pos] = rankedNanos[pos - 1];
+        }
+        pos--;
+      }
+      if (pos < kRankedSections) {
+        ranked[pos] = id;
+        rankedNanos[pos] = nanos;
+        if (filled < kRankedSections) {
+          filled++;
+        }
+      }
+    }
+    for (int i = filled; i < kRankedSections; i++) {
+      ranked[i] = -1;
+      rankedNanos[i] = 0;
+    }
+    DriverStation.reportWarning(describeOverrun(row), false);
+  }
+
+  private static String describeOverrun(int row) {
+    StringBuilder text = new StringBuilder("Loop overrun ")
+        .append(overrunTotals[row] / 1e6).append("ms:");
+    for (int i = 0; i < kRankedSections && overrunSections[row][i] >= 0; i++) {
+      text.append(' ').append(names[overrunSections[row][i]])
+          .append('=').append(overrunSectionNanos[row][i] / 1e6).append("ms");
+    }
+    return text.toString();
+  }
+
+  /** Publishes the whole loop time, call once from robotInit() */
+  public static void registerLoopTelemetry() {
+    Telemetry.addNumber("Loop/Total p50 ms", () -> loopHistogram.percentile(0.5) / 1e6, 0.01, 1);
+    Telemetry.addNumber("Loop/Total p99 ms", () -> loopHistogram.percentile(0.99) / 1e6, 0.01, 1);
+    Telemetry.addNumber("Loop/Total max ms", () -> loopHistogram.getMax() / 1e6, 0.01, 1);
+    Telemetry.addNumber("Loop/Overruns", () -> overrunCount, 0, 1);
+    if (Constants.profileAllocations) {
+      Telemetry.addNumber("Alloc/Total bytes per cycle", LoopProfiler::getAllocatedBytesPerCycle, 1, 1);
+      Telemetry.addNumber("Alloc/Total p99 bytes", () -> cycleBytes.percentile(0.99), 64, 1);
+    }
+  }
+
+  /** @return how long the last whole cycle took */
+  public static long getLastCycleNanos() {
+    return lastCycleNanos;
+  }
+
+  public static long getOverrunCount() {
+    return overrunCount;
+  }
+
+  /**
+   * @param age 0 is the newest overrun, 1 the one before and so on
+   * @return the text breakdown of that overrun, or null if there isn't one
+   */
+  public static String getOverrun(int age) {
+    if (age >= kOverrunHistory || age >= overrunCount) {
+      return null;
+    }
+    return describeOverrun((int) ((overrunCount - 1 - age) % kOverrunHistory));
+  }
+
+  public static Histogram getHistogram(int id) {
+    return histograms[id];
+  }
+
+  public static String getName(int id) {
+    return names[id];
+  }
+
+  public static int getSectionCount() {
+    return sectionCount;
+  }
+}
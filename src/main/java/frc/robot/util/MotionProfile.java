@@ -0,0 +1,121 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+/**
+ * Time-optimal trapezoid from where a mechanism is to a goal it stops at: full acceleration,
+ * cruise at the max velocity if there's room, full deceleration.
+ * Sampling fills fields instead of making a new state so following it doesn't allocate.
+ *
+ * <p>If the mechanism is already moving toward the goal the profile starts at that speed.
+ * Moving away from the goal, or faster than it can stop in, the speed is cut to what fits and
+ * the position loop takes the jump
+ */
+public class MotionProfile {
+  private final double maxVelocity;
+  private final double maxAcceleration;
+
+  private double start = 0;
+  private double direction = 1;
+  // The trapezoid starts from rest, earlier than start() if the mechanism was already moving
+  private double startDistance = 0;
+  private double timeOffset = 0;
+  private double totalDistance = 0;
+  private double peakVelocity = 0;
+  private double accelTime = 0;
+  private double cruiseTime = 0;
+  private double endTime = 0;
+
+  private double position = 0;
+  private double velocity = 0;
+  private double acceleration = 0;
+
+  /**
+   * @param maxVelocity in units per second
+   * @param maxAcceleration in units per second squared
+   */
+  public MotionProfile(double maxVelocity, double maxAcceleration) {
+    this.maxVelocity = maxVelocity;
+    this.maxAcceleration = maxAcceleration;
+  }
+
+  /**
+   * Plans a move, sample it with time from now
+   * @param position where the mechanism is
+   * @param velocity how fast it's going, units per second
+   * @param goal where it should stop
+   */
+  public void start(double position, double velocity, double goal) {
+    double distance = Math.abs(goal - position);
+    direction = goal >= position ? 1 : -1;
+    double a = maxAcceleration;
+    double speed = Math.max(0, Math.min(velocity * direction, Math.min(maxVelocity, Math.sqrt(2 * a * distance))));
+
+    start = position;
+    startDistance = speed * speed / (2 * a);
+    timeOffset = speed / a;
+    totalDistance = distance + startDistance;
+    peakVelocity = Math.min(maxVelocity, Math.sqrt(a * totalDistance));
+    accelTime = peakVelocity / a;
+    double accelDistance = peakVelocity * peakVelocity / (2 * a);
+    cruiseTime = peakVelocity > 0 ? (totalDistance - 2 * accelDistance) / peakVelocity : 0;
+    endTime = 2 * accelTime + cruiseTime;
+    sample(0);
+  }
+
+  /**
+   * Works out where the profile is
+   * @param time seconds since {@link #start}, past the end it holds at the goal
+   */
+  public void sample(double time) {
+    double a = maxAcceleration;
+    double t = Math.max(0, Math.min(time + timeOffset, endTime));
+    double distance;
+    double speed;
+    double accel;
+    if (t < accelTime) {
+      distance = a * t * t / 2;
+      speed = a * t;
+      accel = a;
+    } else if (t < accelTime + cruiseTime) {
+      distance = peakVelocity * accelTime / 2 + peakVelocity * (t - accelTime);
+      speed = peakVelocity;
+      accel = 0;
+    } else {
+      double left = endTime - t;
+      distance = totalDistance - a * left * left / 2;
+      speed = a * left;
+      accel = left > 0 ? -a : 0;
+    }
+    position = start + direction * (distance - startDistance);
+    velocity = direction * speed;
+    acceleration = direction * accel;
+  }
+
+  /** @return seconds from {@link #start} to stopped on the goal */
+  public double getTotalTime() {
+    return endTime - timeOffset;
+  }
+
+  /**
+   * @param time seconds since {@link #start}
+   * @return true if the profile is at the goal and stopped by then
+   */
+  public boolean isFinished(double time) {
+    return time >= getTotalTime();
+  }
+
+  public double getPosition() {
+    return position;
+  }
+
+  public double getVelocity() {
+    return velocity;
+  }
+
+  public double getAcceleration() {
+    return acceleration;
+  }
+}
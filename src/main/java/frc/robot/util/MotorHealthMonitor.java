@@ -0,0 +1,352 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.Arrays;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+
+/**
+ * Watches the current of the climber, arm and intake motors on its own Notifier, every 5ms instead
+ * of every 20ms loop, so a stalled motor is limited or cut before it cooks itself or a breaker.
+ * The motors it watches get their current and applied output frames sped up through the
+ * {@link CanBudget} in the phases they're watched in.
+ *
+ * <p>A motor pushing more than its stall current without moving is stalled. A stalled motor gets
+ * its smart current limit lowered until it recovers, and if it stays stalled it's cut: stopped, and {@link Motor#isCut()}
+ * stays true until the subsystem calls {@link Motor#reset()}, so it knows not to drive it again.
+ * A sudden jump over the average current is a spike, like a ball hitting the intake rollers.
+ * Everything that happens is put in an event list that commands can read with {@link #getEvent}
+ */
+public final class MotorHealthMonitor {
+  private MotorHealthMonitor() {}
+
+  public enum EventType {
+    // Over the stall current and not moving for Constants.motorStallSeconds
+    stall,
+    // Moving again or under the stall current after a stall
+    recovered,
+    // Current jumped over the average by the spike current
+    spike,
+    // Stopped after staying stalled, until reset()
+    cut,
+    // Over Constants.motorMaxTemperature
+    hot
+  }
+
+  /** One thing that happened to a motor. Copied out by {@link #getEvent} */
+  public static final class Event {
+    public Motor motor;
+    public EventType type;
+    // FPGA time in seconds
+    public double time;
+    public double amps;
+
+    void set(Event other) {
+      motor = other.motor;
+      type = other.type;
+      time = other.time;
+      amps = other.amps;
+    }
+  }
+
+  private static final int kEventHistory = 64;
+  // How fast the average current follows, at 5ms this is about 100ms
+  private static final double kAverageGain = 0.05;
+  // Below this much output the motor isn't trying to move, so it can't be stalled
+  private static final double kMinAppliedOutput = 0.05;
+
+  private static final Notifier notifier = new Notifier(MotorHealthMonitor::sample);
+  private static Motor[] motors = new Motor[0];
+  private static boolean started = false;
+
+  // Ring of the last kEventHistory events, only touched while holding the lock
+  private static final Event[] events = new Event[kEventHistory];
+  private static long eventCount = 0;
+
+  static {
+    for (int i = 0; i < events.length; i++) {
+      events[i] = new Event();
+    }
+  }
+
+  /**
+   * Starts watching a motor. Set its thresholds with the with...() methods before {@link #start()}
+   * @param name shown on the dashboard and in the data log
+   * @param motor the SPARK MAX
+   * @param phases when it can stall, the current is only sent fast then
+   * @return the motor's handle
+   */
+  public static synchronized Motor add(String name, CANSparkMax motor, CanBudget.Phase... phases) {
+    Motor handle = new Motor(name, motor);
+    CanBudget.use(motor, CanBudget.Signal.velocity, Constants.motorHealthFrameMs, phases);
+    CanBudget.use(motor, CanBudget.Signal.output, Constants.canLoopFrameMs, phases);
+    motors = Arrays.copyOf(motors, motors.length + 1);
+    motors[motors.length - 1] = handle;
+    Telemetry.addNumber("Motors/" + name + " Amps", handle::getAmps, 0.5);
+    Telemetry.addNumber("Motors/" + name + " Temperature", handle::getTemperature, 1, 1);
+    Telemetry.addNumber("Motors/" + name + " Stalls", handle::getStallCount, 0);
+    Telemetry.addBoolean("Motors/" + name + " Cut", handle::isCut);
+    DataLogger.addNumber("Motors/" + name + " Amps", handle::getAmps);
+    DataLogger.addBoolean("Motors/" + name + " Cut", handle::isCut);
+    return handle;
+  }
+
+  /**
+   * Starts the Notifier, call after every motor is added and SparkMaxConfigurator.configureAll().
+   * Nothing is watched while replaying a log
+   */
+  public static synchronized void start() {
+    if (started || LogReplay.isActive()) {
+      return;
+    }
+    started = true;
+    for (Motor motor : motors) {
+      motor.configuredLimitAmps = SparkMaxConfigurator.getCurrentLimit(motor.motor);
+    }
+    notifier.setName("MotorHealth");
+    notifier.startPeriodic(Constants.motorHealthPeriodSeconds);
+  }
+
+  private static void sample() {
+    double now = Timer.getFPGATimestamp();
+    // Only replaced by add(), never changed in place
+    Motor[] watched = motors;
+    for (Motor motor : watched) {
+      motor.sample(now);
+    }
+  }
+
+  private static synchronized void record(Motor motor, EventType type, double time, double amps) {
+    Event event = events[(int) (eventCount % kEventHistory)];
+    event.motor = motor;
+    event.type = type;
+    event.time = time;
+    event.amps = amps;
+    eventCount++;
+    if (type == EventType.cut || type == EventType.hot) {
+      DriverStation.reportWarning(String.format("%s %s at %.0f A", motor.name, type, amps), false);
+    }
+  }
+
+  /** @return how many events there have been, the sequence number the next one will get */
+  public static synchronized long getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Reads one event. A command can save {@link #getEventCount()} when it starts and read from there
+   * @param sequence which event, counting from 0
+   * @param out filled with the event
+   * @return false if it hasn't happened yet or has already been overwritten
+   */
+  public static synchronized boolean getEvent(long sequence, Event out) {
+    if (sequence < 0 || sequence >= eventCount || sequence < eventCount - kEventHistory) {
+      return false;
+    }
+    out.set(events[(int) (sequence % kEventHistory)]);
+    return true;
+  }
+
+  /**
+   * One watched motor. The thresholds are set before the monitor starts, after that every
+   * field but the volatile ones is only touched on the Notifier thread
+   */
+  public static final class Motor {
+    private final String name;
+    private final CANSparkMax motor;
+    private final RelativeEncoder encoder;
+
+    private double stallAmps = Double.NaN;
+    private double spikeAmps = Double.NaN;
+    private int limitAmps = 0;
+    // What it goes back to, from its SparkMaxConfig
+    private int configuredLimitAmps = Constants.sparkMaxDefaultCurrentLimit;
+    private double cutSeconds = Double.NaN;
+
+    private double averageAmps = 0;
+    private double runningSince = Double.NaN;
+    private boolean inSpike = false;
+    private double stallStart = Double.NaN;
+    private boolean stalled = false;
+    private boolean hot = false;
+    private boolean limited = false;
+
+    private volatile double amps = 0;
+    private volatile double temperature = 0;
+    private volatile boolean cut = false;
+    private volatile boolean resetRequested = false;
+    private volatile int stallCount = 0;
+    private volatile int spikeCount = 0;
+
+    private Motor(String name, CANSparkMax motor) {
+      this.name = name;
+      this.motor = motor;
+      this.encoder = motor.getEncoder();
+    }
+
+    /**
+     * @param amps over this without moving is a stall
+     * @return this motor so calls can be chained
+     */
+    public Motor withStall(double amps) {
+      stallAmps = amps;
+      return this;
+    }
+
+    /**
+     * @param amps a jump this far over the average current is a spike
+     * @return this motor so calls can be chained
+     */
+    public Motor withSpike(double amps) {
+      spikeAmps = amps;
+      return this;
+    }
+
+    /**
+     * @param amps smart current limit while stalled, or from when it gets hot on
+     * @return this motor so calls can be chained
+     */
+    public Motor withLimit(int amps) {
+      limitAmps = amps;
+      return this;
+    }
+
+    /**
+     * @param seconds cut the motor if it's still stalled this long after the stall was found
+     * @return this motor so calls can be chained
+     */
+    public Motor withCut(double seconds) {
+      cutSeconds = seconds;
+      return this;
+    }
+
+    private void sample(double now) {
+      if (resetRequested) {
+        resetRequested = false;
+        cut = false;
+        stalled = false;
+        stallStart = Double.NaN;
+        unlimit();
+      }
+
+      double current = motor.getOutputCurrent();
+      double applied = motor.getAppliedOutput();
+      amps = current;
+      temperature = motor.getMotorTemperature();
+      if (Math.abs(applied) <= kMinAppliedOutput) {
+        runningSince = Double.NaN;
+      } else if (Double.isNaN(runningSince)) {
+        runningSince = now;
+      }
+
+      // Starting the motor draws a jump too, so spikes only count once it's been running a bit
+      if (!Double.isNaN(spikeAmps) && now - runningSince >= Constants.motorStallSeconds) {
+        double over = current - averageAmps;
+        if (!inSpike && over > spikeAmps) {
+          inSpike = true;
+          spikeCount++;
+          record(this, EventType.spike, now, current);
+        } else if (inSpike && over < spikeAmps / 2) {
+          inSpike = false;
+        }
+      }
+      averageAmps += (current - averageAmps) * kAverageGain;
+
+      if (cut && Math.abs(applied) > kMinAppliedOutput) {
+        // Something sent it a setpoint after it was cut, stop it again
+        motor.stopMotor();
+      }
+
+      if (!Double.isNaN(stallAmps) && !cut) {
+        boolean stalling = current > stallAmps
+            && Math.abs(encoder.getVelocity()) < Constants.motorStallRPM
+            && Math.abs(applied) > kMinAppliedOutput;
+        if (!stalling) {
+          stallStart = Double.NaN;
+          if (stalled) {
+            stalled = false;
+            record(this, EventType.recovered, now, current);
+            unlimit();
+          }
+        } else if (Double.isNaN(stallStart)) {
+          stallStart = now;
+        } else if (!stalled && now - stallStart >= Constants.motorStallSeconds) {
+          stalled = true;
+          stallCount++;
+          record(this, EventType.stall, now, current);
+          limit();
+        } else if (stalled && now - stallStart >= Constants.motorStallSeconds + cutSeconds) {
+          // Never true when cutSeconds is NaN
+          motor.stopMotor();
+          cut = true;
+          stalled = false;
+          record(this, EventType.cut, now, current);
+        }
+      }
+
+      if (!hot && temperature > Constants.motorMaxTemperature) {
+        hot = true;
+        record(this, EventType.hot, now, current);
+        limit();
+      }
+    }
+
+    private void limit() {
+      if (limitAmps > 0 && !limited) {
+        limited = true;
+        motor.setSmartCurrentLimit(limitAmps);
+      }
+    }
+
+    private void unlimit() {
+      if (limited && !hot) {
+        limited = false;
+        motor.setSmartCurrentLimit(configuredLimitAmps);
+      }
+    }
+
+    /**
+     * Lets a cut motor run again and puts its current limit back. Done on the monitor thread, so
+     * {@link #isCut()} can still be true until the next sample. A hot motor stays limited
+     */
+    public void reset() {
+      resetRequested = true;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** @return output current at the last sample, in amps */
+    public double getAmps() {
+      return amps;
+    }
+
+    /** @return motor temperature at the last sample, in Celsius */
+    public double getTemperature() {
+      return temperature;
+    }
+
+    /** @return true if the motor was stopped for staying stalled, until {@link #reset()} */
+    public boolean isCut() {
+      return cut;
+    }
+
+    public int getStallCount() {
+      return stallCount;
+    }
+
+    public int getSpikeCount() {
+      return spikeCount;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+/**
+ * Differential drive odometry that keeps a short history of poses.
+ * Everything is primitive fields and arrays made up front, so updating it
+ * never makes garbage and it can run faster than the main loop.
+ * The history lets a late measurement (like a vision frame) be compared with
+ * where we were when it was captured instead of where we are now.
+ *
+ * <p>Field coordinates are in meters, heading is counterclockwise positive in radians.
+ * All methods are synchronized since updates come from a Notifier thread
+ */
+public class PoseEstimator {
+  // Give up waiting for readings from after a reset, longer than the slowest position frame
+  private static final double kResetTimeoutSeconds = 1;
+
+  private final double metersPerRotation;
+  private final double maxRotationsPerSecond;
+
+  // Current pose
+  private double x = 0;
+  private double y = 0;
+  private double heading = 0;
+
+  // Last sensor values, used to get the change since the last update
+  private boolean hasLast = false;
+  private double lastLeftRotations;
+  private double lastRightRotations;
+  // When each side's reading last changed. The encoders only send a new position every status
+  // frame, 10ms to 500ms, so a change carries everything since the last one
+  private double lastLeftChange;
+  private double lastRightChange;
+  // Set by encodersReset() until readings from after the reset come in
+  private boolean resetPending = false;
+  private double resetTime;
+  private double headingOffset = 0;
+
+  // Ring of past poses, newest at (historyCount - 1) % capacity
+  private final int capacity;
+  private final double[] historyTimes;
+  private final double[] historyX;
+  private final double[] historyY;
+  private final double[] historyHeading;
+  private long historyCount = 0;
+
+  /**
+   * @param metersPerRotation distance a wheel moves per motor rotation
+   * @param maxRotationsPerSecond fastest the motors can really turn, bigger jumps are encoder resets
+   * @param historySize how many past poses to keep
+   */
+  public PoseEstimator(double metersPerRotation, double maxRotationsPerSecond, int historySize) {
+    this.metersPerRotation = metersPerRotation;
+    this.maxRotationsPerSecond = maxRotationsPerSecond;
+    capacity = historySize;
+    historyTimes = new double[historySize];
+    historyX = new double[historySize];
+    historyY = new double[historySize];
+    historyHeading = new double[historySize];
+  }
+
+  /**
+   * Moves the pose forward with new sensor readings
+   * @param timestamp FPGA seconds
+   * @param leftRotations average left encoder position, positive is forward
+   * @param rightRotations average right encoder position, positive is forward
+   * @param gyroDegrees navX angle (clockwise positive)
+   */
+  public synchronized void update(double timestamp, double leftRotations, double rightRotations,
+      double gyroDegrees) {
+    double newHeading = -Math.toRadians(gyroDegrees) + headingOffset;
+    if (resetPending) {
+      // Readings from before the reset are far from 0, skip them and keep counting from 0
+      double maxSinceReset = maxRotationsPerSecond * Math.max(timestamp - resetTime, 0) + 0.5;
+      boolean fresh = Math.abs(leftRotations) <= maxSinceReset && Math.abs(rightRotations) <= maxSinceReset;
+      if (!fresh && timestamp - resetTime < kResetTimeoutSeconds) {
+        heading = newHeading;
+        record(timestamp);
+        return;
+      }
+      resetPending = false;
+      if (!fresh) {
+        // Past the timeout the reset didn't happen, start counting from whatever it reads
+        hasLast = false;
+      } else {
+        lastLeftChange = resetTime;
+        lastRightChange = resetTime;
+      }
+    }
+    if (hasLast) {
+      double deltaLeft = leftRotations - lastLeftRotations;
+      double deltaRight = rightRotations - lastRightRotations;
+      // A jump faster than the motors can turn since the last new reading is an encoder reset
+      // that wasn't told with encodersReset(), or a reading from before one, so skip it
+      double maxLeft = maxRotationsPerSecond * Math.max(timestamp - lastLeftChange, 0) + 0.5;
+      double maxRight = maxRotationsPerSecond * Math.max(timestamp - lastRightChange, 0) + 0.5;
+      if (Math.abs(deltaLeft) > maxLeft || Math.abs(deltaRight) > maxRight) {
+        deltaLeft = 0;
+        deltaRight = 0;
+      }
+      double distance = (deltaLeft + deltaRight) / 2 * metersPerRotation;
+      // Move along the average of the old and new heading
+      double midHeading = heading + angleDifference(newHeading, heading) / 2;
+      x += distance * Math.cos(midHeading);
+      y += distance * Math.sin(midHeading);
+    }
+    heading = newHeading;
+    if (!hasLast || leftRotations != lastLeftRotations) {
+      lastLeftChange = timestamp;
+    }
+    if (!hasLast || rightRotations != lastRightRotations) {
+      lastRightChange = timestamp;
+    }
+    lastLeftRotations = leftRotations;
+    lastRightRotations = rightRotations;
+    hasLast = true;
+    record(timestamp);
+  }
+
+  private void record(double timestamp) {
+    int slot = (int) (historyCount % capacity);
+    historyTimes[slot] = timestamp;
+    historyX[slot] = x;
+    historyY[slot] = y;
+    historyHeading[slot] = heading;
+    historyCount++;
+  }
+
+  /**
+   * Says the encoders were just zeroed, so the distance is counted from 0 and not the old position.
+   * Readings from before the reset can still come in for a frame, those are skipped
+   * @param timestamp FPGA seconds
+   */
+  public synchronized void encodersReset(double timestamp) {
+    lastLeftRotations = 0;
+    lastRightRotations = 0;
+    resetPending = true;
+    resetTime = timestamp;
+  }
+
+  /**
+   * Sets the pose, like at the start of an auto
+   * @param newX meters
+   * @param newY meters
+   * @param newHeading radians
+   * @param gyroDegrees the navX angle right now, so the heading can be offset
+   */
+  public synchronized void resetPose(double newX, double newY, double newHeading, double gyroDegrees) {
+    x = newX;
+    y = newY;
+    heading = newHeading;
+    headingOffset = newHeading + Math.toRadians(gyroDegrees);
+    historyCount = 0;
+  }
+
+  /**
+   * Corrects the pose with a position measured in the past
+   * @param measuredX meters
+   * @param measuredY meters
+   * @param timestamp FPGA seconds when the measurement was captured
+   * @param weight 0 ignores the measurement, 1 trusts it completely
+   * @return false if the timestamp is older than the history
+   */
+  public synchronized boolean addMeasurement(double measuredX, double measuredY, double timestamp,
+      double weight) {
+    int slot = findSlot(timestamp);
+    if (slot < 0) {
+      return false;
+    }
+    double correctionX = (measuredX - historyX[slot]) * weight;
+    double correctionY = (measuredY - historyY[slot]) * weight;
+    x += correctionX;
+    y += correctionY;
+    // Shift the whole history so the next late measurement compares against the corrected path
+    long stored = Math.min(historyCount, capacity);
+    for (int i = 0; i < stored; i++) {
+      historyX[i] += correctionX;
+      historyY[i] += correctionY;
+    }
+    return true;
+  }
+
+  /**
+   * Looks up where we were at a time in the past
+   * @param timestamp FPGA seconds
+   * @param out gets x, y, heading, must have a length of at least 3
+   * @return false if the timestamp is older than the history
+   */
+  public synchronized boolean getPoseAt(double timestamp, double[] out) {
+    int slot = findSlot(timestamp);
+    if (slot < 0) {
+      return false;
+    }
+    out[0] = historyX[slot];
+    out[1] = historyY[slot];
+    out[2] = historyHeading[slot];
+    return true;
+  }
+
+  // Newest history entry at or before the timestamp, or -1 if there isn't one
+  private int findSlot(double timestamp) {
+    long stored = Math.min(historyCount, capacity);
+    for (long i = historyCount - 1; i >= historyCount - stored; i--) {
+      int slot = (int) (i % capacity);
+      if (historyTimes[slot] <= timestamp) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private static double angleDifference(double a, double b) {
+    return Math.IEEEremainder(a - b, 2 * Math.PI);
+  }
+
+  public synchronized double getX() {
+    return x;
+  }
+
+  public synchronized double getY() {
+    return y;
+  }
+
+  public synchronized double getHeading() {
+    return heading;
+  }
+}
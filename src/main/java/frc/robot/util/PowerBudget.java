@@ -0,0 +1,255 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.PowerDistribution;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.PowerDistribution.ModuleType;
+import frc.robot.Constants;
+
+/**
+ * Shares out the current the battery can give without browning out, by priority.
+ * A Notifier reads the PDP channels of every subsystem and the battery voltage, and learns the
+ * battery's resistance from how the voltage drops as the current goes up. From that it works out
+ * how much current keeps the voltage over Constants.powerBudgetMinVolts, taking off whatever the
+ * total current is heading up by in the next Constants.powerBudgetHorizonSeconds.
+ *
+ * <p>Subsystems get that current in priority order. One whose share is less than it's drawing
+ * gets an output scale under 1 to multiply its outputs by, and {@link Consumer#canStart()} says
+ * whether there's room to start something big, like an arm move or the compressor, or if it should wait.
+ * Scales drop right away and come back at Constants.powerBudgetRecoverPerSecond
+ */
+public final class PowerBudget {
+  private PowerBudget() {}
+
+  // Smoothing for the voltage and current fit, at 20ms this is about a second
+  private static final double kFitGain = 0.02;
+  // Not enough change in current to tell the resistance from noise under this (A^2)
+  private static final double kMinCurrentVariance = 25;
+  private static final double kMinResistance = 0.005;
+  private static final double kMaxResistance = 0.1;
+  // A consumer scaled this far down is taken as drawing nothing when working out what it wants
+  private static final double kMinDemandScale = 0.05;
+
+  // Made by start(), so replay and the tools never open the PDP
+  private static PowerDistribution pdp = null;
+  private static final Notifier notifier = new Notifier(PowerBudget::sample);
+  // Highest priority first, only replaced by add()
+  private static Consumer[] consumers = new Consumer[0];
+  private static boolean started = false;
+
+  // Only touched on the Notifier thread
+  private static boolean hasLast = false;
+  private static double lastTotal = 0;
+  private static double meanAmps = 0;
+  private static double meanVolts = 0;
+  private static double varianceAmps = 0;
+  private static double covariance = 0;
+
+  private static volatile double volts = 0;
+  private static volatile double totalAmps = 0;
+  private static volatile double resistance = Constants.batteryResistanceOhms;
+  private static volatile double predictedVolts = 0;
+  private static volatile double maxAmps = 0;
+  private static volatile int sags = 0;
+  private static volatile int brownouts = 0;
+  private static boolean sagging = false;
+  private static boolean brownedOut = false;
+
+  /**
+   * Adds a subsystem to share the current with
+   * @param name shown on the dashboard
+   * @param priority higher gets its share first
+   * @param channels PDP channels its motors are on
+   * @return the subsystem's handle
+   */
+  public static synchronized Consumer add(String name, int priority, int... channels) {
+    Consumer consumer = new Consumer(name, priority, channels);
+    Consumer[] next = Arrays.copyOf(consumers, consumers.length + 1);
+    next[next.length - 1] = consumer;
+    Arrays.sort(next, (a, b) -> Integer.compare(b.priority, a.priority));
+    consumers = next;
+    Telemetry.addNumber("Power/" + name + " Amps", consumer::getAmps, 0.5);
+    Telemetry.addNumber("Power/" + name + " Scale", consumer::getScale, 0.01);
+    DataLogger.addNumber("Power/" + name + " Amps", consumer::getAmps);
+    return consumer;
+  }
+
+  /** Starts the Notifier, call after every subsystem is added. Nothing is sampled while replaying a log */
+  public static synchronized void start() {
+    if (started || LogReplay.isActive()) {
+      return;
+    }
+    started = true;
+    pdp = new PowerDistribution(Constants.pdpModule, ModuleType.kCTRE);
+    Telemetry.addNumber("Power/Voltage", () -> volts, 0.05);
+    Telemetry.addNumber("Power/Predicted Voltage", () -> predictedVolts, 0.05);
+    Telemetry.addNumber("Power/Total Amps", () -> totalAmps, 0.5);
+    Telemetry.addNumber("Power/Max Amps", () -> maxAmps, 1);
+    Telemetry.addNumber("Power/Resistance mOhm", () -> resistance * 1000, 0.1, 1);
+    Telemetry.addNumber("Power/Sags", () -> sags, 0);
+    Telemetry.addNumber("Power/Brownouts", () -> brownouts, 0);
+    DataLogger.addNumber("Power/Total Amps", () -> totalAmps);
+    DataLogger.addNumber("Power/Predicted Voltage", () -> predictedVolts);
+    notifier.setName("PowerBudget");
+    notifier.startPeriodic(Constants.powerBudgetPeriodSeconds);
+  }
+
+  // Runs on the Notifier thread
+  private static void sample() {
+    double dt = Constants.powerBudgetPeriodSeconds;
+    double v = RobotController.getBatteryVoltage();
+    double total = pdp.getTotalCurrent();
+    Consumer[] shared = consumers;
+    double consumerAmps = 0;
+    for (Consumer consumer : shared) {
+      consumer.read();
+      consumerAmps += consumer.amps;
+    }
+    // The PDP total is a separate reading so this can come out a little negative
+    double otherAmps = Math.max(0, total - consumerAmps);
+
+    // Voltage = open circuit voltage - current * resistance, fit over the last second or so
+    if (!hasLast) {
+      meanAmps = total;
+      meanVolts = v;
+      lastTotal = total;
+      hasLast = true;
+    }
+    double da = total - meanAmps;
+    meanAmps += kFitGain * da;
+    meanVolts += kFitGain * (v - meanVolts);
+    varianceAmps += kFitGain * (da * da - varianceAmps);
+    covariance += kFitGain * (da * (v - meanVolts) - covariance);
+    if (varianceAmps > kMinCurrentVariance) {
+      resistance = Math.max(kMinResistance, Math.min(kMaxResistance, -covariance / varianceAmps));
+    }
+    double r = resistance;
+    double openVolts = v + total * r;
+
+    double rising = Math.max(0, (total - lastTotal) / dt * Constants.powerBudgetHorizonSeconds);
+    lastTotal = total;
+    double predicted = v - rising * r;
+    double max = (openVolts - Constants.powerBudgetMinVolts) / r;
+
+    // Share out what's left after everything that isn't a consumer, highest priority first
+    double available = max - rising - otherAmps;
+    for (Consumer consumer : shared) {
+      available = consumer.share(available, dt);
+    }
+
+    volts = v;
+    totalAmps = total;
+    predictedVolts = predicted;
+    maxAmps = max;
+    if (!sagging && predicted < Constants.powerBudgetMinVolts) {
+      sagging = true;
+      sags++;
+    } else if (sagging && predicted > Constants.powerBudgetMinVolts + 0.5) {
+      sagging = false;
+    }
+    boolean browned = RobotController.isBrownedOut();
+    if (browned && !brownedOut) {
+      brownouts++;
+    }
+    brownedOut = browned;
+  }
+
+  public static double getPredictedVoltage() {
+    return predictedVolts;
+  }
+
+  /** @return the battery and wiring resistance learned so far, in ohms */
+  public static double getResistance() {
+    return resistance;
+  }
+
+  public static int getBrownoutCount() {
+    return brownouts;
+  }
+
+  /**
+   * One subsystem sharing the budget. Set it up with the with...() methods before {@link #start()},
+   * after that it's only changed on the Notifier thread
+   */
+  public static final class Consumer {
+    private final String name;
+    private final int priority;
+    private final int[] channels;
+    private double minScale = 0;
+    private double startAmps = 0;
+
+    private volatile double amps = 0;
+    private volatile double scale = 1;
+    private volatile boolean canStart = true;
+
+    private Consumer(String name, int priority, int[] channels) {
+      this.name = name;
+      this.priority = priority;
+      this.channels = channels.clone();
+    }
+
+    /**
+     * @param scale the output scale never goes under this
+     * @return this consumer so calls can be chained
+     */
+    public Consumer withMinScale(double scale) {
+      minScale = scale;
+      return this;
+    }
+
+    /**
+     * @param amps what starting a move draws on top of what it's drawing, see {@link #canStart()}
+     * @return this consumer so calls can be chained
+     */
+    public Consumer withStartAmps(double amps) {
+      startAmps = amps;
+      return this;
+    }
+
+    private void read() {
+      double sum = 0;
+      for (int channel : channels) {
+        sum += pdp.getCurrent(channel);
+      }
+      amps = sum;
+    }
+
+    // Takes this consumer's share of what's available and gives back what's left
+    private double share(double available, double dt) {
+      double current = scale;
+      // What it would draw at full output, the current goes down about as much as the output does
+      double demand = amps / Math.max(current, kMinDemandScale);
+      double target = demand <= available ? 1 : Math.max(minScale, Math.max(0, available) / demand);
+      double next = target < current ? target : Math.min(target, current + Constants.powerBudgetRecoverPerSecond * dt);
+      scale = next;
+      double left = available - demand * next;
+      canStart = left >= startAmps;
+      return left;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** @return what its PDP channels read at the last sample, in amps */
+    public double getAmps() {
+      return amps;
+    }
+
+    /** @return what to multiply outputs by, from the minimum scale to 1 */
+    public double getScale() {
+      return scale;
+    }
+
+    /** @return true if there's room for the {@link #withStartAmps} amps without taking from higher priorities */
+    public boolean canStart() {
+      return canStart;
+    }
+  }
+}
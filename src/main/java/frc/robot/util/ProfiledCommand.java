@@ -0,0 +1,85 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Wraps a command and times its execute() and isFinished() with the {@link LoopProfiler},
+ * which also counts the bytes each of them allocates.
+ * The wrapped command runs exactly like it would on its own.
+ * RobotContainer wraps every command it binds, {@link #warnUnwrapped()} catches one it missed
+ */
+public class ProfiledCommand extends CommandBase {
+  // Commands already warned about, so each one is only reported once
+  private static final Set<Command> unwrapped = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private final Command command;
+  private final int executeId;
+  private final int isFinishedId;
+
+  /**
+   * @param name name the timings are published under
+   * @param command the command to time
+   */
+  public ProfiledCommand(String name, Command command) {
+    this.command = command;
+    executeId = LoopProfiler.register(name + ".execute");
+    isFinishedId = LoopProfiler.register(name + ".isFinished");
+    setName(name);
+    m_requirements.addAll(command.getRequirements());
+  }
+
+  /** Uses the name of the wrapped command */
+  public ProfiledCommand(Command command) {
+    this(command.getName(), command);
+  }
+
+  @Override
+  public void initialize() {
+    command.initialize();
+  }
+
+  @Override
+  public void execute() {
+    long start = LoopProfiler.start();
+    command.execute();
+    LoopProfiler.stop(executeId, start);
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    command.end(interrupted);
+  }
+
+  @Override
+  public boolean isFinished() {
+    long start = LoopProfiler.start();
+    boolean finished = command.isFinished();
+    LoopProfiler.stop(isFinishedId, start);
+    return finished;
+  }
+
+  @Override
+  public boolean runsWhenDisabled() {
+    return command.runsWhenDisabled();
+  }
+
+  /** Warns once for every command that's scheduled without being wrapped, call once from robotInit() */
+  public static void warnUnwrapped() {
+    CommandScheduler.getInstance().onCommandInitialize(command -> {
+      if (!(command instanceof ProfiledCommand) && unwrapped.add(command)) {
+        DriverStation.reportWarning(command.getName() + " isn't in the LoopProfiler, wrap it in ProfiledCommand", false);
+      }
+    });
+  }
+}
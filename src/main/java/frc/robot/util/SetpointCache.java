@@ -0,0 +1,156 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.SparkMaxPIDController;
+
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.Constants;
+
+/**
+ * Sits between a subsystem and a {@link SparkMaxPIDController} and only sends a
+ * new reference over CAN when it actually changed.
+ * A write is skipped when the control type is the same as last time and the
+ * value is inside the deadband, unless the refresh period has passed
+ */
+public class SetpointCache {
+  // Totals for every cache on the robot so we can see the CAN load on the dashboard.
+  // The heading controller's Notifier writes through caches too, so they're LongAdders
+  private static final LongAdder sentWrites = new LongAdder();
+  private static final LongAdder suppressedWrites = new LongAdder();
+  // Set by JitWarmup while it runs the drive code with the robot disabled
+  private static volatile boolean muted = false;
+
+  private final SparkMaxPIDController controller;
+  // Deadband for each control type, indexed by ordinal. Zero means only exact repeats are skipped
+  private final double[] deadbands = new double[CANSparkMax.ControlType.values().length];
+  private final long refreshMicros;
+
+  private CANSparkMax.ControlType lastType = null;
+  // What the controller is actually running, invalidate() doesn't clear this
+  private CANSparkMax.ControlType sentType = null;
+  private double lastValue = 0;
+  private double lastFeedforward = 0;
+  private long lastWriteTime = 0;
+
+  /**
+   * @param controller the PID controller of the motor
+   * @param refreshMs the last value is sent again after this many milliseconds
+   */
+  public SetpointCache(SparkMaxPIDController controller, long refreshMs) {
+    this.controller = controller;
+    this.refreshMicros = refreshMs * 1000L;
+  }
+
+  /**
+   * Sets how close a new value of this control type has to be to the last one to be skipped
+   * @param type the control type
+   * @param deadband in the units of the control type (RPM, rotations, ...)
+   * @return this cache so calls can be chained
+   */
+  public SetpointCache withDeadband(CANSparkMax.ControlType type, double deadband) {
+    deadbands[type.ordinal()] = deadband;
+    return this;
+  }
+
+  /**
+   * Same as {@link SparkMaxPIDController#setReference(double, CANSparkMax.ControlType)}
+   * but skips the write if nothing changed
+   * @param value the setpoint
+   * @param type the control type
+   * @return true if the frame was sent
+   */
+  public boolean setReference(double value, CANSparkMax.ControlType type) {
+    return setReference(value, type, 0);
+  }
+
+  /**
+   * Same as {@link SparkMaxPIDController#setReference(double, CANSparkMax.ControlType, int, double)}
+   * on slot 0 but skips the write if nothing changed
+   * @param value the setpoint
+   * @param type the control type
+   * @param arbFeedforward volts added to the controller's output
+   * @return true if the frame was sent
+   */
+  public boolean setReference(double value, CANSparkMax.ControlType type, double arbFeedforward) {
+    // FPGA time and not System.nanoTime() so a replayed log refreshes on the same cycles
+    long now = RobotController.getFPGATime();
+    boolean unchanged = type == lastType
+        && Math.abs(value - lastValue) <= deadbands[type.ordinal()]
+        && Math.abs(arbFeedforward - lastFeedforward) <= Constants.feedforwardDeadbandVolts
+        && now - lastWriteTime < refreshMicros;
+    if (muted) {
+      // Nothing sent, counted or remembered
+      return false;
+    }
+    if (unchanged) {
+      suppressedWrites.increment();
+      return false;
+    }
+    controller.setReference(value, type, 0, arbFeedforward);
+    lastType = type;
+    sentType = type;
+    lastValue = value;
+    lastFeedforward = arbFeedforward;
+    lastWriteTime = now;
+    sentWrites.increment();
+    return true;
+  }
+
+  /**
+   * Forgets the last setpoint so the next one is always sent.
+   * Call this when something changes the controller behind the cache's back,
+   * like resetting the encoder under a position setpoint
+   */
+  public void invalidate() {
+    lastType = null;
+  }
+
+  /** @return the control type that was last sent, or null if nothing was */
+  public CANSparkMax.ControlType getLastType() {
+    return sentType;
+  }
+
+  /** @return the setpoint that was last sent */
+  public double getLastValue() {
+    return lastValue;
+  }
+
+  /** @return the feedforward that was last sent, in volts */
+  public double getLastFeedforward() {
+    return lastFeedforward;
+  }
+
+  /**
+   * Records the sent setpoint and control type in the data log as outputs, so replaying
+   * a log shows when the code would have sent something different
+   * @param name the setpoint's name, the type is logged as name + " Type"
+   * @return this cache so calls can be chained
+   */
+  public SetpointCache logOutputs(String name) {
+    DataLogger.addOutput(name, () -> lastValue);
+    DataLogger.addOutput(name + " Type", () -> sentType == null ? -1 : sentType.ordinal());
+    return this;
+  }
+
+  /**
+   * Stops every cache from sending anything, only for {@link JitWarmup}. Main thread only
+   * @param on true to mute
+   */
+  static void setMuted(boolean on) {
+    muted = on;
+  }
+
+  public static long getSentWrites() {
+    return sentWrites.sum();
+  }
+
+  public static long getSuppressedWrites() {
+    return suppressedWrites.sum();
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Passes the newest value from one background thread to the main loop without locks
+ * or garbage. It's a triple buffer: one buffer the writer fills, one the reader holds,
+ * and one in the slot. The slot is a single int with the index of the buffer in it and
+ * a bit for whether it's new, and both sides swap their buffer for it with getAndSet(),
+ * so neither side ever waits. Values the reader never picked up are written over
+ */
+public class SingleSlotHandoff<T> {
+  private static final int kIndexMask = 0b11;
+  private static final int kNew = 0b100;
+
+  private final Object[] buffers = new Object[3];
+  // Index of the buffer in the slot, plus kNew if the reader hasn't taken it
+  private final AtomicInteger slot = new AtomicInteger(2);
+  private int writeIndex = 0;
+  private int readIndex = 1;
+
+  /** @param factory makes the three buffers */
+  public SingleSlotHandoff(Supplier<T> factory) {
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = factory.get();
+    }
+  }
+
+  /**
+   * Writer thread only
+   * @return the buffer to fill before calling {@link #publish()}
+   */
+  public T getWriteBuffer() {
+    return buffer(writeIndex);
+  }
+
+  /** Writer thread only. Makes the write buffer the newest value */
+  public void publish() {
+    // Whatever was in the slot, read or not, is the next one to fill
+    writeIndex = slot.getAndSet(writeIndex | kNew) & kIndexMask;
+  }
+
+  /**
+   * Reader thread only. Picks up the newest value if there is one
+   * @return true if a new value was picked up
+   */
+  public boolean poll() {
+    if ((slot.get() & kNew) == 0) {
+      return false;
+    }
+    // Only the reader clears kNew, so the slot still has a new value in it
+    readIndex = slot.getAndSet(readIndex) & kIndexMask;
+    return true;
+  }
+
+  /**
+   * Reader thread only
+   * @return the value from the last successful {@link #poll()}
+   */
+  public T get() {
+    return buffer(readIndex);
+  }
+
+  @SuppressWarnings("unchecked")
+  private T buffer(int index) {
+    return (T) buffers[index];
+  }
+}
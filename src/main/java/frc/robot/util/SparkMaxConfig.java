@@ -0,0 +1,66 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+/**
+ * The settings we want on one SPARK MAX. Anything left as NaN isn't touched.
+ * Give this to {@link SparkMaxConfigurator#add} instead of calling the setters in the constructor
+ */
+public class SparkMaxConfig {
+  public double kP = Double.NaN;
+  public double kI = Double.NaN;
+  public double kD = Double.NaN;
+  public double kIz = Double.NaN;
+  public double kFF = Double.NaN;
+  public double minOutput = Double.NaN;
+  public double maxOutput = Double.NaN;
+
+  public int smartMotionSlot = 0;
+  public double maxVel = Double.NaN;
+  public double minVel = Double.NaN;
+  public double maxAcc = Double.NaN;
+  public double allowedErr = Double.NaN;
+
+  public double positionConversionFactor = Double.NaN;
+  public double velocityConversionFactor = Double.NaN;
+
+  // Smart current limit in amps, 0 leaves the firmware default
+  public int currentLimit = 0;
+
+  public SparkMaxConfig pid(double kP, double kI, double kD, double kIz, double kFF) {
+    this.kP = kP;
+    this.kI = kI;
+    this.kD = kD;
+    this.kIz = kIz;
+    this.kFF = kFF;
+    return this;
+  }
+
+  public SparkMaxConfig outputRange(double minOutput, double maxOutput) {
+    this.minOutput = minOutput;
+    this.maxOutput = maxOutput;
+    return this;
+  }
+
+  public SparkMaxConfig smartMotion(int slot, double maxVel, double minVel, double maxAcc, double allowedErr) {
+    smartMotionSlot = slot;
+    this.maxVel = maxVel;
+    this.minVel = minVel;
+    this.maxAcc = maxAcc;
+    this.allowedErr = allowedErr;
+    return this;
+  }
+
+  public SparkMaxConfig currentLimit(int amps) {
+    currentLimit = amps;
+    return this;
+  }
+
+  public SparkMaxConfig conversionFactors(double position, double velocity) {
+    positionConversionFactor = position;
+    velocityConversionFactor = velocity;
+    return this;
+  }
+}
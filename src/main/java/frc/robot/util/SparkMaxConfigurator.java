@@ -0,0 +1,151 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkMaxPIDController;
+
+import frc.robot.Constants;
+
+/**
+ * Sets up every SPARK MAX at startup.
+ * Each controller is reset to factory defaults so nothing left over from another
+ * robot or a REV Hardware Client session sticks around, then only the parameters that
+ * aren't the factory default are written. Nothing is read back, after the reset the
+ * defaults are known and every read is another blocking CAN round trip. All the
+ * controllers are done at the same time on their own threads instead of one blocking
+ * CAN write after another. Nothing is burned to flash since the reset would undo it
+ * on the next boot
+ */
+public final class SparkMaxConfigurator {
+  private static final List<CANSparkMax> motors = new ArrayList<>();
+  private static final List<SparkMaxConfig> configs = new ArrayList<>();
+  // Every controller's config, kept after configureAll() for getCurrentLimit()
+  private static final Map<CANSparkMax, SparkMaxConfig> configured = new IdentityHashMap<>();
+  // What restoreFactoryDefaults() leaves, the same in every smart motion slot
+  private static final SparkMaxConfig kFactoryDefaults = new SparkMaxConfig()
+      .pid(0, 0, 0, 0, 0)
+      .outputRange(-1, 1)
+      .smartMotion(0, 0, 0, 0, 0)
+      .conversionFactors(1, 1);
+
+  private static double lastConfigureMillis = 0;
+  private static int lastWrites = 0;
+
+  private SparkMaxConfigurator() {}
+
+  /**
+   * Queues a controller to be set up by {@link #configureAll()}
+   * @param motor the controller
+   * @param config what it should be set to
+   */
+  public static synchronized void add(CANSparkMax motor, SparkMaxConfig config) {
+    motors.add(motor);
+    configs.add(config);
+    configured.put(motor, config);
+  }
+
+  /**
+   * @param motor a controller that was added
+   * @return the smart current limit it's set up with, in amps
+   */
+  public static synchronized int getCurrentLimit(CANSparkMax motor) {
+    SparkMaxConfig config = configured.get(motor);
+    return config != null && config.currentLimit > 0 ? config.currentLimit : Constants.sparkMaxDefaultCurrentLimit;
+  }
+
+  /**
+   * Sets up every queued controller in parallel and waits for all of them.
+   * Call once from robotInit() after the subsystems are made
+   * @return how long it took in milliseconds
+   */
+  public static synchronized double configureAll() {
+    long start = System.nanoTime();
+    AtomicInteger writes = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < motors.size(); i++) {
+      CANSparkMax motor = motors.get(i);
+      SparkMaxConfig config = configs.get(i);
+      Thread thread = new Thread(() -> writes.addAndGet(configure(motor, config)),
+          "SparkMaxConfig " + motor.getDeviceId());
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    lastConfigureMillis = (System.nanoTime() - start) / 1e6;
+    lastWrites = writes.get();
+    System.out.printf("Configured %d SPARK MAX in %.0f ms, %d parameters written%n",
+        motors.size(), lastConfigureMillis, lastWrites);
+    Telemetry.addNumber("SPARK MAX Config ms", () -> lastConfigureMillis, 0, 5);
+    Telemetry.addNumber("SPARK MAX Config Writes", () -> lastWrites, 0, 5);
+    motors.clear();
+    configs.clear();
+    return lastConfigureMillis;
+  }
+
+  // Returns how many parameters were written
+  private static int configure(CANSparkMax motor, SparkMaxConfig config) {
+    SparkMaxPIDController pid = motor.getPIDController();
+    RelativeEncoder encoder = motor.getEncoder();
+    SparkMaxConfig defaults = kFactoryDefaults;
+    int slot = config.smartMotionSlot;
+    int writes = 0;
+    motor.restoreFactoryDefaults();
+    writes += apply(config.kP, defaults.kP, value -> pid.setP(value));
+    writes += apply(config.kI, defaults.kI, value -> pid.setI(value));
+    writes += apply(config.kD, defaults.kD, value -> pid.setD(value));
+    writes += apply(config.kIz, defaults.kIz, value -> pid.setIZone(value));
+    writes += apply(config.kFF, defaults.kFF, value -> pid.setFF(value));
+    if (!Double.isNaN(config.minOutput) && !Double.isNaN(config.maxOutput)
+        && (differs(config.minOutput, defaults.minOutput) || differs(config.maxOutput, defaults.maxOutput))) {
+      pid.setOutputRange(config.minOutput, config.maxOutput);
+      writes++;
+    }
+    writes += apply(config.maxVel, defaults.maxVel, value -> pid.setSmartMotionMaxVelocity(value, slot));
+    writes += apply(config.minVel, defaults.minVel, value -> pid.setSmartMotionMinOutputVelocity(value, slot));
+    writes += apply(config.maxAcc, defaults.maxAcc, value -> pid.setSmartMotionMaxAccel(value, slot));
+    writes += apply(config.allowedErr, defaults.allowedErr,
+        value -> pid.setSmartMotionAllowedClosedLoopError(value, slot));
+    writes += apply(config.positionConversionFactor, defaults.positionConversionFactor,
+        value -> encoder.setPositionConversionFactor(value));
+    writes += apply(config.velocityConversionFactor, defaults.velocityConversionFactor,
+        value -> encoder.setVelocityConversionFactor(value));
+    if (config.currentLimit > 0 && config.currentLimit != Constants.sparkMaxDefaultCurrentLimit) {
+      motor.setSmartCurrentLimit(config.currentLimit);
+      writes++;
+    }
+    return writes;
+  }
+
+  private static int apply(double wanted, double factory, DoubleConsumer setter) {
+    if (!differs(wanted, factory)) {
+      return 0;
+    }
+    setter.accept(wanted);
+    return 1;
+  }
+
+  // The controller stores floats so compare with some room
+  private static boolean differs(double wanted, double actual) {
+    if (Double.isNaN(wanted)) {
+      return false;
+    }
+    return Math.abs(wanted - actual) > 1e-6 * Math.max(1, Math.abs(wanted));
+  }
+}
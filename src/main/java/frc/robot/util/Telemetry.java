@@ -0,0 +1,169 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Replaces SmartDashboard.putNumber calls in periodic().
+ * Subsystems register their signals once, {@link #update()} samples every signal
+ * that is due once per cycle, and only values that changed are handed to a
+ * background thread that does the NetworkTables work.
+ * Values still show up under the SmartDashboard table with the same keys
+ */
+public final class Telemetry {
+  // LoopProfiler publishes three per section, so this has to cover 3 * its kMaxSections plus the rest
+  private static final int kMaxSignals = 256;
+  // How often the background thread pushes values to NetworkTables
+  private static final double kFlushPeriodSeconds = 0.02;
+
+  private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+
+  // Written on the main thread while registering, read by both threads afterwards
+  private static final NetworkTableEntry[] entries = new NetworkTableEntry[kMaxSignals];
+  private static final DoubleSupplier[] numberSuppliers = new DoubleSupplier[kMaxSignals];
+  private static final BooleanSupplier[] booleanSuppliers = new BooleanSupplier[kMaxSignals];
+  private static final double[] epsilons = new double[kMaxSignals];
+  private static final double[] periods = new double[kMaxSignals];
+
+  // Only used on the main thread
+  private static final double[] lastSampleTimes = new double[kMaxSignals];
+  private static final double[] lastPublished = new double[kMaxSignals];
+  private static final boolean[] hasPublished = new boolean[kMaxSignals];
+
+  // Handoff to the background thread, the value is stored as raw double bits
+  private static final AtomicLongArray pendingValues = new AtomicLongArray(kMaxSignals);
+  private static final AtomicIntegerArray dirty = new AtomicIntegerArray(kMaxSignals);
+
+  private static volatile int signalCount = 0;
+  private static Notifier flusher;
+
+  private Telemetry() {}
+
+  /**
+   * Registers a number that is published every cycle when it changed
+   * @param key SmartDashboard key
+   * @param supplier where the value comes from
+   * @param epsilon changes smaller than this are not published
+   */
+  public static void addNumber(String key, DoubleSupplier supplier, double epsilon) {
+    addNumber(key, supplier, epsilon, 0);
+  }
+
+  /**
+   * Registers a number
+   * @param key SmartDashboard key
+   * @param supplier where the value comes from
+   * @param epsilon changes smaller than this are not published
+   * @param periodSeconds the value is sampled at most this often, 0 is every cycle
+   */
+  public static synchronized void addNumber(String key, DoubleSupplier supplier, double epsilon,
+      double periodSeconds) {
+    int i = claimSlot(key, periodSeconds);
+    numberSuppliers[i] = supplier;
+    epsilons[i] = epsilon;
+    signalCount = i + 1;
+  }
+
+  /**
+   * Registers a boolean that is published every cycle when it changed
+   * @param key SmartDashboard key
+   * @param supplier where the value comes from
+   */
+  public static void addBoolean(String key, BooleanSupplier supplier) {
+    addBoolean(key, supplier, 0);
+  }
+
+  /**
+   * Registers a boolean
+   * @param key SmartDashboard key
+   * @param supplier where the value comes from
+   * @param periodSeconds the value is sampled at most this often, 0 is every cycle
+   */
+  public static synchronized void addBoolean(String key, BooleanSupplier supplier, double periodSeconds) {
+    int i = claimSlot(key, periodSeconds);
+    booleanSuppliers[i] = supplier;
+    signalCount = i + 1;
+  }
+
+  private static int claimSlot(String key, double periodSeconds) {
+    int i = signalCount;
+    if (i >= kMaxSignals) {
+      throw new IllegalStateException("Too many telemetry signals, raise kMaxSignals");
+    }
+    entries[i] = table.getEntry(key);
+    periods[i] = periodSeconds;
+    lastSampleTimes[i] = Double.NEGATIVE_INFINITY;
+    return i;
+  }
+
+  /** Starts the background thread that publishes to NetworkTables */
+  public static synchronized void start() {
+    if (flusher == null) {
+      flusher = new Notifier(Telemetry::flush);
+      flusher.setName("Telemetry");
+      flusher.startPeriodic(kFlushPeriodSeconds);
+    }
+  }
+
+  /**
+   * Samples every signal that is due and queues the ones that changed.
+   * Call this once per cycle from the main loop
+   */
+  public static void update() {
+    double now = Timer.getFPGATimestamp();
+    int count = signalCount;
+    for (int i = 0; i < count; i++) {
+      if (now - lastSampleTimes[i] < periods[i]) {
+        continue;
+      }
+      lastSampleTimes[i] = now;
+
+      double value;
+      if (numberSuppliers[i] != null) {
+        value = numberSuppliers[i].getAsDouble();
+      } else {
+        value = booleanSuppliers[i].getAsBoolean() ? 1 : 0;
+      }
+      if (hasPublished[i] && Math.abs(value - lastPublished[i]) <= epsilons[i]) {
+        continue;
+      }
+      hasPublished[i] = true;
+      lastPublished[i] = value;
+      pendingValues.set(i, Double.doubleToRawLongBits(value));
+      dirty.set(i, 1);
+    }
+  }
+
+  // Runs on the Notifier thread
+  private static void flush() {
+    int count = signalCount;
+    boolean sent = false;
+    for (int i = 0; i < count; i++) {
+      if (dirty.getAndSet(i, 0) == 0) {
+        continue;
+      }
+      double value = Double.longBitsToDouble(pendingValues.get(i));
+      if (numberSuppliers[i] != null) {
+        entries[i].setDouble(value);
+      } else {
+        entries[i].setBoolean(value != 0);
+      }
+      sent = true;
+    }
+    if (sent) {
+      NetworkTableInstance.getDefault().flush();
+    }
+  }
+}
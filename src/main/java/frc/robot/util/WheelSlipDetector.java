@@ -0,0 +1,267 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * Tracks how far the robot drove from all four drive encoders and the gyro, and finds wheels slipping.
+ * Every loop each side moves by the average of its front and back encoder, unless they disagree.
+ * Then a wheel is spinning or dragging, and the one that moved less is used since a spinning wheel
+ * reads too far. When the two sides turn the robot more or less than the gyro says it turned, the
+ * side that moved more is put back where the other side and the gyro say it should be.
+ *
+ * <p>The checks are over the last DriveConstants.slipWindowSeconds and not one loop, the position
+ * frames and the loop both jitter by a few ms and over one loop that looks like a wheel speeding up.
+ * The thresholds grow with how fast the robot is driving since the jitter does too.
+ *
+ * <p>Only reads the sample it's given, so replaying a log finds the same slips.
+ * Everything is on the main loop thread
+ */
+public class WheelSlipDetector {
+  public enum Slip {
+    // Front and back encoders on one side disagree
+    left,
+    right,
+    // The sides turned the robot differently than the gyro
+    yaw
+  }
+
+  private static final Slip[] kSlips = Slip.values();
+
+  // Where each sample is in the window
+  private static final int kTime = 0;
+  private static final int kLeftFront = 1;
+  private static final int kLeftBack = 2;
+  private static final int kRightFront = 3;
+  private static final int kRightBack = 4;
+  private static final int kGyro = 5;
+
+  private final double metersPerRotation;
+  private final double trackWidthMeters;
+
+  private boolean hasLast = false;
+  private double lastTime;
+  private double lastLeftFront;
+  private double lastLeftBack;
+  private double lastRightFront;
+  private double lastRightBack;
+  private double lastGyro;
+
+  // The last few samples, oldest at next once it's full
+  private final double[][] window;
+  private int next = 0;
+  private int count = 0;
+  // Which wheel on each side moved less over the window, used while that side slips
+  private final boolean[] useFront = new boolean[2];
+
+  private double distance = 0;
+  private final boolean[] slipping = new boolean[kSlips.length];
+  private final int[] counts = new int[kSlips.length];
+  private double lastSlipTime = Double.NEGATIVE_INFINITY;
+  private double lastSlipMagnitude = 0;
+
+  /**
+   * @param metersPerRotation wheel travel per motor rotation
+   * @param trackWidthMeters between the left and right wheels
+   */
+  public WheelSlipDetector(double metersPerRotation, double trackWidthMeters) {
+    this.metersPerRotation = metersPerRotation;
+    this.trackWidthMeters = trackWidthMeters;
+    int loops = (int) Math.round(DriveConstants.slipWindowSeconds / TimedRobot.kDefaultPeriod);
+    window = new double[Math.max(loops, 1) + 1][kGyro + 1];
+  }
+
+  /**
+   * Adds one sample, call every loop
+   * @param timestamp FPGA seconds
+   * @param leftFront encoder rotations, positive is forward on every wheel
+   * @param leftBack
+   * @param rightFront
+   * @param rightBack
+   * @param gyroDegrees navX angle, clockwise positive
+   */
+  public void update(double timestamp, double leftFront, double leftBack, double rightFront, double rightBack,
+      double gyroDegrees) {
+    double dt = timestamp - lastTime;
+    double dLeftFront = leftFront - lastLeftFront;
+    double dLeftBack = leftBack - lastLeftBack;
+    double dRightFront = rightFront - lastRightFront;
+    double dRightBack = rightBack - lastRightBack;
+    // In case the angle wraps like the yaw does
+    double dGyro = Math.IEEEremainder(gyroDegrees - lastGyro, 360);
+    boolean first = !hasLast;
+    hasLast = true;
+    lastTime = timestamp;
+    lastLeftFront = leftFront;
+    lastLeftBack = leftBack;
+    lastRightFront = rightFront;
+    lastRightBack = rightBack;
+    lastGyro = gyroDegrees;
+    if (first || dt <= 0) {
+      count = 0;
+      record(timestamp, leftFront, leftBack, rightFront, rightBack, gyroDegrees);
+      return;
+    }
+    // setPosition(0) takes a status frame to show up, so right after a reset an encoder can
+    // still read the old distance. Nothing real moves that far in one loop
+    double maxStep = DriveConstants.maxMotorRotationsPerSecond * dt * 2;
+    if (Math.abs(dLeftFront) > maxStep || Math.abs(dLeftBack) > maxStep
+        || Math.abs(dRightFront) > maxStep || Math.abs(dRightBack) > maxStep) {
+      count = 0;
+      record(timestamp, leftFront, leftBack, rightFront, rightBack, gyroDegrees);
+      return;
+    }
+    record(timestamp, leftFront, leftBack, rightFront, rightBack, gyroDegrees);
+    if (count == window.length) {
+      checkWindow(timestamp);
+    }
+
+    double left = side(Slip.left, dLeftFront, dLeftBack);
+    double right = side(Slip.right, dRightFront, dRightBack);
+
+    // Turning in place scrubs the wheels sideways, so the gyro is only used while driving
+    if (slipping[Slip.yaw.ordinal()] && Math.abs(left + right) > Math.abs(left - right)) {
+      double turn = Math.toRadians(dGyro) * trackWidthMeters / metersPerRotation;
+      if (Math.abs(left) > Math.abs(right)) {
+        left = right + turn;
+      } else {
+        right = left - turn;
+      }
+    }
+    distance += (left + right) / 2;
+  }
+
+  private void record(double timestamp, double leftFront, double leftBack, double rightFront, double rightBack,
+      double gyroDegrees) {
+    double[] sample = window[next];
+    sample[kTime] = timestamp;
+    sample[kLeftFront] = leftFront;
+    sample[kLeftBack] = leftBack;
+    sample[kRightFront] = rightFront;
+    sample[kRightBack] = rightBack;
+    sample[kGyro] = gyroDegrees;
+    next = (next + 1) % window.length;
+    count = Math.min(count + 1, window.length);
+  }
+
+  // Runs the checks from the oldest sample in the window to the newest
+  private void checkWindow(double timestamp) {
+    double[] oldest = window[next];
+    double[] newest = window[(next + window.length - 1) % window.length];
+    double span = newest[kTime] - oldest[kTime];
+    if (span <= 0) {
+      return;
+    }
+    double leftFront = newest[kLeftFront] - oldest[kLeftFront];
+    double leftBack = newest[kLeftBack] - oldest[kLeftBack];
+    double rightFront = newest[kRightFront] - oldest[kRightFront];
+    double rightBack = newest[kRightBack] - oldest[kRightBack];
+    double left = checkSide(Slip.left, leftFront, leftBack, span, timestamp);
+    double right = checkSide(Slip.right, rightFront, rightBack, span, timestamp);
+
+    // Turning in place scrubs the wheels sideways, so the gyro is only checked while driving
+    if (Math.abs(left + right) > Math.abs(left - right)) {
+      double gyroRadians = Math.toRadians(Math.IEEEremainder(newest[kGyro] - oldest[kGyro], 360));
+      double wheelRadians = (left - right) * metersPerRotation / trackWidthMeters;
+      double error = Math.toDegrees(Math.abs(wheelRadians - gyroRadians)) / span;
+      // What a side that far behind the other would turn the robot
+      double speed = Math.abs(left + right) / 2 / span;
+      double allowed = Math.toDegrees(DriveConstants.slipSpeedFraction * speed * metersPerRotation / trackWidthMeters);
+      check(Slip.yaw, error, DriveConstants.slipYawDegreesPerSecond + allowed, timestamp);
+    }
+  }
+
+  // Checks one side over the window, returns how far it moved using the wheel to trust
+  private double checkSide(Slip slip, double front, double back, double span, double timestamp) {
+    double rate = Math.abs(front - back) / span;
+    double speed = Math.abs(front + back) / 2 / span;
+    double threshold = DriveConstants.slipSideRotationsPerSecond + DriveConstants.slipSpeedFraction * speed;
+    if (check(slip, rate, threshold, timestamp)) {
+      useFront[slip.ordinal()] = Math.abs(front) < Math.abs(back);
+      return useFront[slip.ordinal()] ? front : back;
+    }
+    return (front + back) / 2;
+  }
+
+  // How far one side moved this loop
+  private double side(Slip slip, double front, double back) {
+    if (slipping[slip.ordinal()]) {
+      return useFront[slip.ordinal()] ? front : back;
+    }
+    return (front + back) / 2;
+  }
+
+  // Slipping starts over the threshold and stops under half of it
+  private boolean check(Slip slip, double value, double threshold, double timestamp) {
+    int i = slip.ordinal();
+    if (!slipping[i] && value > threshold) {
+      slipping[i] = true;
+      counts[i]++;
+      lastSlipTime = timestamp;
+      lastSlipMagnitude = value;
+      if (DriverStation.isAutonomous()) {
+        DriverStation.reportWarning(String.format("Wheel slip (%s) at %.1f rotations", slip, distance), false);
+      }
+    } else if (slipping[i] && value < threshold / 2) {
+      slipping[i] = false;
+    }
+    return slipping[i];
+  }
+
+  /** Starts the distance over from 0, call when the encoders are zeroed */
+  public void reset() {
+    distance = 0;
+    hasLast = false;
+    count = 0;
+  }
+
+  /** @return motor rotations driven forward since the last reset, positive is forward */
+  public double getDistance() {
+    return distance;
+  }
+
+  /** @return true while any of the checks sees a slip */
+  public boolean isSlipping() {
+    for (boolean s : slipping) {
+      if (s) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isSlipping(Slip slip) {
+    return slipping[slip.ordinal()];
+  }
+
+  /** @return how many times this check started seeing a slip */
+  public int getSlipCount(Slip slip) {
+    return counts[slip.ordinal()];
+  }
+
+  public int getSlipCount() {
+    int total = 0;
+    for (int count : counts) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * @param timestamp FPGA time, like when a command started
+   * @return true if a slip started after that time
+   */
+  public boolean slippedSince(double timestamp) {
+    return lastSlipTime > timestamp;
+  }
+
+  /** @return rotations per second apart, or degrees per second for yaw, when the last slip started */
+  public double getLastSlipMagnitude() {
+    return lastSlipMagnitude;
+  }
+}
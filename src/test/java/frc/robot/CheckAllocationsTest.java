@@ -0,0 +1,86 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.RunCommand;
+import frc.robot.sim.SimHarness;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.ProfiledCommand;
+
+/**
+ * Runs teleop in simulation with the driver stick moving and counts what the main loop allocates.
+ * The first few seconds are left out so class loading and the JIT don't count, then it prints
+ * the biggest allocators and fails if the average is over Constants.allocationBudgetBytes.
+ * Skipped on a JVM that can't count allocations. Run with ./gradlew test
+ */
+public class CheckAllocationsTest {
+  private static final double kWarmupSeconds = 10;
+  private static final double kSeconds = 30;
+
+  private static SimHarness.SimRobot robot;
+  // Written by the allocating command so the JIT can't leave the allocation out
+  static volatile byte[] sink;
+
+  @BeforeClass
+  public static void startRobot() {
+    SimHarness.start();
+    assumeTrue("This JVM can't count allocations", LoopProfiler.setAllocationTracking(true));
+    robot = new SimHarness.SimRobot();
+    robot.robotInit();
+    SimHarness.setJoysticks(2, 6);
+    SimHarness.setMode(true, false);
+  }
+
+  @Test
+  public void teleopLoopIsInsideTheBudget() {
+    int warmupCycles = (int) Math.round(kWarmupSeconds / SimHarness.kPeriod);
+    int cycles = warmupCycles + (int) Math.round(kSeconds / SimHarness.kPeriod);
+    for (int i = 0; i < cycles; i++) {
+      if (i == warmupCycles) {
+        LoopProfiler.resetAllocations();
+      }
+      runCycle(i);
+    }
+
+    double average = LoopProfiler.getAllocatedBytesPerCycle();
+    System.out.println(LoopProfiler.describeTopAllocators(10));
+    System.out.println(String.format("Per cycle: p50 %d, p99 %d, max %d bytes",
+        LoopProfiler.getCycleBytes().percentile(0.5), LoopProfiler.getCycleBytes().percentile(0.99),
+        LoopProfiler.getCycleBytes().getMax()));
+    System.out.println(String.format("%.0f bytes per cycle on average, budget is %d",
+        average, Constants.allocationBudgetBytes));
+    assertTrue(String.format("%.0f bytes per cycle is over the budget of %d", average, Constants.allocationBudgetBytes),
+        average <= Constants.allocationBudgetBytes);
+  }
+
+  @Test
+  public void commandBytesGoToTheCommand() {
+    Command allocating = new ProfiledCommand("AllocationCheck", new RunCommand(() -> sink = new byte[1024]));
+    int executeId = LoopProfiler.register("AllocationCheck.execute");
+    LoopProfiler.resetAllocations();
+    allocating.schedule();
+    for (int i = 0; i < 50; i++) {
+      runCycle(i);
+    }
+    allocating.cancel();
+
+    double bytes = LoopProfiler.getAllocatedBytesPerCycle(executeId);
+    System.out.println(String.format("AllocationCheck.execute: %.0f bytes per cycle", bytes));
+    assertTrue("The command's execute() got none of its bytes", bytes >= 1024);
+  }
+
+  private static void runCycle(int cycle) {
+    SimHarness.moveDriverStick(cycle);
+    robot.runCycle();
+    SimHarness.step();
+  }
+}
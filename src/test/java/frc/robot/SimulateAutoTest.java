@@ -0,0 +1,68 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.sim.DrivetrainPhysics;
+import frc.robot.sim.SimHarness;
+import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.util.CommandTracer;
+
+/**
+ * Runs every auto in the headless simulator, one after another from the starting line,
+ * and fails if one doesn't finish before the end of the auto period.
+ * The command timeline is written to logs/commands.json for chrome://tracing.
+ * Run with ./gradlew test
+ */
+public class SimulateAutoTest {
+  private static RobotContainer container;
+
+  @BeforeClass
+  public static void startRobot() {
+    SimHarness.start();
+    container = new RobotContainer();
+    CommandTracer.start();
+  }
+
+  @Test
+  public void autosFinishInTime() throws IOException {
+    DriveSubsystem drive = container.getDriveSubsystem();
+    DrivetrainPhysics physics = drive.getPhysics();
+    List<String> unfinished = new ArrayList<>();
+    for (String name : container.getAutonomousNames()) {
+      Command auto = container.getAutonomousCommand(name);
+      long wallStart = System.nanoTime();
+      double seconds = SimHarness.runAuto(container, auto, DrivetrainPhysics.Variation.kNone);
+      double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+      if (Double.isNaN(seconds)) {
+        unfinished.add(name);
+        System.out.println(String.format("%s did not finish", name));
+      } else {
+        System.out.println(String.format("%s finished after %.2f s of robot time in %.3f s (%.0fx real time)",
+            name, seconds, wallSeconds, seconds / wallSeconds));
+      }
+      System.out.println(String.format("  Real pose      x %.3f m, y %.3f m, heading %.1f deg",
+          physics.getX(), physics.getY(), physics.getHeading()));
+      System.out.println(String.format("  Estimated pose x %.3f m, y %.3f m, heading %.1f deg",
+          drive.inputs.poseX, drive.inputs.poseY, Math.toDegrees(drive.inputs.poseHeading)));
+    }
+
+    File trace = new File("logs", "commands.json");
+    CommandTracer.export(trace);
+    System.out.println("Command trace written to " + trace.getPath());
+
+    assertTrue("Didn't finish in the auto period: " + unfinished, unfinished.isEmpty());
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Hammers the handoff from a writer thread while the reader polls, like the camera
+ * thread and the main loop. Each value is written as the same number twice, so a reader
+ * that ever sees the writer working on its buffer sees the two halves differ
+ */
+public class SingleSlotHandoffTest {
+  private static final long kValues = 2_000_000;
+
+  @Test(timeout = 30_000)
+  public void everyBufferSurvivesTwoThreads() throws InterruptedException {
+    SingleSlotHandoff<long[]> handoff = new SingleSlotHandoff<>(() -> new long[2]);
+    Set<long[]> writerBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+    AtomicBoolean done = new AtomicBoolean(false);
+
+    Thread writer = new Thread(() -> {
+      for (long value = 1; value <= kValues; value++) {
+        long[] buffer = handoff.getWriteBuffer();
+        writerBuffers.add(buffer);
+        buffer[0] = value;
+        buffer[1] = value;
+        handoff.publish();
+      }
+      done.set(true);
+    }, "Handoff writer");
+    writer.start();
+
+    Set<long[]> readerBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+    long last = 0;
+    long torn = 0;
+    long reads = 0;
+    boolean finished = false;
+    while (!finished) {
+      // Checked before the poll so the last value is still picked up
+      finished = done.get();
+      if (!handoff.poll()) {
+        continue;
+      }
+      long[] buffer = handoff.get();
+      readerBuffers.add(buffer);
+      long first = buffer[0];
+      Thread.onSpinWait();
+      if (buffer[1] != first || buffer[0] != first) {
+        torn++;
+      }
+      assertTrue("Went back from " + last + " to " + first, first > last);
+      last = first;
+      reads++;
+    }
+    writer.join();
+
+    assertEquals("Reads that changed while the reader held them", 0, torn);
+    assertEquals("The last value has to get through", kValues, last);
+    assertTrue("The reader never got anything", reads > 0);
+    // A lost buffer shows up as fewer than three, an extra one can't happen
+    Set<long[]> all = Collections.newSetFromMap(new IdentityHashMap<>());
+    all.addAll(writerBuffers);
+    all.addAll(readerBuffers);
+    assertEquals(3, all.size());
+    assertEquals(3, writerBuffers.size());
+
+    // Both threads are done, so this thread can be both. A lost buffer hangs publish() here
+    // or leaves two of these the same
+    long[] written = handoff.getWriteBuffer();
+    long[] held = handoff.get();
+    handoff.publish();
+    assertTrue(handoff.poll());
+    assertTrue("The reader didn't get what was published", handoff.get() == written);
+    long[] next = handoff.getWriteBuffer();
+    assertTrue("Two of the buffers are the same one", written != held && next != held && next != written);
+  }
+}
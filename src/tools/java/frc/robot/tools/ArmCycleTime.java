@@ -0,0 +1,51 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.tools;
+
+import frc.robot.commands.ToggleArmCommand;
+import frc.robot.sim.SimHarness;
+import frc.robot.subsystems.BallTransitSubsystem;
+
+/**
+ * Toggles the intake arm up and down in simulation and times each move, from the command
+ * starting to it finishing, with how far off the arm was when the profile ended.
+ * The arm starts down on its switch like it does on the robot.
+ * Run with ./gradlew armCycleTime -Pcycles=3
+ *
+ * <p>Exits with 0 if every move finished, 1 if one didn't
+ */
+public final class ArmCycleTime {
+  private ArmCycleTime() {}
+
+  // A move that takes longer than this is stuck
+  private static final double kTimeoutSeconds = 5;
+
+  public static void main(String... args) {
+    int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+
+    SimHarness.start();
+    BallTransitSubsystem arm = new BallTransitSubsystem();
+    ToggleArmCommand toggle = new ToggleArmCommand(arm);
+    SimHarness.setMode(true, false);
+
+    boolean allFinished = true;
+    double total = 0;
+    for (int move = 0; move < cycles * 2; move++) {
+      int steps = SimHarness.run(toggle, kTimeoutSeconds);
+      boolean finished = steps > 0 && !toggle.isScheduled();
+      allFinished &= finished;
+      toggle.cancel();
+      double seconds = steps * SimHarness.kPeriod;
+      total += seconds;
+      System.out.println(String.format("%-5s %s in %.2f s, profile %.2f s, ended %.3f rotations off at %.2f",
+          move % 2 == 0 ? "Up" : "Down", finished ? "finished" : "did not finish", seconds,
+          arm.getLastMoveSeconds(), arm.getLastMoveError(), arm.inputs.armPosition));
+    }
+    System.out.println(String.format("%d up and down cycles, %.2f s per cycle", cycles, total / cycles));
+
+    // The Notifier threads would keep the JVM running
+    System.exit(allFinished ? 0 : 1);
+  }
+}
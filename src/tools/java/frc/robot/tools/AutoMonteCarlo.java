@@ -0,0 +1,275 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.RobotContainer;
+import frc.robot.sim.DrivetrainPhysics;
+import frc.robot.sim.SimHarness;
+import frc.robot.util.DriveMath;
+
+/**
+ * Runs the leg by leg autos hundreds of times with random wheel slip, gyro drift
+ * and motor differences, spread over every core, and prints how long they take
+ * and how far off they end up. Use it to pick the fastest variant that still ends
+ * up in the right place before trying it on the practice field.
+ * Run with ./gradlew autoMonteCarlo -Ptrials=200
+ *
+ * <p>Every trial is the real auto command running on the real subsystems in the simulator,
+ * with {@link DrivetrainPhysics} made a little different each time. The HAL simulator is one
+ * per process, so each variant runs in its own JVM and the variants run in parallel.
+ *
+ * <p>Trial i gets the same random robot in every variant, so differences between
+ * variants come from the variant and not from luck. Errors are how far each run ends up
+ * from where the robot's own settings put the nominal robot, the same spot for every
+ * variant of an auto, so a variant that ends up somewhere else every time shows up as error
+ */
+public final class AutoMonteCarlo {
+  // Randomness of the simulated robot
+  private static final double kMotorVariance = 0.05; // Standard deviation of motor strength
+  private static final double kMaxSlip = 0.05; // Up to this much of the wheel travel is lost
+  private static final double kGyroDriftDegreesPerSecond = 0.1; // Standard deviation
+  private static final double kMaxTurnScrub = 0.25; // Turning can take up to this much longer than the track width says
+
+  // Starts a worker instead of the whole run
+  private static final String kWorker = "--worker";
+
+  private AutoMonteCarlo() {}
+
+  /** One version of an auto to try */
+  private static final class Variant {
+    final String name;
+    final String auto;
+    final double maxVel;
+    final double maxAcc;
+    final double turnKP;
+    // The robot's own settings, its nominal end pose is where every variant of the auto is measured from
+    final boolean baseline;
+
+    // Filled in by the trials, one entry each
+    double[] times;
+    double[][] poses;
+    double[] positionErrors;
+    double[] headingErrors;
+    // x, y, angle of the robot with no randomness
+    double[] nominal;
+
+    Variant(String name, String auto, double maxVel, double maxAcc, double turnKP, boolean baseline) {
+      this.name = name;
+      this.auto = auto;
+      this.maxVel = maxVel;
+      this.maxAcc = maxAcc;
+      this.turnKP = turnKP;
+      this.baseline = baseline;
+    }
+  }
+
+  public static void main(String... args) throws Exception {
+    if (args.length > 0 && args[0].equals(kWorker)) {
+      runWorker(args);
+      return;
+    }
+    int trials = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+    // About the size of a cargo
+    double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.25;
+
+    List<Variant> variants = new ArrayList<>();
+    // {maxVel RPM, maxAcc RPM/s} for smart motion, the second one is what the robot uses
+    double[][] profiles = {
+      {3000, 1200},
+      {DriveConstants.smartMotionMaxVelocity, DriveConstants.smartMotionMaxAcceleration},
+      {5000, 2000}
+    };
+    // Heading controller kP, the first one is what the robot uses
+    double[] turnGains = {DriveConstants.headingKP, DriveConstants.headingKP * 1.5};
+    for (int p = 0; p < profiles.length; p++) {
+      for (int t = 0; t < turnGains.length; t++) {
+        double[] profile = profiles[p];
+        double turnKP = turnGains[t];
+        boolean baseline = p == 1 && t == 0;
+        String settings = String.format(" vel %.0f acc %.0f turn kP %.0f", profile[0], profile[1], turnKP);
+        variants.add(new Variant("TwoBall" + settings, "Two Ball Auto", profile[0], profile[1], turnKP, baseline));
+        variants.add(new Variant("Simple " + settings, "Simple Auto", profile[0], profile[1], turnKP, baseline));
+      }
+    }
+
+    int threads = Math.min(variants.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    List<Future<?>> running = new ArrayList<>();
+    for (Variant variant : variants) {
+      running.add(pool.submit(() -> {
+        runVariant(variant, trials, seed);
+        return null;
+      }));
+    }
+    for (Future<?> future : running) {
+      future.get();
+    }
+    pool.shutdown();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    for (Variant variant : variants) {
+      measureErrors(variant, variants);
+    }
+
+    System.out.printf("%d trials of %d variants in %d processes in %.2f s (%.1f trials/s)%n%n",
+        trials, variants.size(), threads, seconds, trials * variants.size() / seconds);
+    System.out.printf("%-38s %7s %7s %7s %7s %9s %9s %9s%n",
+        "Variant", "Done %", "p50 s", "p95 s", "max s", "p50 err m", "p95 err m", "p95 deg");
+    Variant best = null;
+    for (Variant variant : variants) {
+      double done = 0;
+      for (double time : variant.times) {
+        done += Double.isNaN(time) ? 0 : 1;
+      }
+      done = done / trials * 100;
+      double p95Time = percentile(variant.times, 0.95);
+      double p95Error = percentile(variant.positionErrors, 0.95);
+      System.out.printf("%-38s %7.1f %7.2f %7.2f %7.2f %9.3f %9.3f %9.1f%n", variant.name, done,
+          percentile(variant.times, 0.5), p95Time, percentile(variant.times, 1),
+          percentile(variant.positionErrors, 0.5), p95Error, percentile(variant.headingErrors, 0.95));
+      // Robust means it always finishes and 95% of runs end up within the tolerance
+      if (done == 100 && p95Error <= tolerance && (best == null || p95Time < percentile(best.times, 0.95))) {
+        best = variant;
+      }
+    }
+    System.out.println();
+    if (best == null) {
+      System.out.printf("No variant finished every run with a p95 error under %.2f m%n", tolerance);
+    } else {
+      System.out.printf("Fastest robust variant: %s%n", best.name);
+    }
+  }
+
+  /**
+   * Percentile where NaN (didn't finish) counts as slower than anything
+   * @param p 0 to 1
+   */
+  private static double percentile(double[] values, double p) {
+    double[] sorted = values.clone();
+    // Arrays.sort puts NaN at the end
+    Arrays.sort(sorted);
+    int index = Math.max(0, (int) Math.ceil(p * sorted.length) - 1);
+    return sorted[index];
+  }
+
+  // Errors against the baseline variant's nominal end pose for the same auto
+  private static void measureErrors(Variant variant, List<Variant> variants) {
+    double[] reference = null;
+    for (Variant other : variants) {
+      if (other.baseline && other.auto.equals(variant.auto)) {
+        reference = other.nominal;
+      }
+    }
+    variant.positionErrors = new double[variant.poses.length];
+    variant.headingErrors = new double[variant.poses.length];
+    for (int trial = 0; trial < variant.poses.length; trial++) {
+      double[] pose = variant.poses[trial];
+      variant.positionErrors[trial] = Math.hypot(pose[0] - reference[0], pose[1] - reference[1]);
+      variant.headingErrors[trial] = Math.abs(DriveMath.angleError(pose[2], reference[2]));
+    }
+  }
+
+  // Starts a worker JVM for the variant and reads back one line per trial
+  private static void runVariant(Variant variant, int trials, long seed) throws IOException, InterruptedException {
+    String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+    ProcessBuilder builder = new ProcessBuilder(java,
+        "-Djava.library.path=" + System.getProperty("java.library.path"),
+        "-cp", System.getProperty("java.class.path"),
+        AutoMonteCarlo.class.getName(), kWorker, variant.auto, Double.toString(variant.maxVel),
+        Double.toString(variant.maxAcc), Double.toString(variant.turnKP), Integer.toString(trials),
+        Long.toString(seed));
+    builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+    Process process = builder.start();
+
+    variant.times = new double[trials];
+    variant.poses = new double[trials][];
+    int count = 0;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // "trial", trial number, seconds or NaN, x, y, navX angle. The robot code prints too
+        String[] fields = line.trim().split(" ");
+        if (fields.length != 6 || !fields[0].equals("trial")) {
+          continue;
+        }
+        int trial = Integer.parseInt(fields[1]);
+        double[] pose = {Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Double.parseDouble(fields[5])};
+        if (trial < 0) {
+          variant.nominal = pose;
+          continue;
+        }
+        variant.times[trial] = Double.parseDouble(fields[2]);
+        variant.poses[trial] = pose;
+        count++;
+      }
+    }
+    if (process.waitFor() != 0 || count != trials || variant.nominal == null) {
+      throw new IllegalStateException(variant.name + " worker stopped after " + count + " of " + trials + " trials");
+    }
+  }
+
+  // One variant in this JVM, prints "trial i seconds x y angle" for the nominal robot (i = -1) and every trial
+  private static void runWorker(String[] args) {
+    String name = args[1];
+    // Read by DriveSubsystem and HeadingController, so set before anything is made
+    DriveConstants.smartMotionMaxVelocity = Double.parseDouble(args[2]);
+    DriveConstants.smartMotionMaxAcceleration = Double.parseDouble(args[3]);
+    DriveConstants.headingKP = Double.parseDouble(args[4]);
+    int trials = Integer.parseInt(args[5]);
+    long seed = Long.parseLong(args[6]);
+
+    SimHarness.start();
+    RobotContainer container = new RobotContainer();
+    Command auto = container.getAutonomousCommand(name);
+    if (auto == null) {
+      System.err.println("No auto named \"" + name + "\", pick one of " + container.getAutonomousNames());
+      System.exit(2);
+    }
+    DrivetrainPhysics physics = container.getDriveSubsystem().getPhysics();
+
+    for (int i = -1; i < trials; i++) {
+      // The robot with no randomness first, what the auto was tuned for
+      DrivetrainPhysics.Variation variation = i < 0 ? DrivetrainPhysics.Variation.kNone : randomRobot(seed, i);
+      double seconds = SimHarness.runAuto(container, auto, variation);
+      System.out.println("trial " + i + " " + seconds + " " + physics.getX() + " " + physics.getY() + " "
+          + -physics.getHeading());
+    }
+    System.out.flush();
+    // The Notifier threads would keep the JVM running
+    System.exit(0);
+  }
+
+  private static DrivetrainPhysics.Variation randomRobot(long seed, int trial) {
+    // Seeded by the trial number only, so every variant gets the same robots
+    SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + trial);
+    return new DrivetrainPhysics.Variation(
+        1 + gaussian(random) * kMotorVariance,
+        1 + gaussian(random) * kMotorVariance,
+        random.nextDouble() * kMaxSlip,
+        random.nextDouble() * kMaxSlip,
+        gaussian(random) * kGyroDriftDegreesPerSecond,
+        1 + random.nextDouble() * kMaxTurnScrub);
+  }
+
+  private static double gaussian(SplittableRandom random) {
+    // Box-Muller, SplittableRandom doesn't have nextGaussian()
+    return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+  }
+}
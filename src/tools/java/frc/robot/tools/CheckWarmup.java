@@ -0,0 +1,93 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import frc.robot.Constants;
+import frc.robot.sim.SimHarness;
+import frc.robot.util.JitWarmup;
+
+/**
+ * Times the first enabled loops of autonomous and teleop in simulation, with the JIT warm-up
+ * on and off. The JIT only warms up once per JVM, so every run is its own JVM.
+ * Each one sits disabled for a few seconds first, like the robot does before a match.
+ * Run with ./gradlew checkWarmup
+ */
+public final class CheckWarmup {
+  private CheckWarmup() {}
+
+  private static final double kDisabledSeconds = 5;
+  private static final String kResult = "RESULT ";
+
+  public static void main(String... args) throws IOException, InterruptedException {
+    if (args.length == 3 && args[0].equals("run")) {
+      run(args[1].equals("autonomous"), args[2].equals("on"));
+      return;
+    }
+    List<String> results = new ArrayList<>();
+    for (String mode : new String[] {"autonomous", "teleop"}) {
+      for (String warmup : new String[] {"off", "on"}) {
+        results.add(mode + ", " + runChild(mode, warmup));
+      }
+    }
+    for (String result : results) {
+      System.out.println(result);
+    }
+  }
+
+  // Runs this tool again in a new JVM and gives back its result line
+  private static String runChild(String mode, String warmup) throws IOException, InterruptedException {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    Process process = new ProcessBuilder(java,
+        "-Djava.library.path=" + System.getProperty("java.library.path"),
+        "-cp", System.getProperty("java.class.path"),
+        CheckWarmup.class.getName(), "run", mode, warmup)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    String result = "no result";
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(kResult)) {
+          result = line.substring(kResult.length());
+        }
+      }
+    }
+    process.waitFor();
+    return result;
+  }
+
+  private static void run(boolean autonomous, boolean warmup) {
+    Constants.jitWarmup = warmup;
+    SimHarness.start();
+    SimHarness.SimRobot robot = new SimHarness.SimRobot();
+    robot.robotInit();
+
+    SimHarness.setJoysticks(2, 6);
+    SimHarness.setMode(false, autonomous);
+    int disabledCycles = (int) Math.round(kDisabledSeconds / SimHarness.kPeriod);
+    for (int i = 0; i < disabledCycles; i++) {
+      robot.runCycle();
+      SimHarness.step();
+    }
+
+    SimHarness.setMode(true, autonomous);
+    for (int i = 0; i < Constants.warmupReportCycles; i++) {
+      SimHarness.moveDriverStick(i);
+      robot.runCycle();
+      SimHarness.step();
+    }
+    System.out.println(kResult + JitWarmup.describeFirstCycles());
+
+    // The Notifier threads would keep the JVM running
+    System.exit(0);
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import frc.robot.util.DataLogFile;
+import frc.robot.util.DataLogger;
+
+/**
+ * Turns a log from {@link DataLogger} into CSV, oldest record first.
+ * Copy the log off the robot (scp lvuser@roborio-TEAM-frc.local:logs/robot.rlog .) then
+ * run ./gradlew readDataLog -Plog=robot.rlog, the CSV goes next to the log.
+ *
+ * <p>The records are found by their sequence numbers, not the write count in the header,
+ * so a log cut off by a power loss still reads. Half written records are skipped
+ */
+public final class DataLogReader {
+  private DataLogReader() {}
+
+  public static void main(String... args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: DataLogReader <log file> [csv file, - for stdout]");
+      System.exit(2);
+    }
+    File log = new File(args[0]);
+    String output = args.length > 1 ? args[1] : args[0].replaceAll("\\.rlog(\\.\\d+)?$", "") + ".csv";
+
+    DataLogFile file = new DataLogFile(log);
+    String[] names = file.getNames();
+    int numberCount = file.getNumberCount();
+    long newest = file.getNewestSequence();
+    if (newest < 0) {
+      System.err.println(log + " has no records");
+      return;
+    }
+
+    long written = 0;
+    long skipped = 0;
+    try (Writer writer = "-".equals(output)
+        ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+        : new BufferedWriter(new FileWriter(output, StandardCharsets.UTF_8))) {
+      writer.write("Time");
+      for (String name : names) {
+        writer.write(',');
+        writer.write(name);
+      }
+      writer.write('\n');
+
+      StringBuilder line = new StringBuilder();
+      for (long sequence = file.getOldestSequence(); sequence <= newest; sequence++) {
+        if (!file.seek(sequence)) {
+          skipped++;
+          continue;
+        }
+        line.setLength(0);
+        line.append(file.getTimeMicros() / 1e6);
+        for (int i = 0; i < names.length; i++) {
+          line.append(',');
+          if (i < numberCount) {
+            line.append(file.getNumber(i));
+          } else {
+            line.append(file.getBoolean(i) ? 1 : 0);
+          }
+        }
+        line.append('\n');
+        writer.write(line.toString());
+        written++;
+      }
+    }
+    if (!"-".equals(output)) {
+      System.out.printf("%s: %d records, %d signals, %d skipped -> %s%n",
+          log, written, names.length, skipped, output);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.DifferentialDriveKinematics;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.math.trajectory.constraint.DifferentialDriveKinematicsConstraint;
+import edu.wpi.first.math.util.Units;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.trajectory.TrajectoryFile;
+
+/**
+ * Makes the auto trajectories on a desktop and writes them to src/main/deploy/trajectories.
+ * Run with ./gradlew generateTrajectories and commit the .traj files, the robot only loads them.
+ *
+ * <p>The waypoints start out as the corners of the old leg by leg autos so the
+ * trajectory goes to the same places. Tune them here, not on the robot
+ */
+public final class GenerateTrajectories {
+  // How far apart the samples in the file are
+  private static final double kSampleSeconds = 0.01;
+
+  private GenerateTrajectories() {}
+
+  public static void main(String... args) throws IOException {
+    File outputDirectory = new File(args.length > 0 ? args[0] : "src/main/deploy/trajectories");
+    outputDirectory.mkdirs();
+
+    writeTrajectory(twoBall(), new File(outputDirectory, "TwoBall.traj"));
+  }
+
+  /** The same stops as TwoBallAutoCommand: back up, then four legs forward */
+  private static Trajectory twoBall() {
+    // Each leg is {inches, navX angle to turn to first}, taken from TwoBallAutoCommand
+    double[][] legs = {{69, 146}, {107.1875, -89}, {100.44, 40}, {5, 2}};
+
+    Translation2d backedUp = new Translation2d(-Units.inchesToMeters(23.125), 0);
+    // The navX angle is clockwise positive, field headings are counterclockwise
+    Rotation2d firstHeading = Rotation2d.fromDegrees(-legs[0][1]);
+
+    // Backs up while turning toward the first forward leg so there's no turn in place
+    Trajectory backUp = TrajectoryGenerator.generateTrajectory(
+        new Pose2d(0, 0, new Rotation2d()), List.of(), new Pose2d(backedUp, firstHeading),
+        config().setReversed(true));
+
+    List<Translation2d> corners = new ArrayList<>();
+    Translation2d point = backedUp;
+    Rotation2d heading = firstHeading;
+    for (double[] leg : legs) {
+      heading = Rotation2d.fromDegrees(-leg[1]);
+      point = point.plus(new Translation2d(Units.inchesToMeters(leg[0]), heading));
+      corners.add(point);
+    }
+    Translation2d end = corners.remove(corners.size() - 1);
+    Trajectory forward = TrajectoryGenerator.generateTrajectory(
+        new Pose2d(backedUp, firstHeading), corners, new Pose2d(end, heading), config());
+
+    return backUp.concatenate(forward);
+  }
+
+  private static TrajectoryConfig config() {
+    DifferentialDriveKinematics kinematics = new DifferentialDriveKinematics(DriveConstants.trackWidthMeters);
+    return new TrajectoryConfig(DriveConstants.trajectoryMaxVelocity, DriveConstants.trajectoryMaxAcceleration)
+        .setKinematics(kinematics)
+        .addConstraint(new DifferentialDriveKinematicsConstraint(kinematics, DriveConstants.trajectoryMaxVelocity));
+  }
+
+  private static void writeTrajectory(Trajectory trajectory, File file) throws IOException {
+    int count = (int) Math.ceil(trajectory.getTotalTimeSeconds() / kSampleSeconds) + 1;
+    double[][] samples = new double[TrajectoryFile.kValues][count];
+    for (int i = 0; i < count; i++) {
+      double time = Math.min(i * kSampleSeconds, trajectory.getTotalTimeSeconds());
+      Trajectory.State state = trajectory.sample(time);
+      samples[TrajectoryFile.kTime][i] = time;
+      samples[TrajectoryFile.kX][i] = state.poseMeters.getX();
+      samples[TrajectoryFile.kY][i] = state.poseMeters.getY();
+      samples[TrajectoryFile.kHeading][i] = state.poseMeters.getRotation().getRadians();
+      samples[TrajectoryFile.kVelocity][i] = state.velocityMetersPerSecond;
+      samples[TrajectoryFile.kAcceleration][i] = state.accelerationMetersPerSecondSq;
+      samples[TrajectoryFile.kCurvature][i] = state.curvatureRadPerMeter;
+    }
+    TrajectoryFile.write(file, samples, count);
+    System.out.printf("%s: %d samples, %.2f s%n", file.getName(), count, trajectory.getTotalTimeSeconds());
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.Constants;
+import frc.robot.Robot;
+import frc.robot.sim.SimHarness;
+import frc.robot.util.LogReplay;
+
+/**
+ * Runs the real robot code against a data log copied off the robot, as fast as it can go.
+ * The subsystems get the logged sensor readings instead of reading hardware, the driver
+ * station gets the logged mode and joysticks, and the HAL clock is stepped to the logged
+ * times, so every command runs like it did on the field. After each record the outputs
+ * (setpoints, solenoids, intake) are checked against the log and the ones that came out
+ * different are printed, earliest first.
+ * Run with ./gradlew replayLog -Plog=robot.rlog
+ *
+ * <p>The odometry and heading controller Notifiers aren't started in replay. The pose and
+ * whether a turn has settled are logged inputs, and the heading controller is stepped once a
+ * loop from the logged gyro, so turn setpoints can be off by what it did between loops on the robot.
+ * Exits with 0 if every output matched, 1 if not
+ */
+public final class ReplayLog {
+  private ReplayLog() {}
+
+  // Fed to the simulated driver station, in this order
+  private static final String[] kModeNames = {"Robot/Enabled", "Robot/Autonomous"};
+
+  public static void main(String... args) throws IOException {
+    File file = new File(args.length > 0 ? args[0] : "robot.rlog");
+    // Before anything is made, the subsystems check this to skip their hardware
+    LogReplay.open(file);
+    if (LogReplay.getLog().getNewestSequence() < 0) {
+      System.err.println(file + " has no records");
+      System.exit(2);
+    }
+
+    SimHarness.start();
+    SimHarness.SimRobot robot = new SimHarness.SimRobot();
+    robot.robotInit();
+
+    int[] mode = LogReplay.findColumns(kModeNames);
+    int sticks = Constants.loggedJoysticks;
+    int axes = Constants.loggedJoystickAxes;
+    String[] buttonNames = new String[sticks];
+    String[] axisNames = new String[sticks * axes];
+    for (int stick = 0; stick < sticks; stick++) {
+      buttonNames[stick] = Robot.stickButtonsName(stick);
+      for (int axis = 0; axis < axes; axis++) {
+        axisNames[stick * axes + axis] = Robot.stickAxisName(stick, axis);
+      }
+    }
+    int[] buttons = LogReplay.findColumns(buttonNames);
+    int[] axisColumns = LogReplay.findColumns(axisNames);
+    int timestampColumn = LogReplay.findColumns(new String[] {"Drive/Timestamp"})[0];
+    DriverStationSim.setDsAttached(true);
+    SimHarness.setJoysticks(sticks, axes);
+
+    long wallStart = System.nanoTime();
+    double firstTime = Double.NaN;
+    double lastTime = Double.NaN;
+    while (LogReplay.next()) {
+      // The record is written at the end of the cycle, the drive's timestamp is from the start of it.
+      // Stepping the clock there makes Timer read what it read on the robot
+      double time = timestampColumn >= 0 ? LogReplay.getValue(timestampColumn) : LogReplay.getTimeMicros() / 1e6;
+      double now = RobotController.getFPGATime() / 1e6;
+      if (time > now) {
+        SimHooks.stepTiming(time - now);
+      }
+      if (Double.isNaN(firstTime)) {
+        firstTime = time;
+      }
+      lastTime = time;
+
+      DriverStationSim.setEnabled(value(mode[0]) != 0);
+      DriverStationSim.setAutonomous(value(mode[1]) != 0);
+      for (int stick = 0; stick < sticks; stick++) {
+        DriverStationSim.setJoystickButtons(stick, (int) value(buttons[stick]));
+        for (int axis = 0; axis < axes; axis++) {
+          DriverStationSim.setJoystickAxis(stick, axis, value(axisColumns[stick * axes + axis]));
+        }
+      }
+      // Waits until DriverStation has picked up the new values
+      DriverStationSim.notifyNewData();
+
+      robot.runCycle();
+      LogReplay.compareOutputs();
+    }
+    double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+    double robotSeconds = lastTime - firstTime;
+
+    System.out.println(String.format("%.1f s of robot time replayed in %.2f s (%.0fx real time)",
+        robotSeconds, wallSeconds, robotSeconds / wallSeconds));
+    boolean matched = LogReplay.printReport(System.out);
+
+    // The Notifier threads would keep the JVM running
+    System.exit(matched ? 0 : 1);
+  }
+
+  // Logs from before a signal was added don't have it
+  private static double value(int column) {
+    return column >= 0 ? LogReplay.getValue(column) : 0;
+  }
+}